@@ -1,12 +1,16 @@
 package com.github.kshashov.telegram;
 
+import com.github.kshashov.telegram.handler.filter.InlineQueryDebounceUpdateFilter;
+import com.github.kshashov.telegram.handler.processor.arguments.BotCancellationTokenArgumentResolver;
 import com.github.kshashov.telegram.handler.processor.arguments.BotHandlerMethodArgumentResolver;
+import com.github.kshashov.telegram.handler.processor.arguments.BotMediaGroupArgumentResolver;
 import com.github.kshashov.telegram.handler.processor.arguments.BotRequestMethodArgumentResolver;
 import com.github.kshashov.telegram.handler.processor.arguments.BotRequestMethodPathArgumentResolver;
 import com.github.kshashov.telegram.handler.processor.response.BotBaseRequestMethodProcessor;
 import com.github.kshashov.telegram.handler.processor.response.BotHandlerMethodReturnValueHandler;
 import com.github.kshashov.telegram.handler.processor.response.BotResponseBodyMethodProcessor;
 import com.github.kshashov.telegram.handler.processor.response.BotTemplateMethodProcessor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
@@ -28,6 +32,16 @@ public class MethodProcessorsConfiguration {
         return new BotRequestMethodPathArgumentResolver();
     }
 
+    @Bean
+    public BotHandlerMethodArgumentResolver botCancellationTokenArgumentResolver(ObjectProvider<InlineQueryDebounceUpdateFilter> inlineQueryFilter) {
+        return new BotCancellationTokenArgumentResolver(inlineQueryFilter.getIfAvailable());
+    }
+
+    @Bean
+    public BotHandlerMethodArgumentResolver botMediaGroupArgumentResolver() {
+        return new BotMediaGroupArgumentResolver();
+    }
+
     @Bean
     public BotHandlerMethodReturnValueHandler botBaseRequestMethodProcessor() {
         return new BotBaseRequestMethodProcessor();
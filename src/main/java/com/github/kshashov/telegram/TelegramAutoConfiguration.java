@@ -6,6 +6,9 @@ import com.github.kshashov.telegram.config.TelegramBotGlobalProperties;
 import com.github.kshashov.telegram.config.TelegramBotGlobalPropertiesConfiguration;
 import com.github.kshashov.telegram.config.TelegramBotProperties;
 import com.github.kshashov.telegram.handler.*;
+import com.github.kshashov.telegram.handler.filter.InlineQueryDebounceUpdateFilter;
+import com.github.kshashov.telegram.handler.filter.UpdateFilter;
+import com.github.kshashov.telegram.handler.processor.BatchRequestDispatcher;
 import com.github.kshashov.telegram.handler.processor.RequestDispatcher;
 import com.github.kshashov.telegram.handler.processor.arguments.BotHandlerMethodArgumentResolver;
 import com.github.kshashov.telegram.handler.processor.arguments.BotHandlerMethodArgumentResolverComposite;
@@ -13,6 +16,14 @@ import com.github.kshashov.telegram.handler.processor.response.BotHandlerMethodR
 import com.github.kshashov.telegram.handler.processor.response.BotHandlerMethodReturnValueHandlerComposite;
 import com.github.kshashov.telegram.metrics.MetricsConfiguration;
 import com.github.kshashov.telegram.metrics.MetricsService;
+import com.github.kshashov.telegram.outbound.BroadcastService;
+import com.github.kshashov.telegram.outbound.OutboundJournal;
+import com.github.kshashov.telegram.outbound.OutboundScheduler;
+import com.github.kshashov.telegram.session.JavaSessionSerializer;
+import com.github.kshashov.telegram.session.MappedSessionStore;
+import com.github.kshashov.telegram.session.SessionSerializer;
+import com.github.kshashov.telegram.session.SessionStore;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.pengrad.telegrambot.Callback;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.request.BaseRequest;
@@ -22,11 +33,14 @@ import lombok.extern.slf4j.Slf4j;
 import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationListener;
@@ -37,8 +51,11 @@ import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.core.env.Environment;
 import org.thymeleaf.ITemplateEngine;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.SynchronousQueue;
@@ -72,8 +89,8 @@ public class TelegramAutoConfiguration implements BeanFactoryPostProcessor, Envi
     }
 
     @Bean
-    TelegramUpdatesHandler telegramUpdatesHandler(TelegramBotGlobalProperties globalProperties, RequestDispatcher requestDispatcher, MetricsService metricsService) {
-        return new DefaultTelegramUpdatesHandler(requestDispatcher, globalProperties, metricsService);
+    TelegramUpdatesHandler telegramUpdatesHandler(TelegramBotGlobalProperties globalProperties, RequestDispatcher requestDispatcher, BatchRequestDispatcher batchRequestDispatcher, MetricsService metricsService) {
+        return new DefaultTelegramUpdatesHandler(requestDispatcher, batchRequestDispatcher, globalProperties, metricsService);
     }
 
     @Bean
@@ -127,11 +144,22 @@ public class TelegramAutoConfiguration implements BeanFactoryPostProcessor, Envi
             HandlerMethodContainer handlerMethodContainer,
             TelegramSessionResolver sessionResolver,
             TelegramBotGlobalProperties botGlobalProperties,
-            MetricsService metricsService) {
+            MetricsService metricsService,
+            MessageWaiterRegistry messageWaiterRegistry) {
         BotHandlerMethodArgumentResolverComposite argumentResolver = new BotHandlerMethodArgumentResolverComposite(botGlobalProperties.getArgumentResolvers());
         BotHandlerMethodReturnValueHandlerComposite returnValueHandler = new BotHandlerMethodReturnValueHandlerComposite(botGlobalProperties.getReturnValueHandlers());
 
-        return new RequestDispatcher(handlerMethodContainer, sessionResolver, argumentResolver, returnValueHandler, metricsService);
+        return new RequestDispatcher(handlerMethodContainer, sessionResolver, argumentResolver, returnValueHandler, metricsService, messageWaiterRegistry);
+    }
+
+    @Bean
+    MessageWaiterRegistry messageWaiterRegistry() {
+        return new MessageWaiterRegistry();
+    }
+
+    @Bean
+    BatchRequestDispatcher batchRequestDispatcher(HandlerMethodContainer handlerMethodContainer, MetricsService metricsService) {
+        return new BatchRequestDispatcher(handlerMethodContainer, metricsService);
     }
 
     @Bean
@@ -140,10 +168,17 @@ public class TelegramAutoConfiguration implements BeanFactoryPostProcessor, Envi
             RequestMappingsMatcherStrategy matcherStrategy,
             List<BotHandlerMethodArgumentResolver> argumentResolvers,
             List<BotHandlerMethodReturnValueHandler> returnValueHandlers,
-            TelegramConfigurationProperties properties) {
-        TelegramBotGlobalProperties.Builder defaultBuilder = createDefaultBotGlobalPropertiesBuilder(matcherStrategy, argumentResolvers, returnValueHandlers, properties);
+            ObjectProvider<UpdateFilter> updateFilters,
+            TelegramConfigurationProperties properties,
+            ObjectProvider<OutboundJournal> outboundJournal,
+            MetricsService metricsService) {
+        TelegramBotGlobalProperties.Builder defaultBuilder = createDefaultBotGlobalPropertiesBuilder(matcherStrategy, argumentResolvers, returnValueHandlers, updateFilters.orderedStream().collect(Collectors.toList()), properties, outboundJournal.getIfAvailable());
         botGlobalPropertiesConfiguration.configure(defaultBuilder);
-        return defaultBuilder.build();
+        TelegramBotGlobalProperties globalProperties = defaultBuilder.build();
+        if (globalProperties.getOutboundScheduler() != null) {
+            metricsService.registerOutboundMetrics(globalProperties.getOutboundScheduler());
+        }
+        return globalProperties;
     }
 
 
@@ -162,8 +197,63 @@ public class TelegramAutoConfiguration implements BeanFactoryPostProcessor, Envi
     }
 
     @Bean
-    TelegramSessionResolver telegramSessionResolver(ApplicationContext context) {
-        return new TelegramSessionResolver(context);
+    BroadcastService broadcastService(TelegramBot telegramBot,
+                                      @Autowired(required = false)
+                                      ITemplateEngine templateEngine,
+                                      TelegramBotGlobalProperties telegramBotGlobalProperties,
+                                      TelegramConfigurationProperties properties) {
+        return new BroadcastService(
+                telegramBot,
+                telegramBotGlobalProperties.getOutboundScheduler(),
+                templateEngine,
+                Paths.get(properties.getBroadcastDir()),
+                properties.getBroadcastWindowSize());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(InlineQueryDebounceUpdateFilter.class)
+    @ConditionalOnProperty(prefix = "telegram.bot", name = "inline-query-latest-wins", havingValue = "true", matchIfMissing = true)
+    InlineQueryDebounceUpdateFilter inlineQueryDebounceUpdateFilter() {
+        return new InlineQueryDebounceUpdateFilter();
+    }
+
+    @Bean
+    TelegramSessionResolver telegramSessionResolver(ApplicationContext context, TelegramScope telegramScope) {
+        return new TelegramSessionResolver(context, telegramScope);
+    }
+
+    @Bean
+    SmartInitializingSingleton telegramScopeInitializer(
+            TelegramScope telegramScope,
+            ObjectProvider<SessionStore> sessionStore,
+            ObjectProvider<SessionSerializer> sessionSerializer,
+            TelegramConfigurationProperties properties,
+            MetricsService metricsService) {
+        // Sessions are created only once the bots are started, so the scope could be configured after all singletons
+        return () -> {
+            sessionStore.ifAvailable(store -> telegramScope.setSessionStore(
+                    store,
+                    sessionSerializer.getIfAvailable(JavaSessionSerializer::new),
+                    Duration.ofSeconds(properties.getSessionHotSeconds())));
+            metricsService.registerSessionMetrics(telegramScope);
+        };
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(SessionStore.class)
+    @ConditionalOnProperty(prefix = "telegram.bot", name = "session-store-dir")
+    MappedSessionStore telegramSessionStore(TelegramConfigurationProperties properties) throws IOException {
+        return new MappedSessionStore(
+                Paths.get(properties.getSessionStoreDir()),
+                properties.getSessionStoreSegmentSize(),
+                Duration.ofSeconds(properties.getSessionSeconds()));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(OutboundJournal.class)
+    @ConditionalOnProperty(prefix = "telegram.bot", name = "outbound-journal-dir")
+    OutboundJournal telegramOutboundJournal(TelegramConfigurationProperties properties) throws IOException {
+        return new OutboundJournal(Paths.get(properties.getOutboundJournalDir()), properties.getOutboundJournalSegmentSize());
     }
 
     @Bean
@@ -198,19 +288,57 @@ public class TelegramAutoConfiguration implements BeanFactoryPostProcessor, Envi
     @Bean
     ApplicationListener<ContextRefreshedEvent> onContextRefreshed(@Qualifier("telegramServicesList") List<TelegramService> telegramServices, TelegramBotGlobalProperties globalProperties, HandlerMethodContainer handlerMethodContainer) {
         handlerMethodContainer.setMatcherStrategy(globalProperties.getMatcherStrategy());
-        return event -> telegramServices.forEach((s) -> globalProperties.getTaskExecutor().execute(s::start));
+        return event -> {
+            if (globalProperties.getOutboundScheduler() != null) {
+                // Send the requests that have not been delivered before the restart
+                globalProperties.getOutboundScheduler().replay(telegramServices.stream().map(TelegramService::bot).collect(Collectors.toList()));
+            }
+            telegramServices.forEach((s) -> globalProperties.getTaskExecutor().execute(s::start));
+        };
     }
 
     @Bean
-    ApplicationListener<ContextClosedEvent> onContextClosed(TelegramBotGlobalProperties globalProperties, @Qualifier("telegramServicesList") List<TelegramService> telegramServices) {
+    ApplicationListener<ContextClosedEvent> onContextClosed(
+            TelegramBotGlobalProperties globalProperties,
+            @Qualifier("telegramServicesList") List<TelegramService> telegramServices,
+            TelegramUpdatesHandler updatesHandler,
+            TelegramScope telegramScope,
+            ObjectProvider<SessionStore> sessionStore,
+            BroadcastService broadcastService,
+            TelegramConfigurationProperties properties) {
         return event -> {
             telegramServices.forEach(TelegramService::stop);
+            // Buffered updates are submitted to the task executor, so it should be still running
+            updatesHandler.shutdown();
+            broadcastService.shutdown();
 
             if (globalProperties.getTaskExecutor() != null) {
                 log.info("Shutting down ThreadPoolExecutor");
                 globalProperties.getTaskExecutor().shutdown();
-                log.info("ThreadPoolExecutor has been shut down");
+                // Sessions could be demoted only once the handlers have released them
+                try {
+                    if (globalProperties.getTaskExecutor().awaitTermination(properties.getShutdownTimeoutSeconds(), TimeUnit.SECONDS)) {
+                        log.info("ThreadPoolExecutor has been shut down");
+                    } else {
+                        log.warn("ThreadPoolExecutor has not been shut down in {} seconds", properties.getShutdownTimeoutSeconds());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if ((globalProperties.getOutboundScheduler() != null)
+                    && !globalProperties.getOutboundScheduler().shutdown(Duration.ofSeconds(properties.getShutdownTimeoutSeconds()))) {
+                log.warn("Outbound requests have not been sent in {} seconds, the rest has been rejected", properties.getShutdownTimeoutSeconds());
+            }
+
+            if (properties.isSessionSnapshot()) {
+                sessionStore.ifAvailable(store -> {
+                    telegramScope.demoteAll();
+                    store.snapshot();
+                });
             }
+            telegramScope.shutdown();
         };
     }
 
@@ -218,14 +346,26 @@ public class TelegramAutoConfiguration implements BeanFactoryPostProcessor, Envi
             @NotNull RequestMappingsMatcherStrategy matcherStrategy,
             @NotNull List<BotHandlerMethodArgumentResolver> argumentResolvers,
             @NotNull List<BotHandlerMethodReturnValueHandler> returnValueHandlers,
-            @NotNull TelegramConfigurationProperties properties) {
+            @NotNull List<UpdateFilter> updateFilters,
+            @NotNull TelegramConfigurationProperties properties,
+            @Nullable OutboundJournal outboundJournal) {
         return TelegramBotGlobalProperties.builder()
                 .matcherStrategy(matcherStrategy)
                 .argumentResolvers(argumentResolvers)
                 .returnValueHandlers(returnValueHandlers)
+                .updateFilters(updateFilters)
+                .mediaGroupWindow(Duration.ofMillis(properties.getMediaGroupWindowMs()))
+                .batchWindow(Duration.ofMillis(properties.getBatchWindowMs()), properties.getBatchMaxSize())
+                .outboundScheduler(properties.isOutboundEnabled() ? createOutboundScheduler(properties, outboundJournal) : null)
                 .setWebserverPort(properties.getServerPort())
                 .primaryBotToken(properties.getPrimaryBotToken())
-                .taskExecutor(new ThreadPoolExecutor(properties.getCorePoolSize(), properties.getMaxPoolSize(), 0L, TimeUnit.SECONDS, new SynchronousQueue<>()))
+                .taskExecutor(new ThreadPoolExecutor(properties.getCorePoolSize(), properties.getMaxPoolSize(), 0L, TimeUnit.SECONDS, new SynchronousQueue<>()) {
+                    @Override
+                    public void execute(Runnable command) {
+                        // Tasks submitted by the handlers keep the session of the update
+                        super.execute(TelegramRequestContext.wrap(command));
+                    }
+                })
                 .responseCallback(new Callback() {
                     @Override
                     public void onResponse(BaseRequest request, BaseResponse response) {
@@ -237,20 +377,45 @@ public class TelegramAutoConfiguration implements BeanFactoryPostProcessor, Envi
                 });
     }
 
+    private OutboundScheduler createOutboundScheduler(@NotNull TelegramConfigurationProperties properties, @Nullable OutboundJournal outboundJournal) {
+        return OutboundScheduler.builder()
+                .botRate(properties.getOutboundBotRate(), Duration.ofSeconds(1))
+                .privateChatRate(properties.getOutboundPrivateChatRate(), Duration.ofSeconds(1))
+                .groupChatRate(properties.getOutboundGroupChatRate(), Duration.ofMinutes(1))
+                .maxChatQueueSize(properties.getOutboundChatQueueSize())
+                .maxQueueSize(properties.getOutboundQueueSize())
+                .maxRetries(properties.getOutboundMaxRetries())
+                .concurrencyLimit(properties.getOutboundConcurrencyLimit(), properties.getOutboundMaxConcurrencyLimit())
+                .circuitBreaker(
+                        properties.getOutboundCircuitFailureRate() / 100.0,
+                        Duration.ofMillis(properties.getOutboundCircuitSlowCallMs()),
+                        Duration.ofSeconds(properties.getOutboundCircuitOpenSeconds()))
+                .failFastWhenOpen(properties.isOutboundCircuitFailFast())
+                .journal(outboundJournal)
+                .build();
+    }
+
     private TelegramBotProperties.Builder createDefaultBotPropertiesBuilder(@NotNull String token, @NotNull TelegramBotGlobalProperties globalProperties) {
         return TelegramBotProperties.builder(token)
                 .configure(builder -> builder
                         .apiUrl("https://api.telegram.org/bot")
                         .updateListenerSleep(environment.getProperty("telegram.bot.update-listener-sleep", Long.class, 300L))
                         .okHttpClient(new OkHttpClient.Builder()
-                                .dispatcher(new Dispatcher(globalProperties.getTaskExecutor()))
+                                // Not the task executor, so the queued replies could be sent after it is shut down
+                                .dispatcher(new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadFactoryBuilder()
+                                        .setNameFormat("telegram-http-%d")
+                                        .setDaemon(true)
+                                        .build())))
                                 .build()));
     }
 
     @Override
     public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
-        beanFactory.registerScope(TelegramScope.SCOPE,
-                new TelegramScope(beanFactory, environment.getProperty("telegram.bot.session-seconds", Integer.class, 3600)));
+        TelegramScope scope = new TelegramScope(beanFactory,
+                environment.getProperty("telegram.bot.session-seconds", Integer.class, 3600),
+                environment.getProperty("telegram.bot.session-max-count", Long.class, 100_000L));
+        beanFactory.registerScope(TelegramScope.SCOPE, scope);
+        beanFactory.registerSingleton("telegramScope", scope);
     }
 
     @Override
@@ -19,11 +19,149 @@ public class TelegramConfigurationProperties {
      */
     private int maxPoolSize = 50;
 
+    /**
+     * Max time to wait on shutdown for the updates that are being processed, then for the queued outbound requests.
+     */
+    private int shutdownTimeoutSeconds = 30;
+
     /**
      * Cache expiration time for the all beans inside {@link TelegramScope}.
      */
     private int sessionSeconds = 3600;
 
+    /**
+     * Max count of the sessions inside {@link TelegramScope}. The least valuable sessions are evicted once the limit is
+     * reached.
+     */
+    private long sessionMaxCount = 100_000L;
+
+    /**
+     * Directory for the cold tier of the sessions. Idle sessions are moved there if it is specified.
+     */
+    private String sessionStoreDir = null;
+
+    /**
+     * Time after the last access when the session is moved to the cold tier, if it is enabled.
+     */
+    private int sessionHotSeconds = 300;
+
+    /**
+     * Size of the cold tier segment files in bytes.
+     */
+    private int sessionStoreSegmentSize = 64 * 1024 * 1024;
+
+    /**
+     * Move all sessions to the cold tier on shutdown and persist them, so they are restored after the restart.
+     */
+    private boolean sessionSnapshot = true;
+
+    /**
+     * Skip or cancel inline queries superseded by a newer inline query from the same user.
+     */
+    private boolean inlineQueryLatestWins = true;
+
+    /**
+     * Time to wait for the next part of media group (album) before the whole group is dispatched. 0 disables the
+     * aggregation, so each part is dispatched separately.
+     */
+    private long mediaGroupWindowMs = 0L;
+
+    /**
+     * Max time to collect webhook updates into a batch for batch handler methods. 0 disables the collecting.
+     */
+    private long batchWindowMs = 1000L;
+
+    /**
+     * Max count of webhook updates in a batch for batch handler methods.
+     */
+    private int batchMaxSize = 100;
+
+    /**
+     * Queue the requests submitted by the handler methods and send them with respect to the Telegram rate limits.
+     */
+    private boolean outboundEnabled = true;
+
+    /**
+     * Max count of the requests per second for the whole bot.
+     */
+    private int outboundBotRate = 30;
+
+    /**
+     * Max count of the requests per second for a private chat.
+     */
+    private int outboundPrivateChatRate = 1;
+
+    /**
+     * Max count of the requests per minute for a group or channel.
+     */
+    private int outboundGroupChatRate = 20;
+
+    /**
+     * Max count of the queued requests per chat.
+     */
+    private int outboundChatQueueSize = 100;
+
+    /**
+     * Max count of the queued requests per bot.
+     */
+    private int outboundQueueSize = 10_000;
+
+    /**
+     * Max count of the retries of the request failed with 429, 5xx or network error.
+     */
+    private int outboundMaxRetries = 5;
+
+    /**
+     * Initial count of the requests in flight per bot. The limit is adjusted by the observed latency.
+     */
+    private int outboundConcurrencyLimit = 20;
+
+    /**
+     * Max count of the requests in flight per bot.
+     */
+    private int outboundMaxConcurrencyLimit = 64;
+
+    /**
+     * Percentage of the failed or slow requests among the last 20 ones that opens the circuit breaker of the bot.
+     */
+    private int outboundCircuitFailureRate = 50;
+
+    /**
+     * Requests that take longer are counted as failed by the circuit breaker. File uploads are counted only if they
+     * fail.
+     */
+    private int outboundCircuitSlowCallMs = 10_000;
+
+    /**
+     * Time while the open circuit breaker does not let the requests through.
+     */
+    private int outboundCircuitOpenSeconds = 30;
+
+    /**
+     * Reject the new requests while the circuit breaker is open instead of keeping them in the queues.
+     */
+    private boolean outboundCircuitFailFast = false;
+
+    /**
+     * Directory for the journal of the queued requests. Requests are kept only in memory if it is not specified.
+     */
+    private String outboundJournalDir = null;
+
+    /**
+     * Size of the single journal segment file in bytes.
+     */
+    private int outboundJournalSegmentSize = 16 * 1024 * 1024;
+
+    /**
+     * Directory for the checkpoint and blocked chats files of the broadcasts.
+     */
+    private String broadcastDir = "broadcasts";
+
+    /**
+     * Max count of the messages in flight per broadcast.
+     */
+    private int broadcastWindowSize = 100;
+
     /**
      * Timeout between requests to Telegrams API if long polling is enabled.
      */
@@ -35,7 +173,7 @@ public class TelegramConfigurationProperties {
     private int serverPort = 8443;
 
     /**
-     * 主机器人令牌
+     * Token of the primary bot that is used to send the requests by default.
      */
     private String primaryBotToken = null;
 }
@@ -2,10 +2,14 @@ package com.github.kshashov.telegram;
 
 import com.github.kshashov.telegram.api.MessageType;
 import com.github.kshashov.telegram.api.TelegramMvcController;
+import com.github.kshashov.telegram.api.bind.annotation.BotBatchRequest;
 import com.github.kshashov.telegram.api.bind.annotation.BotController;
 import com.github.kshashov.telegram.api.bind.annotation.BotRequest;
+import com.github.kshashov.telegram.api.bind.annotation.BotState;
 import com.github.kshashov.telegram.handler.HandlerMethodContainer;
 import com.github.kshashov.telegram.handler.RequestMappingInfo;
+import com.github.kshashov.telegram.handler.StateTransition;
+import com.github.kshashov.telegram.handler.processor.BatchRequestDispatcher;
 import com.github.kshashov.telegram.handler.processor.HandlerMethod;
 import com.github.kshashov.telegram.metrics.MetricsService;
 import com.google.common.collect.Lists;
@@ -57,7 +61,8 @@ public class TelegramControllerBeanPostProcessor implements BeanPostProcessor, S
                     && (AnnotationUtils.findAnnotation(targetClass, BotController.class) != null)) {
                 TelegramMvcController controller = (TelegramMvcController) bean;
                 Map<Method, List<RequestMappingInfo>> annotatedMethods = findAnnotatedMethodsBotRequest(controller.getToken(), targetClass);
-                if (annotatedMethods.isEmpty()) {
+                Map<Method, List<RequestMappingInfo>> batchMethods = findAnnotatedMethodsBotBatchRequest(controller.getToken(), targetClass);
+                if (annotatedMethods.isEmpty() && batchMethods.isEmpty()) {
                     nonAnnotatedClasses.add(targetClass);
                     if (log.isTraceEnabled()) {
                         log.warn("No @BotRequest annotations found on bean class: {}", bean.getClass());
@@ -66,7 +71,16 @@ public class TelegramControllerBeanPostProcessor implements BeanPostProcessor, S
                     // Non-empty set of methods
                     annotatedMethods.forEach((method, mappingInfos) -> {
                         Method invocableMethod = AopUtils.selectInvocableMethod(method, targetClass);
-                        HandlerMethod handlerMethod = botHandlerMethodContainer.registerController(bean, invocableMethod, mappingInfos);
+                        BotState state = AnnotatedElementUtils.findMergedAnnotation(method, BotState.class);
+                        HandlerMethod handlerMethod = (state == null)
+                                ? botHandlerMethodContainer.registerController(bean, invocableMethod, mappingInfos)
+                                : botHandlerMethodContainer.registerController(bean, invocableMethod, mappingInfos, Sets.newHashSet(state.value()), StateTransition.of(state));
+                        metricsService.registerHandlerMethod(handlerMethod);
+                    });
+                    batchMethods.forEach((method, mappingInfos) -> {
+                        checkBatchMethodParameters(method);
+                        Method invocableMethod = AopUtils.selectInvocableMethod(method, targetClass);
+                        HandlerMethod handlerMethod = botHandlerMethodContainer.registerBatchController(bean, invocableMethod, mappingInfos);
                         metricsService.registerHandlerMethod(handlerMethod);
                     });
                 }
@@ -81,16 +95,36 @@ public class TelegramControllerBeanPostProcessor implements BeanPostProcessor, S
         return MethodIntrospector.selectMethods(targetClass, (MethodIntrospector.MetadataLookup<List<RequestMappingInfo>>) method -> {
             BotRequest requestMapping = AnnotatedElementUtils.findMergedAnnotation(method, BotRequest.class);
             if (requestMapping == null) return null;
-            HashSet<MessageType> types = Sets.newHashSet(requestMapping.type());
+            return createMappingInfos(token, requestMapping.path(), requestMapping.type());
+        });
+    }
+
+    private Map<Method, List<RequestMappingInfo>> findAnnotatedMethodsBotBatchRequest(String token, Class<?> targetClass) {
+        return MethodIntrospector.selectMethods(targetClass, (MethodIntrospector.MetadataLookup<List<RequestMappingInfo>>) method -> {
+            BotBatchRequest requestMapping = AnnotatedElementUtils.findMergedAnnotation(method, BotBatchRequest.class);
+            if (requestMapping == null) return null;
+            return createMappingInfos(token, requestMapping.path(), requestMapping.type());
+        });
+    }
 
-            if (requestMapping.path().length == 0) {
-                return Lists.newArrayList(new RequestMappingInfo(token, null, Integer.MAX_VALUE, types));
+    private void checkBatchMethodParameters(Method method) {
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            if (!BatchRequestDispatcher.isSupportedParameterType(parameterType)) {
+                throw new IllegalStateException("Unsupported parameter type [" + parameterType.getName() + "] of @BotBatchRequest method " + method);
             }
+        }
+    }
 
-            return Arrays.stream(requestMapping.path())
-                    .map(path -> new RequestMappingInfo(token, path, requestMapping.path().length, types))
-                    .collect(Collectors.toList());
-        });
+    private List<RequestMappingInfo> createMappingInfos(String token, String[] paths, MessageType[] messageTypes) {
+        HashSet<MessageType> types = Sets.newHashSet(messageTypes);
+
+        if (paths.length == 0) {
+            return Lists.newArrayList(new RequestMappingInfo(token, null, Integer.MAX_VALUE, types));
+        }
+
+        return Arrays.stream(paths)
+                .map(path -> new RequestMappingInfo(token, path, paths.length, types))
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -0,0 +1,147 @@
+package com.github.kshashov.telegram;
+
+import com.pengrad.telegrambot.model.Update;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Context of the update being processed. It defines the current session of {@link TelegramScope}, so the scoped beans
+ * could only be accessed while the context is bound to the current thread.
+ *
+ * <p>The context is bound for the synchronous handler call only. To continue the processing asynchronously, take the
+ * {@link #current()} context and {@link #bind()} it on the other thread, or just wrap the task:</p>
+ * <pre class="code">
+ * CompletableFuture.supplyAsync(TelegramRequestContext.wrap(() -&gt; session.getItems().get("key")), executor);
+ * </pre>
+ *
+ * <p>The task executor of the starter and the futures returned by {@code TelegramExecuteHandler.executeAsync}
+ * propagate the context automatically, other executors could be decorated with {@link #propagating(Executor)}.</p>
+ *
+ * @since 0.29
+ */
+@Getter
+public final class TelegramRequestContext {
+    private static final ThreadLocal<TelegramRequestContext> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Id of the session, the boxed value is reused by the scope lookups.
+     */
+    private final @NotNull Long sessionId;
+    private final @Nullable Update update;
+
+    TelegramRequestContext(@NotNull Long sessionId, @Nullable Update update) {
+        this.sessionId = sessionId;
+        this.update = update;
+    }
+
+    /**
+     * Returns the context bound to the current thread.
+     *
+     * @return context or {@code null} if the current thread does not process any update
+     */
+    @Nullable
+    public static TelegramRequestContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Removes the context from the current thread.
+     */
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Binds the context to the current thread until the returned binding is closed. Bindings could be nested, the
+     * previous context is restored on close.
+     *
+     * @return binding to close once the processing is finished
+     */
+    @NotNull
+    public Binding bind() {
+        TelegramRequestContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Wraps the task, so it is executed within the context of the current thread. Returns the task itself if there is
+     * no current context.
+     *
+     * @param task task
+     * @return wrapped task
+     */
+    @NotNull
+    public static Runnable wrap(@NotNull Runnable task) {
+        TelegramRequestContext context = current();
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            Binding binding = context.bind();
+            try {
+                task.run();
+            } finally {
+                binding.close();
+            }
+        };
+    }
+
+    /**
+     * Wraps the supplier, so it is executed within the context of the current thread. Returns the supplier itself if
+     * there is no current context.
+     *
+     * @param supplier supplier
+     * @param <T>      result type
+     * @return wrapped supplier
+     */
+    @NotNull
+    public static <T> Supplier<T> wrap(@NotNull Supplier<T> supplier) {
+        TelegramRequestContext context = current();
+        if (context == null) {
+            return supplier;
+        }
+        return () -> {
+            Binding binding = context.bind();
+            try {
+                return supplier.get();
+            } finally {
+                binding.close();
+            }
+        };
+    }
+
+    /**
+     * Decorates the executor, so all tasks are executed within the context of the thread that has submitted them.
+     *
+     * @param executor executor
+     * @return decorated executor
+     */
+    @NotNull
+    public static Executor propagating(@NotNull Executor executor) {
+        return task -> executor.execute(wrap(task));
+    }
+
+    /**
+     * Binding of the context to the current thread.
+     */
+    @FunctionalInterface
+    public interface Binding extends AutoCloseable {
+
+        /**
+         * Restores the previous context of the current thread.
+         */
+        @Override
+        void close();
+    }
+}
@@ -1,25 +1,42 @@
 package com.github.kshashov.telegram;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.kshashov.telegram.api.TelegramScoped;
 import com.github.kshashov.telegram.api.TelegramSession;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.github.kshashov.telegram.session.SessionSerializer;
+import com.github.kshashov.telegram.session.SessionStore;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
 import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.config.Scope;
+import org.springframework.core.annotation.MergedAnnotation;
 import org.springframework.lang.NonNull;
 
 import javax.validation.constraints.NotNull;
+import java.io.*;
+import java.time.Duration;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 /**
- * Scope store all beans in the cache by chat id (or user id)
+ * Scope store all beans in the cache by chat id (or user id). The current session is defined by the {@link
+ * TelegramRequestContext} bound to the current thread.
  * <p>The bean lifetime after the last call can be redefined using the property {@code
- * TelegramConfigurationProperties.getSessionSeconds()}.</p>
+ * TelegramConfigurationProperties.getSessionSeconds()}. The sessions count is limited by {@code
+ * TelegramConfigurationProperties.getSessionMaxCount()}: once the limit is reached, the least valuable sessions are
+ * evicted according to their access frequency and recency.</p>
+ *
+ * <p>Beans of the evicted sessions are destroyed asynchronously, so the eviction never blocks the handler thread.</p>
+ *
+ * <p>Optionally, evicted sessions could be moved to the cold tier, see {@link #setSessionStore}.</p>
+ *
+ * <p>Beans declared with {@link TelegramScoped#ttlSeconds()} expire independently of their session. Expired beans are
+ * destroyed on the next access to the bean or by the periodic sweep, whichever happens first.</p>
  *
  * <p><strong>Note: </strong> All {@link TelegramSession} instances have this scope by
  * default.
@@ -29,66 +46,396 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class TelegramScope implements Scope {
     public static final String SCOPE = "telegramScope";
-    private static final ThreadLocal<Long> USER_THREAD_LOCAL = new ThreadLocal<>();
+    private static final long NO_TTL = 0L;
+    private static final long SWEEP_PERIOD_SECONDS = 1;
 
     private final ConfigurableListableBeanFactory beanFactory;
-    private final LoadingCache<String, ConcurrentHashMap<String, Object>> conversations;
+    private final Cache<Long, SessionBeans> conversations;
+    private final ConcurrentMap<Long, SessionBeans> demoting = new ConcurrentHashMap<>();
+    private volatile SessionStore sessionStore;
+    private volatile SessionSerializer sessionSerializer;
+    private final ConcurrentMap<String, Long> beanTtls = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService sweeper;
+    private volatile boolean stopped;
 
-    @SuppressWarnings("unchecked")
-    TelegramScope(@NotNull ConfigurableListableBeanFactory beanFactory, long expireSeconds) {
+    TelegramScope(@NotNull ConfigurableListableBeanFactory beanFactory, long expireSeconds, long maxSessions) {
+        this(beanFactory, expireSeconds, maxSessions, ForkJoinPool.commonPool());
+    }
+
+    TelegramScope(@NotNull ConfigurableListableBeanFactory beanFactory, long expireSeconds, long maxSessions, @NotNull Executor executor) {
         this.beanFactory = beanFactory;
-        conversations = CacheBuilder
-                .newBuilder()
+        conversations = Caffeine.newBuilder()
                 .expireAfterAccess(expireSeconds, TimeUnit.SECONDS)
-                .removalListener(notification -> {
-                    if (notification.wasEvicted()) {
-                        log.debug("Evict session for key {}", notification.getKey());
-                        Map<String, Object> userScope = (Map<String, Object>) notification.getValue();
-                        if (userScope != null) {
+                .maximumSize(maxSessions)
+                .recordStats()
+                // Removal listener is invoked on the executor
+                .executor(executor)
+                .<Long, SessionBeans>evictionListener((key, userScope, cause) -> {
+                    // Is invoked synchronously, so the session could be promoted back before it is demoted
+                    if ((sessionStore != null) && (key != null) && (userScope != null)) {
+                        demoting.put(key, userScope);
+                    }
+                })
+                .<Long, SessionBeans>removalListener((key, userScope, cause) -> {
+                    if (cause.wasEvicted() && (userScope != null)) {
+                        log.debug("Evict session for key {} ({})", key, cause);
+                        if ((key == null) || demote(key, userScope, System.currentTimeMillis())) {
                             userScope.values().forEach(this::removeBean);
                         }
                     }
                 })
-                .build(new CacheLoader<String, ConcurrentHashMap<String, Object>>() {
-                    @Override
-                    public ConcurrentHashMap<String, Object> load(@NonNull String key) {
-                        log.debug("Create session for key = {}", key);
-                        return new ConcurrentHashMap<>();
-                    }
-                });
+                .build();
+    }
+
+    /**
+     * Enables the cold tier for the sessions. Sessions idle for {@code hotIdle} or evicted because of the size limit
+     * are serialized to the store, then promoted back to the heap once they are accessed again. Only {@link
+     * TelegramSession} beans are stored, other beans of the evicted session are destroyed.
+     *
+     * @param sessionStore      cold tier
+     * @param sessionSerializer serializer for the session items
+     * @param hotIdle           time after the last access when the session is demoted to the cold tier
+     * @since 0.29
+     */
+    public void setSessionStore(@NotNull SessionStore sessionStore, @NotNull SessionSerializer sessionSerializer, @NotNull Duration hotIdle) {
+        this.sessionSerializer = sessionSerializer;
+        this.sessionStore = sessionStore;
+        conversations.policy().expireAfterAccess().ifPresent(policy -> policy.setExpiresAfter(hotIdle));
+    }
+
+    /**
+     * Moves all active sessions to the cold tier, if it is enabled, and destroys their beans. Is supposed to be invoked
+     * on shutdown, so the sessions could be persisted by {@link SessionStore#snapshot()}.
+     *
+     * @since 0.29
+     */
+    public void demoteAll() {
+        if (sessionStore == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        var expiration = conversations.policy().expireAfterAccess();
+        for (Long key : conversations.asMap().keySet()) {
+            long lastAccess = expiration.flatMap(policy -> policy.ageOf(key))
+                    .map(age -> now - age.toMillis())
+                    .orElse(now);
+            SessionBeans userScope = conversations.asMap().remove(key);
+            if (userScope != null) {
+                demoting.put(key, userScope);
+                if (demote(key, userScope, lastAccess)) {
+                    userScope.values().forEach(this::removeBean);
+                }
+            }
+        }
+
+        // Also complete the demotions that are still pending on the executor
+        demoting.forEach((key, userScope) -> {
+            if (demote(key, userScope, now)) {
+                userScope.values().forEach(this::removeBean);
+            }
+        });
+    }
+
+    /**
+     * Stops the periodic sweep of the expired {@link TelegramScoped#ttlSeconds()} beans. Is supposed to be invoked on
+     * shutdown, expired beans are still destroyed on the next access.
+     *
+     * @since 0.29
+     */
+    public void shutdown() {
+        synchronized (beanTtls) {
+            stopped = true;
+            if (sweeper != null) {
+                sweeper.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Moves the evicted session to the cold tier.
+     *
+     * @return {@code true} if the session beans should be destroyed, {@code false} if the session has been promoted back
+     */
+    private boolean demote(@NotNull Long key, @NotNull SessionBeans userScope, long lastAccess) {
+        SessionStore store = sessionStore;
+        if (store == null) {
+            return true;
+        }
+
+        synchronized (userScope) {
+            if (demoting.get(key) != userScope) {
+                // Already promoted back
+                return false;
+            }
+            try {
+                byte[] data = serialize(userScope);
+                if (data != null) {
+                    store.save(key, data, lastAccess);
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.error("Session {} couldn't be moved to the session store", key, ex);
+            }
+            // The concurrent promotion waits for the lock and then takes the session from the store
+            demoting.remove(key, userScope);
+        }
+        return true;
+    }
+
+    private SessionBeans promote(@NotNull Long key) {
+        SessionBeans pending = demoting.get(key);
+        if (pending != null) {
+            synchronized (pending) {
+                if (demoting.remove(key, pending)) {
+                    log.debug("Restore session for key = {}", key);
+                    return pending;
+                }
+            }
+        }
+
+        SessionBeans userScope = new SessionBeans();
+        SessionStore store = sessionStore;
+        if (store != null) {
+            try {
+                byte[] data = store.take(key);
+                if (data != null) {
+                    log.debug("Load session for key = {}", key);
+                    userScope.restored = deserialize(data);
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.error("Session {} couldn't be loaded from the session store", key, ex);
+            }
+        }
+        return userScope;
+    }
+
+    private byte[] serialize(SessionBeans userScope) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        int count = 0;
+        for (Map.Entry<String, Object> entry : userScope.entrySet()) {
+            if ((entry.getValue() instanceof TelegramSession session)
+                    && (!session.getItems().isEmpty() || (session.getState() != null))) {
+                byte[] items = sessionSerializer.serialize(session.getItems());
+                write(out, entry.getKey(), new StoredSession(items, session.getState(), session.getStateExpiresAt()));
+                count++;
+            }
+        }
+
+        // Keep the restored beans that have not been requested since the promotion
+        Map<String, StoredSession> restored = userScope.restored;
+        if (restored != null) {
+            for (Map.Entry<String, StoredSession> entry : restored.entrySet()) {
+                if (!userScope.containsKey(entry.getKey())) {
+                    write(out, entry.getKey(), entry.getValue());
+                    count++;
+                }
+            }
+        }
+        return (count == 0) ? null : bytes.toByteArray();
+    }
+
+    private void write(DataOutputStream out, String name, StoredSession session) throws IOException {
+        out.writeUTF(name);
+        out.writeUTF((session.state() == null) ? "" : session.state());
+        out.writeLong(session.stateExpiresAt());
+        out.writeInt(session.items().length);
+        out.write(session.items());
+    }
+
+    private Map<String, StoredSession> deserialize(byte[] data) throws IOException {
+        Map<String, StoredSession> result = new ConcurrentHashMap<>(4);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        while (in.available() > 0) {
+            String name = in.readUTF();
+            String state = in.readUTF();
+            long stateExpiresAt = in.readLong();
+            byte[] items = new byte[in.readInt()];
+            in.readFully(items);
+            result.put(name, new StoredSession(items, state.isEmpty() ? null : state, stateExpiresAt));
+        }
+        return result;
+    }
+
+    private Object restore(SessionBeans userScope, String name, Object bean) {
+        Map<String, StoredSession> restored = userScope.restored;
+        if ((restored == null) || !(bean instanceof TelegramSession session)) {
+            return bean;
+        }
+
+        StoredSession stored = restored.remove(name);
+        if (stored != null) {
+            try {
+                session.getItems().putAll(sessionSerializer.deserialize(stored.items()));
+                session.setState(stored.state(), stored.stateExpiresAt());
+            } catch (IOException | RuntimeException ex) {
+                log.error("Session bean {} couldn't be restored", name, ex);
+            }
+        }
+        return bean;
     }
 
     static void setIdThreadLocal(Long chatId) {
-        USER_THREAD_LOCAL.set(chatId);
+        new TelegramRequestContext(chatId, null).bind();
     }
 
     static void removeId() {
-        USER_THREAD_LOCAL.remove();
+        TelegramRequestContext.unbind();
+    }
+
+    /**
+     * Returns id of the session bound to the current thread by {@link TelegramRequestContext}.
+     */
+    private static Long currentSessionId() {
+        TelegramRequestContext context = TelegramRequestContext.current();
+        return (context != null) ? context.getSessionId() : null;
     }
 
     private void removeBean(Object bean) {
-        beanFactory.destroyBean(bean);
+        try {
+            beanFactory.destroyBean(bean);
+        } catch (RuntimeException ex) {
+            log.error("Session bean couldn't be destroyed", ex);
+        }
     }
 
     @NonNull
     @Override
     public Object get(@NonNull String name, @NonNull ObjectFactory<?> objectFactory) throws TelegramScopeException {
-        final String sessionId = getConversationId();
+        // Reuse the boxed id from the context, so the lookup does not allocate anything
+        final Long sessionId = currentSessionId();
         if (sessionId == null) {
             throw new TelegramScopeException("There is no current session");
         }
-        ConcurrentHashMap<String, Object> beans;
+        SessionBeans beans = conversations.get(sessionId, key -> {
+            log.debug("Create session for key = {}", key);
+            return promote(key);
+        });
+
+        long ttl = beanTtls.computeIfAbsent(name, this::resolveTtl);
+        if (ttl != NO_TTL) {
+            return getExpiring(beans, name, objectFactory, ttl);
+        }
+        Object bean = beans.get(name);
+        if (bean == null) {
+            bean = beans.computeIfAbsent(name, (k) -> restore(beans, k, objectFactory.getObject()));
+        }
+        return bean;
+    }
+
+    private Object getExpiring(SessionBeans beans, String name, ObjectFactory<?> objectFactory, long ttl) {
+        long now = System.nanoTime();
+        ConcurrentMap<String, Long> deadlines = beans.deadlines();
+        Object bean = beans.get(name);
+        if (bean != null) {
+            Long deadline = deadlines.get(name);
+            if ((deadline != null) && (deadline - now < 0)) {
+                expire(beans, name, deadline);
+                bean = null;
+            }
+        }
+        if (bean == null) {
+            bean = beans.computeIfAbsent(name, (k) -> restore(beans, k, objectFactory.getObject()));
+        }
+        deadlines.put(name, now + ttl);
+        startSweeper();
+        return bean;
+    }
+
+    /**
+     * Destroys the bean if its deadline has not been prolonged concurrently.
+     */
+    private void expire(SessionBeans beans, String name, Long deadline) {
+        if (beans.deadlines().remove(name, deadline)) {
+            Object bean = beans.remove(name);
+            if (bean != null) {
+                log.debug("Expire session bean {}", name);
+                removeBean(bean);
+            }
+        }
+    }
+
+    /**
+     * Destroys the beans that have outlived their {@link TelegramScoped#ttlSeconds()} in all sessions.
+     *
+     * @param now current {@link System#nanoTime()}
+     */
+    void expireBeans(long now) {
+        for (SessionBeans beans : conversations.asMap().values()) {
+            ConcurrentMap<String, Long> deadlines = beans.deadlines;
+            if (deadlines == null) {
+                continue;
+            }
+            deadlines.forEach((name, deadline) -> {
+                if (deadline - now < 0) {
+                    expire(beans, name, deadline);
+                }
+            });
+        }
+    }
+
+    private long resolveTtl(String name) {
         try {
-            beans = conversations.get(sessionId);
-        } catch (ExecutionException e) {
-            throw new TelegramScopeException(e);
+            // Check the @Bean method first, then the bean class
+            MergedAnnotation<TelegramScoped> scoped = MergedAnnotation.missing();
+            if ((beanFactory.containsBeanDefinition(name))
+                    && (beanFactory.getBeanDefinition(name) instanceof AnnotatedBeanDefinition definition)
+                    && (definition.getFactoryMethodMetadata() != null)) {
+                scoped = definition.getFactoryMethodMetadata().getAnnotations().get(TelegramScoped.class);
+            }
+            if (!scoped.isPresent()) {
+                TelegramScoped annotation = beanFactory.findAnnotationOnBean(name, TelegramScoped.class);
+                scoped = (annotation != null) ? MergedAnnotation.from(annotation) : scoped;
+            }
+            if (scoped.isPresent() && (scoped.getLong("ttlSeconds") > 0)) {
+                return TimeUnit.SECONDS.toNanos(scoped.getLong("ttlSeconds"));
+            }
+        } catch (NoSuchBeanDefinitionException ex) {
+            log.debug("Bean {} has no definition, so it lives as long as the session", name);
         }
-        return beans.computeIfAbsent(name, (k) -> objectFactory.getObject());
+        return NO_TTL;
+    }
+
+    private void startSweeper() {
+        if (sweeper != null) {
+            return;
+        }
+        synchronized (beanTtls) {
+            if ((sweeper == null) && !stopped) {
+                ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("telegram-scope-sweeper-%d")
+                        .setDaemon(true)
+                        .build());
+                executor.scheduleWithFixedDelay(() -> {
+                    try {
+                        expireBeans(System.nanoTime());
+                    } catch (RuntimeException ex) {
+                        log.error("Session beans sweep has failed", ex);
+                    }
+                }, SWEEP_PERIOD_SECONDS, SWEEP_PERIOD_SECONDS, TimeUnit.SECONDS);
+                sweeper = executor;
+            }
+        }
+    }
+
+    /**
+     * Returns the bean of the current session if it has already been created.
+     *
+     * @param name bean name
+     * @return bean or {@code null}
+     */
+    Object getIfPresent(@NonNull String name) {
+        final Long sessionId = currentSessionId();
+        if (sessionId == null) {
+            return null;
+        }
+        final Map<String, Object> userBeans = conversations.getIfPresent(sessionId);
+        return (userBeans != null) ? userBeans.get(name) : null;
     }
 
     @Override
     public Object remove(@NonNull String name) {
-        final String sessionId = getConversationId();
+        final Long sessionId = currentSessionId();
         if (sessionId != null) {
             final Map<String, Object> userBeans = conversations.getIfPresent(sessionId);
             if (userBeans != null) {
@@ -107,13 +454,88 @@ public class TelegramScope implements Scope {
         return null;
     }
 
+    /**
+     * Returns id of the current session as a string. Is only used by Spring, scoped beans are looked up by the
+     * {@code long} id directly.
+     *
+     * @return current session id or {@code null}
+     */
     @Override
     public String getConversationId() {
-        Long id = USER_THREAD_LOCAL.get();
+        Long id = currentSessionId();
         if (id == null) {
             return null;
         }
         return Long.toString(id);
     }
 
+    /**
+     * Returns approximate count of the active sessions.
+     *
+     * @return sessions count
+     * @since 0.29
+     */
+    public long size() {
+        return conversations.estimatedSize();
+    }
+
+    /**
+     * Returns sessions cache statistics: hit rate, evictions count, etc.
+     *
+     * @return cache statistics
+     * @since 0.29
+     */
+    @NotNull
+    public CacheStats stats() {
+        return conversations.stats();
+    }
+
+    /**
+     * {@link TelegramSession} loaded from the session store: serialized items and the conversation state.
+     */
+    private record StoredSession(byte[] items, String state, long stateExpiresAt) {
+    }
+
+    /**
+     * Beans of the single session.
+     */
+    private static class SessionBeans extends ConcurrentHashMap<String, Object> {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Serialized beans loaded from the session store that have not been requested yet.
+         */
+        private volatile Map<String, StoredSession> restored;
+
+        /**
+         * Expiration deadlines of the beans with {@link TelegramScoped#ttlSeconds()}, created on demand.
+         */
+        private volatile ConcurrentMap<String, Long> deadlines;
+
+        SessionBeans() {
+            // Sessions usually hold just a few beans
+            super(4);
+        }
+
+        ConcurrentMap<String, Long> deadlines() {
+            ConcurrentMap<String, Long> result = deadlines;
+            if (result == null) {
+                synchronized (this) {
+                    result = deadlines;
+                    if (result == null) {
+                        result = new ConcurrentHashMap<>(4);
+                        deadlines = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Performs pending maintenance operations such as the eviction of expired sessions.
+     */
+    void cleanUp() {
+        conversations.cleanUp();
+    }
 }
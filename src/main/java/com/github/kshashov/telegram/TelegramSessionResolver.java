@@ -2,43 +2,102 @@ package com.github.kshashov.telegram;
 
 import com.github.kshashov.telegram.api.TelegramSession;
 import com.github.kshashov.telegram.handler.processor.TelegramEvent;
+import com.github.kshashov.telegram.handler.processor.UpdateUtils;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import org.springframework.aop.scope.ScopedProxyUtils;
 import org.springframework.context.ApplicationContext;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
+import java.util.Arrays;
 
+/**
+ * Resolves {@link TelegramSession} of the current request. The session is taken directly from {@link TelegramScope},
+ * so handler methods get the concrete session instead of the scoped proxy. The proxy is still used for the sessions
+ * injected into other beans.
+ */
 public class TelegramSessionResolver {
-    private ApplicationContext context;
+    private final ApplicationContext context;
+    private final TelegramScope scope;
+    private volatile String sessionBeanName;
 
     public TelegramSessionResolver(ApplicationContext context) {
+        this(context, null);
+    }
+
+    /**
+     * @param context application context
+     * @param scope   scope that stores the sessions
+     * @since 0.29
+     */
+    public TelegramSessionResolver(@NotNull ApplicationContext context, @Nullable TelegramScope scope) {
         this.context = context;
+        this.scope = scope;
     }
 
+    /**
+     * Binds {@link TelegramRequestContext} of the event to the current thread and returns the session. The context
+     * should be released with {@link TelegramSessionHolder#releaseSessionId()} once the event is processed.
+     *
+     * @param telegramEvent event
+     * @return session holder
+     */
     @NotNull
     public TelegramSessionHolder resolveTelegramSession(@NotNull TelegramEvent telegramEvent) {
-        TelegramScope.setIdThreadLocal(getSessionIdForRequest(telegramEvent));
-        return new TelegramSessionHolder(context.getBean(TelegramSession.class));
+        TelegramRequestContext context = new TelegramRequestContext(getSessionIdForRequest(telegramEvent), telegramEvent.getUpdate());
+        TelegramRequestContext.Binding binding = context.bind();
+        try {
+            return new TelegramSessionHolder(getSession(), binding);
+        } catch (RuntimeException ex) {
+            binding.close();
+            throw ex;
+        }
     }
 
-    private Long getSessionIdForRequest(@NotNull TelegramEvent telegramEvent) {
-        if (telegramEvent.getChat() != null) {
-            return telegramEvent.getChat().id();
-        } else if (telegramEvent.getUser() != null) {
-            return Long.valueOf(telegramEvent.getUser().id());
+    private TelegramSession getSession() {
+        String beanName = getSessionBeanName();
+        if ((scope == null) || (beanName == null)) {
+            return context.getBean(TelegramSession.class);
         }
 
-        // We are sure that update object could not be null
-        return Long.valueOf(telegramEvent.getUpdate().updateId());
+        Object session = scope.getIfPresent(beanName);
+        if (session == null) {
+            // Create the session through the bean factory, it will be stored in the scope
+            session = context.getBean(beanName);
+        }
+        return (TelegramSession) session;
+    }
+
+    /**
+     * Returns name of the scoped target bean behind the {@link TelegramSession} proxy.
+     */
+    private String getSessionBeanName() {
+        String beanName = sessionBeanName;
+        if (beanName == null) {
+            beanName = Arrays.stream(context.getBeanNamesForType(TelegramSession.class))
+                    .filter(ScopedProxyUtils::isScopedTarget)
+                    .findFirst()
+                    .orElse("");
+            sessionBeanName = beanName;
+        }
+        return beanName.isEmpty() ? null : beanName;
+    }
+
+    private Long getSessionIdForRequest(@NotNull TelegramEvent telegramEvent) {
+        return UpdateUtils.getSessionId(telegramEvent.getUpdate());
     }
 
     @Getter
     @AllArgsConstructor
     public static class TelegramSessionHolder {
         private final @NotNull TelegramSession session;
+        @Getter(AccessLevel.NONE)
+        private final @NotNull TelegramRequestContext.Binding binding;
 
         public void releaseSessionId() {
-            TelegramScope.removeId();
+            binding.close();
         }
     }
 }
@@ -0,0 +1,32 @@
+package com.github.kshashov.telegram.api;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Allows long-running handler methods to check whether their result is still needed. Could be declared as an argument
+ * of any handler method. For example, inline queries are cancelled as soon as a newer inline query is received from
+ * the same user.
+ *
+ * @since 0.29
+ */
+@FunctionalInterface
+public interface CancellationToken {
+    /**
+     * Token that is never cancelled.
+     */
+    CancellationToken NONE = () -> false;
+
+    /**
+     * @return {@code true} if the result of the current request is no longer needed
+     */
+    boolean isCancelled();
+
+    /**
+     * @throws CancellationException if the current request is cancelled
+     */
+    default void throwIfCancelled() throws CancellationException {
+        if (isCancelled()) {
+            throw new CancellationException("Telegram request has been cancelled");
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.kshashov.telegram.api;
 
 import com.github.kshashov.telegram.api.bind.annotation.BotRequest;
+import com.github.kshashov.telegram.handler.MessageWaiterRegistry;
 import com.pengrad.telegrambot.Callback;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.Chat;
@@ -8,12 +9,19 @@ import com.pengrad.telegrambot.model.Message;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.model.User;
 import com.pengrad.telegrambot.request.BaseRequest;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 
 import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 /**
  * Accumulates all available parameters from the initial request, the path pattern and path variables.
@@ -63,6 +71,7 @@ public class TelegramRequest {
      * The first non-empty object, if any, among:
      * <ul>
      *     <li>{@code message.text()}</li>
+     *     <li>{@code message.caption()}</li>
      *     <li>{@code update.inlineQuery.query()}</li>
      *     <li>{@code update.chosenInlineResult.query()}</li>
      *     <li>{@code update.callbackQuery.data()}</li>
@@ -89,6 +98,68 @@ public class TelegramRequest {
     @Setter
     private Callback callback;
 
+    /**
+     * All messages of the media group (album).
+     */
+    @Setter
+    @Nullable
+    private List<Message> mediaGroup;
+
+    /**
+     * Registry of the waiters for the next messages.
+     */
+    @Setter
+    @Getter(AccessLevel.NONE)
+    @Nullable
+    private MessageWaiterRegistry messageWaiters;
+
+    /**
+     * Returns all messages of the media group (album) sorted by message id. If the current request is not a media
+     * group, the list contains only {@link #message}, if any.
+     *
+     * @return media group messages
+     * @since 0.29
+     */
+    public List<Message> getMediaGroup() {
+        if (mediaGroup != null) {
+            return mediaGroup;
+        }
+        return (message != null) ? Collections.singletonList(message) : Collections.emptyList();
+    }
+
+    /**
+     * Returns the future that is completed with the next message in the current chat. The message is delivered to the
+     * future instead of the handler methods, and no thread is held while waiting.
+     *
+     * @param timeout max time to wait, then the future is completed with {@link java.util.concurrent.TimeoutException}
+     * @return future completed with the next message
+     * @throws IllegalStateException if the request has no chat
+     * @since 0.29
+     */
+    @NotNull
+    public CompletableFuture<Message> awaitNextMessage(@NotNull Duration timeout) {
+        return awaitNextMessage(null, timeout);
+    }
+
+    /**
+     * Returns the future that is completed with the next message in the current chat accepted by the filter. The
+     * message is delivered to the future instead of the handler methods, and no thread is held while waiting. Cancel the
+     * future to stop waiting.
+     *
+     * @param filter  filter for the messages, {@code null} to accept any message
+     * @param timeout max time to wait, then the future is completed with {@link java.util.concurrent.TimeoutException}
+     * @return future completed with the next matched message
+     * @throws IllegalStateException if the request has no chat
+     * @since 0.29
+     */
+    @NotNull
+    public CompletableFuture<Message> awaitNextMessage(@Nullable Predicate<Message> filter, @NotNull Duration timeout) {
+        if ((messageWaiters == null) || (chat == null)) {
+            throw new IllegalStateException("Waiting for the next message is not supported for the current request");
+        }
+        return messageWaiters.await(telegramBot, chat.id(), filter, timeout);
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("TelegramRequest{");
@@ -0,0 +1,52 @@
+package com.github.kshashov.telegram.api;
+
+import com.github.kshashov.telegram.TelegramScope;
+import org.springframework.context.annotation.Scope;
+import org.springframework.context.annotation.ScopedProxyMode;
+import org.springframework.core.annotation.AliasFor;
+
+import java.lang.annotation.*;
+
+/**
+ * Specialization of {@link Scope @Scope} for beans that live inside {@link TelegramScope}. Could be used on the
+ * component classes and on the {@code @Bean} methods.
+ *
+ * <p>By default, the scoped bean lives as long as the whole session. With {@link #ttlSeconds()} the bean expires on its
+ * own once it has not been accessed for the given time, while the rest of the session stays. It is useful for large
+ * transient objects like search results or wizard state: the next access after the expiration creates a new
+ * instance.</p>
+ *
+ * <pre class="code">
+ * &#064;Component
+ * &#064;TelegramScoped(ttlSeconds = 300)
+ * public class SearchResults {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @see TelegramScope
+ * @since 0.29
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Scope(TelegramScope.SCOPE)
+public @interface TelegramScoped {
+
+    /**
+     * Time after the last access when the bean is destroyed, in seconds. Non-positive values mean that the bean lives
+     * as long as the session.
+     *
+     * @return time to live in seconds
+     */
+    long ttlSeconds() default 0;
+
+    /**
+     * Alias for {@link Scope#proxyMode}. Defaults to {@link ScopedProxyMode#TARGET_CLASS}, so the bean could be injected
+     * into singletons.
+     *
+     * @return proxy mode
+     */
+    @AliasFor(annotation = Scope.class)
+    ScopedProxyMode proxyMode() default ScopedProxyMode.TARGET_CLASS;
+}
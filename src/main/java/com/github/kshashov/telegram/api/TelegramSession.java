@@ -1,16 +1,93 @@
 package com.github.kshashov.telegram.api;
 
 import com.github.kshashov.telegram.TelegramScope;
+import com.github.kshashov.telegram.api.bind.annotation.BotState;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import javax.annotation.Nullable;
+import java.time.Duration;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A Session instances are supposed to be created inside {@link TelegramScope}.
  *
+ * <p>Besides the items, the session keeps the current conversation state that is used to route the requests to the
+ * {@link BotState} handlers.</p>
+ *
  * @see TelegramScope
  */
 @Getter
 public class TelegramSession {
     private final ConcurrentHashMap<String, Object> items = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private volatile ConversationState state;
+
+    /**
+     * Returns the current conversation state.
+     *
+     * @return state or {@code null} if there is no state or it has expired
+     * @since 0.29
+     */
+    @Nullable
+    public String getState() {
+        ConversationState current = state;
+        if ((current == null) || current.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        return current.name();
+    }
+
+    /**
+     * Sets the current conversation state that never expires.
+     *
+     * @param state state or {@code null} to clear the current state
+     * @since 0.29
+     */
+    public void setState(@Nullable String state) {
+        setState(state, null);
+    }
+
+    /**
+     * Sets the current conversation state.
+     *
+     * @param state   state or {@code null} to clear the current state
+     * @param timeout time after which the state is cleared, {@code null} if the state never expires
+     * @since 0.29
+     */
+    public void setState(@Nullable String state, @Nullable Duration timeout) {
+        long expiresAt = (timeout == null) ? 0 : System.currentTimeMillis() + timeout.toMillis();
+        setState(state, expiresAt);
+    }
+
+    /**
+     * Returns the expiration time of the current state.
+     *
+     * @return expiration time in milliseconds since the epoch or 0 if the state never expires or there is no state
+     * @since 0.29
+     */
+    public long getStateExpiresAt() {
+        ConversationState current = state;
+        return (current == null) ? 0 : current.expiresAt();
+    }
+
+    /**
+     * Sets the current conversation state with the given expiration time. Is used to restore the session.
+     *
+     * @param state     state or {@code null} to clear the current state
+     * @param expiresAt expiration time in milliseconds since the epoch or 0 if the state never expires
+     * @since 0.29
+     */
+    public void setState(@Nullable String state, long expiresAt) {
+        this.state = (state == null) ? null : new ConversationState(state, expiresAt);
+    }
+
+    /**
+     * Name and expiration time of the state are replaced together, so they are always consistent.
+     */
+    private record ConversationState(String name, long expiresAt) {
+        boolean isExpired(long now) {
+            return (expiresAt != 0) && (now >= expiresAt);
+        }
+    }
 }
@@ -0,0 +1,54 @@
+package com.github.kshashov.telegram.api.bind.annotation;
+
+
+import com.github.kshashov.telegram.api.MessageType;
+import com.github.kshashov.telegram.api.TelegramRequest;
+import com.github.kshashov.telegram.handler.DefaultRequestMappingsMatcherStrategy;
+import org.springframework.core.annotation.AliasFor;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation for mapping batches of telegram requests onto methods in request-handling classes. Unlike {@link
+ * BotRequest} methods, the batch method is invoked once per polled batch of updates (or once per time/size window for
+ * webhooks) with all matched requests. It is useful for handlers that only record analytics or store the messages,
+ * so they could process the whole batch at once.
+ *
+ * <p>Batch methods are invoked in addition to the {@link BotRequest} methods and support the following arguments:
+ * {@code List<TelegramRequest>} with the matched requests in the received order and {@code TelegramBot}. The return
+ * value is ignored.</p>
+ *
+ * <p><strong>Note:</strong> works only with methods in the class marked with {@link BotController} annotation</p>.
+ *
+ * @see BotRequest
+ * @see TelegramRequest
+ * @since 0.29
+ */
+@Target({ElementType.METHOD, ElementType.ANNOTATION_TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface BotBatchRequest {
+
+    /**
+     * The primary mapping expressed by this annotation.
+     * <p>This is an alias for {@link #path}. For example
+     * {@code @BotBatchRequest("/foo")} is equivalent to {@code @BotBatchRequest(path="/foo")}.
+     *
+     * @return Request mapping templates.
+     */
+    @AliasFor("path")
+    String[] value() default {};
+
+    /**
+     * @return Request mapping templates (e.g. "/foo"). Ant-style path patterns are also supported (e.g. "/foo *", "/foo
+     * {param:[0-9]}"). An empty patterns list matches any request. See {@link DefaultRequestMappingsMatcherStrategy}.
+     * @see org.springframework.util.AntPathMatcher
+     */
+    @AliasFor("value")
+    String[] path() default {};
+
+    /**
+     * @return Telegram request types to map.
+     */
+    MessageType[] type() default {MessageType.ANY};
+}
@@ -0,0 +1,68 @@
+package com.github.kshashov.telegram.api.bind.annotation;
+
+import com.github.kshashov.telegram.api.TelegramSession;
+
+import java.lang.annotation.*;
+
+/**
+ * Binds the {@link BotRequest} handler method to the conversation states and declares the transition that is
+ * performed once the method has completed successfully. The current state is stored in {@link TelegramSession}.
+ *
+ * <p>Handlers with states are matched only when the session is in one of the given states. They take precedence over
+ * the handlers without states, which are matched in any state:</p>
+ * <pre class="code">
+ * &#064;MessageRequest("/order")
+ * &#064;BotState(next = "address", timeoutSeconds = 600)
+ * public String order() {
+ *     return "Enter the address";
+ * }
+ *
+ * &#064;MessageRequest
+ * &#064;BotState(value = "address", next = BotState.END)
+ * public String address(String text) {
+ *     return "Will be delivered to " + text;
+ * }
+ * </pre>
+ *
+ * <p><strong>Note:</strong> works only with methods in the class marked with {@link BotController} annotation</p>.
+ *
+ * @see TelegramSession#getState()
+ * @since 0.29
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface BotState {
+
+    /**
+     * Value of {@link #next()} that keeps the current state.
+     */
+    String KEEP = "";
+
+    /**
+     * Value of {@link #next()} that clears the current state.
+     */
+    String END = "<end>";
+
+    /**
+     * States in which the method is matched. Empty means that the method is matched in any state.
+     *
+     * @return states
+     */
+    String[] value() default {};
+
+    /**
+     * State of the session after the successful invocation of the method. {@link #KEEP} by default.
+     *
+     * @return next state
+     */
+    String next() default KEEP;
+
+    /**
+     * Time after which the {@link #next()} state is cleared if no other transition happens. Non-positive values mean
+     * that the state never expires.
+     *
+     * @return timeout in seconds
+     */
+    long timeoutSeconds() default 0;
+}
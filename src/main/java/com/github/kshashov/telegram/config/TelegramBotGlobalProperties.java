@@ -1,14 +1,19 @@
 package com.github.kshashov.telegram.config;
 
 import com.github.kshashov.telegram.handler.RequestMappingsMatcherStrategy;
+import com.github.kshashov.telegram.handler.filter.UpdateFilter;
 import com.github.kshashov.telegram.handler.processor.arguments.BotHandlerMethodArgumentResolver;
 import com.github.kshashov.telegram.handler.processor.response.BotHandlerMethodReturnValueHandler;
+import com.github.kshashov.telegram.outbound.OutboundScheduler;
 import com.pengrad.telegrambot.Callback;
 import com.pengrad.telegrambot.TelegramBot;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +32,11 @@ public class TelegramBotGlobalProperties {
     private final @NotNull Callback responseCallback;
     private final @NotNull List<BotHandlerMethodArgumentResolver> argumentResolvers;
     private final @NotNull List<BotHandlerMethodReturnValueHandler> returnValueHandlers;
+    private final @NotNull List<UpdateFilter> updateFilters;
+    private final @NotNull Duration mediaGroupWindow;
+    private final @NotNull Duration batchWindow;
+    private final int batchMaxSize;
+    private final @Nullable OutboundScheduler outboundScheduler;
     private final @NotNull Map<String, Consumer<TelegramBotProperties.Builder>> botProperties;
     private final @NotNull Map<String, Consumer<TelegramBot>> botProcessors;
 
@@ -45,6 +55,11 @@ public class TelegramBotGlobalProperties {
         private Callback responseCallback;
         private List<BotHandlerMethodArgumentResolver> argumentResolvers;
         private List<BotHandlerMethodReturnValueHandler> returnValueHandlers;
+        private final List<UpdateFilter> updateFilters = new ArrayList<>();
+        private Duration mediaGroupWindow = Duration.ZERO;
+        private Duration batchWindow = Duration.ofSeconds(1);
+        private int batchMaxSize = 100;
+        private OutboundScheduler outboundScheduler;
         private int webserverPort;
 
         private String primaryBotToken;
@@ -98,6 +113,75 @@ public class TelegramBotGlobalProperties {
             return this;
         }
 
+        /**
+         * Specify filters that are applied to the received updates before they are submitted to the task executor.
+         * Replaces previously added filters.
+         *
+         * @param updateFilters filters list
+         * @return current instance
+         * @since 0.29
+         */
+        public Builder updateFilters(@NotNull List<UpdateFilter> updateFilters) {
+            this.updateFilters.clear();
+            this.updateFilters.addAll(updateFilters);
+            return this;
+        }
+
+        /**
+         * Add filter that is applied to the received updates before they are submitted to the task executor.
+         *
+         * @param updateFilter filter
+         * @return current instance
+         * @since 0.29
+         */
+        public Builder addUpdateFilter(@NotNull UpdateFilter updateFilter) {
+            this.updateFilters.add(updateFilter);
+            return this;
+        }
+
+        /**
+         * Specify how long the parts of media group (album) are buffered before the whole group is dispatched to a
+         * single handler method. Zero window disables the aggregation, so each part is dispatched separately.
+         *
+         * @param mediaGroupWindow time to wait for the next part of media group
+         * @return current instance
+         * @since 0.29
+         */
+        public Builder mediaGroupWindow(@NotNull Duration mediaGroupWindow) {
+            this.mediaGroupWindow = mediaGroupWindow;
+            return this;
+        }
+
+        /**
+         * Specify how updates received one by one via webhooks are collected into batches for
+         * {@link com.github.kshashov.telegram.api.bind.annotation.BotBatchRequest} handler methods. Polled updates
+         * are always processed as a single batch. Zero window disables the collecting, so each webhook update is a
+         * separate batch.
+         *
+         * @param window  max time since the first update of the batch. 1 second by default
+         * @param maxSize max count of the updates in the batch. 100 by default
+         * @return current instance
+         * @since 0.29
+         */
+        public Builder batchWindow(@NotNull Duration window, int maxSize) {
+            this.batchWindow = window;
+            this.batchMaxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Specify scheduler that sends the requests submitted by the handler methods with respect to the Telegram
+         * rate limits. {@code null} to send the requests immediately.
+         *
+         * @param outboundScheduler outbound scheduler
+         * @return current instance
+         * @since 0.29
+         */
+        public Builder outboundScheduler(@Nullable OutboundScheduler outboundScheduler) {
+            this.outboundScheduler = outboundScheduler;
+            return this;
+        }
+
         /**
          * Provide configuration for specified bot.
          *
@@ -124,10 +208,11 @@ public class TelegramBotGlobalProperties {
         }
 
         /**
-         * 主机器人 令牌
+         * Specify token of the primary bot that is used by {@link com.github.kshashov.telegram.handler.TelegramExecuteHandler}
+         * by default.
          *
-         * @param token 令牌
-         * @return Builder
+         * @param token bot token
+         * @return current instance
          */
         public Builder primaryBotToken(@NotNull String token) {
             this.primaryBotToken = token;
@@ -144,7 +229,9 @@ public class TelegramBotGlobalProperties {
         }
 
         public TelegramBotGlobalProperties build() {
-            return new TelegramBotGlobalProperties(webserverPort, taskExecutor, matcherStrategy, responseCallback, argumentResolvers, returnValueHandlers, botProperties, botProcessors, primaryBotToken);
+            TelegramBotGlobalProperties globalProperties = new TelegramBotGlobalProperties(webserverPort, taskExecutor, matcherStrategy, responseCallback, argumentResolvers, returnValueHandlers, updateFilters, mediaGroupWindow, batchWindow, batchMaxSize, outboundScheduler, botProperties, botProcessors, primaryBotToken);
+            updateFilters.forEach(filter -> filter.init(globalProperties));
+            return globalProperties;
         }
     }
 }
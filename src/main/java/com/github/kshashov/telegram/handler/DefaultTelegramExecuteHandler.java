@@ -4,17 +4,22 @@ import com.github.kshashov.telegram.config.TelegramBotGlobalProperties;
 import com.github.kshashov.telegram.handler.processor.TelegramCallback;
 import com.github.kshashov.telegram.handler.processor.Template;
 import com.github.kshashov.telegram.metrics.MetricsService;
+import com.github.kshashov.telegram.outbound.OutboundScheduler;
+import com.github.kshashov.telegram.outbound.RequestSupersededException;
 import com.pengrad.telegrambot.Callback;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.request.BaseRequest;
 import com.pengrad.telegrambot.request.SendMessage;
 import com.pengrad.telegrambot.response.BaseResponse;
+import com.pengrad.telegrambot.response.SendResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.thymeleaf.ITemplateEngine;
 import org.thymeleaf.context.Context;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -70,13 +75,13 @@ public class DefaultTelegramExecuteHandler implements TelegramExecuteHandler {
             @Override
             public void onResponse(BaseRequest request, BaseResponse response) {
                 if (log.isDebugEnabled()) {
-                    log.debug("发送成功：{} {}", request, response);
+                    log.debug("{} request was successfully executed: {}", request, response);
                 }
             }
 
             @Override
             public void onFailure(BaseRequest request, IOException e) {
-                log.error("发送失败", e);
+                log.error(request + " request was failed", e);
             }
         }));
     }
@@ -89,7 +94,7 @@ public class DefaultTelegramExecuteHandler implements TelegramExecuteHandler {
      */
     @Override
     public void execute(TelegramBot bot, TelegramCallback baseRequest) {
-        bot.execute(baseRequest.getRequest(), new Callback() {
+        send(bot, baseRequest.getRequest(), new Callback() {
             @Override
             public void onResponse(BaseRequest request, BaseResponse response) {
                 baseRequest.onResponse(request, response);
@@ -101,12 +106,25 @@ public class DefaultTelegramExecuteHandler implements TelegramExecuteHandler {
             public void onFailure(BaseRequest request, IOException e) {
                 baseRequest.onFailure(request, e);
                 globalProperties.getResponseCallback().onFailure(request, e);
+                if (e instanceof RequestSupersededException) {
+                    log.debug("{} request was superseded by the newer edit", baseRequest);
+                    return;
+                }
                 metricsService.onUpdateError();
                 log.error(baseRequest + " request was failed", e);
             }
         });
     }
 
+    private <T extends BaseRequest<T, R>, R extends BaseResponse> void send(TelegramBot bot, T request, Callback<T, R> callback) {
+        OutboundScheduler outboundScheduler = globalProperties.getOutboundScheduler();
+        if (outboundScheduler != null) {
+            outboundScheduler.execute(bot, request, callback);
+        } else {
+            bot.execute(request, callback);
+        }
+    }
+
     /**
      * sends the request by template to the Telegram.
      *
@@ -116,14 +134,36 @@ public class DefaultTelegramExecuteHandler implements TelegramExecuteHandler {
      */
     @Override
     public <T> void execute(TelegramBot bot, String chatId, Template<T> template) {
+        SendMessage sendMessage = buildMessage(chatId, template);
+        if (sendMessage != null) {
+            this.execute(bot, sendMessage);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<SendResponse> executeAsync(String chatId, Template<T> template) {
+        return executeAsync(defaultBot, chatId, template);
+    }
+
+    @Override
+    public <T> CompletableFuture<SendResponse> executeAsync(TelegramBot bot, String chatId, Template<T> template) {
+        SendMessage sendMessage = buildMessage(chatId, template);
+        if (sendMessage == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return executeAsync(bot, sendMessage);
+    }
+
+    @Nullable
+    private <T> SendMessage buildMessage(String chatId, Template<T> template) {
         if (templateEngine == null) {
-            throw new RuntimeException("未初始化模板引擎");
+            throw new IllegalStateException("Template engine is not initialized");
         }
         Context context = new Context();
         context.setVariable("model", template.getModel());
         String message = templateEngine.process(template.getTemplate(), context);
         if (message == null) {
-            return;
+            return null;
         }
         SendMessage sendMessage = new SendMessage(chatId, message)
                 .parseMode(template.parseMode())
@@ -133,8 +173,6 @@ public class DefaultTelegramExecuteHandler implements TelegramExecuteHandler {
         if (template.getKeyboard() != null) {
             sendMessage.replyMarkup(template.getKeyboard());
         }
-        this.execute(sendMessage);
+        return sendMessage;
     }
-
-
 }
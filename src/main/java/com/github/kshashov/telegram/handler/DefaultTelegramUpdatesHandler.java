@@ -1,38 +1,75 @@
 package com.github.kshashov.telegram.handler;
 
 import com.github.kshashov.telegram.config.TelegramBotGlobalProperties;
+import com.github.kshashov.telegram.handler.filter.UpdateFilter;
+import com.github.kshashov.telegram.handler.filter.UpdateFilterChain;
+import com.github.kshashov.telegram.handler.processor.BatchRequestDispatcher;
 import com.github.kshashov.telegram.handler.processor.RequestDispatcher;
 import com.github.kshashov.telegram.handler.processor.TelegramCallback;
 import com.github.kshashov.telegram.handler.processor.TelegramEvent;
 import com.github.kshashov.telegram.metrics.MetricsService;
+import com.github.kshashov.telegram.outbound.OutboundScheduler;
+import com.github.kshashov.telegram.outbound.RequestSupersededException;
 import com.pengrad.telegrambot.Callback;
 import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Message;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.request.BaseRequest;
 import com.pengrad.telegrambot.response.BaseResponse;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
- * Default implementation that processes {@link List} of {@link Update} updates with {@link RequestDispatcher}.
+ * Default implementation that processes {@link List} of {@link Update} updates with {@link RequestDispatcher} and
+ * {@link BatchRequestDispatcher}.
  */
 @Slf4j
 public class DefaultTelegramUpdatesHandler implements TelegramUpdatesHandler {
     private final RequestDispatcher botRequestDispatcher;
+    private final BatchRequestDispatcher batchRequestDispatcher;
     private final TelegramBotGlobalProperties globalProperties;
     private final MetricsService metricsService;
+    private final UpdateFilterChain updateFilter;
+    private final MediaGroupAggregator mediaGroupAggregator;
+    private final UpdateBatcher updateBatcher;
 
     public DefaultTelegramUpdatesHandler(@NotNull RequestDispatcher botRequestDispatcher, @NotNull TelegramBotGlobalProperties globalProperties, @NotNull MetricsService metricsService) {
+        this(botRequestDispatcher, null, globalProperties, metricsService);
+    }
+
+    /**
+     * @param botRequestDispatcher   dispatcher for the {@code BotRequest} handler methods
+     * @param batchRequestDispatcher dispatcher for the {@code BotBatchRequest} handler methods, if any
+     * @param globalProperties       global properties
+     * @param metricsService         metrics service
+     * @since 0.29
+     */
+    public DefaultTelegramUpdatesHandler(@NotNull RequestDispatcher botRequestDispatcher, @Nullable BatchRequestDispatcher batchRequestDispatcher, @NotNull TelegramBotGlobalProperties globalProperties, @NotNull MetricsService metricsService) {
         this.botRequestDispatcher = botRequestDispatcher;
+        this.batchRequestDispatcher = batchRequestDispatcher;
         this.globalProperties = globalProperties;
         this.metricsService = metricsService;
+        this.updateFilter = new UpdateFilterChain(globalProperties.getUpdateFilters());
+        this.mediaGroupAggregator = globalProperties.getMediaGroupWindow().isZero()
+                ? null
+                : new MediaGroupAggregator(globalProperties.getMediaGroupWindow(), this::submit);
+        this.updateBatcher = ((batchRequestDispatcher == null) || globalProperties.getBatchWindow().isZero())
+                ? null
+                : new UpdateBatcher(globalProperties.getBatchWindow(), globalProperties.getBatchMaxSize(), this::submitBatch);
     }
 
     /**
      * Processes updates with {@link RequestDispatcher}. Sends the processing result to the Telegram.
+     * Updates rejected by any of {@link UpdateFilter} filters are dropped on the current thread. Parts of media groups
+     * are buffered by {@link MediaGroupAggregator} and processed together. All accepted updates are also passed to the
+     * batch handler methods at once.
      *
      * @param token   token
      * @param bot     bot
@@ -40,33 +77,152 @@ public class DefaultTelegramUpdatesHandler implements TelegramUpdatesHandler {
      */
     @Override
     public void processUpdates(@NotNull String token, @NotNull TelegramBot bot, @NotNull List<Update> updates) {
+        process(token, bot, updates, false);
+    }
+
+    /**
+     * Processes update the same way as {@link #processUpdates} does, but the update is passed to the batch handler
+     * methods together with the other updates received within the configured batch window.
+     *
+     * @param token  token
+     * @param bot    bot
+     * @param update telegram update
+     */
+    @Override
+    public void processUpdate(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        process(token, bot, Collections.singletonList(update), true);
+    }
+
+    private void process(@NotNull String token, @NotNull TelegramBot bot, @NotNull List<Update> updates, boolean windowed) {
         metricsService.onUpdatesReceived(updates.size());
+        List<Update> batch = ((batchRequestDispatcher != null) && batchRequestDispatcher.hasHandlers(token))
+                ? new ArrayList<>(updates.size())
+                : null;
         try {
             for (Update update : updates) {
-                globalProperties.getTaskExecutor().execute(() -> {
-                    try {
-                        TelegramEvent event = new TelegramEvent(token, update, bot);
-
-                        TelegramCallback executionResult = botRequestDispatcher.execute(event);
-                        if ((executionResult != null) && (executionResult.getRequest() != null)) {
-                            // Execute telegram request from controller response
-                            log.debug("Controller returned Telegram request {}", executionResult);
-                            postExecute(executionResult, bot);
-                        }
-                    } catch (IllegalStateException e) {
-                        metricsService.onUpdateError();
-                        log.error("Execution error", e);
-                    }
-                });
+                if (!updateFilter.filter(token, bot, update)) {
+                    metricsService.onUpdateFiltered();
+                    continue;
+                }
+
+                if (batch != null) {
+                    batch.add(update);
+                }
+                if ((mediaGroupAggregator == null) || !mediaGroupAggregator.offer(token, bot, update)) {
+                    submit(token, bot, Collections.singletonList(update));
+                }
             }
         } catch (Exception e) {
             log.error("An unhandled exception occurred while processing the Telegram request", e);
         }
+
+        if ((batch == null) || batch.isEmpty()) {
+            return;
+        }
+        if (windowed && (updateBatcher != null)) {
+            batch.forEach(update -> updateBatcher.offer(token, bot, update));
+        } else {
+            submitBatch(token, bot, batch);
+        }
+    }
+
+    /**
+     * Flushes the buffered media groups and batches.
+     */
+    @Override
+    public void shutdown() {
+        if (mediaGroupAggregator != null) {
+            mediaGroupAggregator.close();
+        }
+        if (updateBatcher != null) {
+            updateBatcher.close();
+        }
+    }
+
+    private void submitBatch(@NotNull String token, @NotNull TelegramBot bot, @NotNull List<Update> updates) {
+        try {
+            globalProperties.getTaskExecutor().execute(() -> batchRequestDispatcher.execute(token, bot, updates));
+        } catch (RejectedExecutionException e) {
+            metricsService.onUpdateError();
+            log.error("Batch of {} updates has been rejected by the task executor", updates.size());
+        }
+    }
+
+    private void submit(@NotNull String token, @NotNull TelegramBot bot, @NotNull List<Update> updates) {
+        try {
+            globalProperties.getTaskExecutor().execute(() -> {
+                try {
+                    List<Update> accepted = preHandle(token, bot, updates);
+                    if (accepted.isEmpty()) {
+                        return;
+                    }
+
+                    TelegramEvent event = createEvent(token, bot, accepted);
+
+                    TelegramCallback executionResult = botRequestDispatcher.execute(event);
+                    if ((executionResult != null) && (executionResult.getRequest() != null)) {
+                        // Execute telegram request from controller response
+                        log.debug("Controller returned Telegram request {}", executionResult);
+                        postExecute(executionResult, bot);
+                    }
+                } catch (IllegalStateException e) {
+                    metricsService.onUpdateError();
+                    log.error("Execution error", e);
+                } finally {
+                    updates.forEach(update -> updateFilter.afterCompletion(token, bot, update));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            metricsService.onUpdateError();
+            updates.forEach(update -> updateFilter.afterCompletion(token, bot, update));
+            log.error("Updates {} have been rejected by the task executor", updates.stream().map(Update::updateId).toList());
+        }
+    }
+
+    private List<Update> preHandle(@NotNull String token, @NotNull TelegramBot bot, @NotNull List<Update> updates) {
+        if (updates.size() == 1) {
+            if (updateFilter.preHandle(token, bot, updates.get(0))) {
+                return updates;
+            }
+            metricsService.onUpdateFiltered();
+            return Collections.emptyList();
+        }
+
+        List<Update> accepted = new ArrayList<>(updates.size());
+        for (Update update : updates) {
+            if (updateFilter.preHandle(token, bot, update)) {
+                accepted.add(update);
+            } else {
+                metricsService.onUpdateFiltered();
+            }
+        }
+        return accepted;
+    }
+
+    private TelegramEvent createEvent(@NotNull String token, @NotNull TelegramBot bot, @NotNull List<Update> updates) {
+        if (updates.size() == 1) {
+            return new TelegramEvent(token, updates.get(0), bot);
+        }
+
+        // Album caption is usually attached to one of the messages, so use it for routing
+        Update main = null;
+        List<Message> mediaGroup = new ArrayList<>(updates.size());
+        for (Update update : updates) {
+            Message message = (update.message() != null) ? update.message() : update.channelPost();
+            mediaGroup.add(message);
+            if ((main == null) && (message.caption() != null)) {
+                main = update;
+            }
+        }
+        if (main == null) {
+            main = updates.get(0);
+        }
+        return new TelegramEvent(token, main, bot, Collections.unmodifiableList(mediaGroup));
     }
 
     @SuppressWarnings("unchecked")
     private void postExecute(TelegramCallback baseRequest, @NotNull TelegramBot telegramBot) {
-        telegramBot.execute(baseRequest.getRequest(), new Callback() {
+        send(telegramBot, baseRequest.getRequest(), new Callback() {
             @Override
             public void onResponse(BaseRequest request, BaseResponse response) {
                 baseRequest.onResponse(request, response);
@@ -78,9 +234,22 @@ public class DefaultTelegramUpdatesHandler implements TelegramUpdatesHandler {
             public void onFailure(BaseRequest request, IOException e) {
                 baseRequest.onFailure(request, e);
                 globalProperties.getResponseCallback().onFailure(request, e);
+                if (e instanceof RequestSupersededException) {
+                    log.debug("{} request was superseded by the newer edit", baseRequest);
+                    return;
+                }
                 metricsService.onUpdateError();
                 log.error(baseRequest + " request was failed", e);
             }
         });
     }
+
+    private <T extends BaseRequest<T, R>, R extends BaseResponse> void send(TelegramBot bot, T request, Callback<T, R> callback) {
+        OutboundScheduler outboundScheduler = globalProperties.getOutboundScheduler();
+        if (outboundScheduler != null) {
+            outboundScheduler.execute(bot, request, callback);
+        } else {
+            bot.execute(request, callback);
+        }
+    }
 }
@@ -12,23 +12,49 @@ import lombok.Setter;
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Thread-Unsafe helper entity which is used to accumulate handlers during the {@link TelegramControllerBeanPostProcessor} processing.
  */
 public class HandlerMethodContainer {
     private final Map<String, List<RequestMapping>> handlers = new HashMap<>();
+    private final Map<String, List<RequestMapping>> batchHandlers = new HashMap<>();
+    private final Map<String, Map<String, List<RequestMapping>>> stateHandlers = new HashMap<>();
+    private final Map<HandlerMethod, StateTransition> transitions = new HashMap<>();
     private RequestMappingsMatcherStrategy matcherStrategy;
 
     @NotNull
     public HandlerLookupResult lookupHandlerMethod(@NotNull TelegramEvent telegramEvent) {
+        return lookupHandlerMethod(telegramEvent, null);
+    }
+
+    /**
+     * Looks up the handler among the handlers bound to the given conversation state first, then among the handlers
+     * without states.
+     *
+     * @param telegramEvent telegram event
+     * @param state         current conversation state
+     * @return lookup result
+     * @since 0.29
+     */
+    @NotNull
+    public HandlerLookupResult lookupHandlerMethod(@NotNull TelegramEvent telegramEvent, @Nullable String state) {
         if (matcherStrategy == null) throw new IllegalStateException("MatcherStrategy is not set");
 
-        List<RequestMapping> botMethods = handlers.get(telegramEvent.getToken());
+        if (state != null) {
+            Map<String, List<RequestMapping>> botStates = stateHandlers.get(telegramEvent.getToken());
+            if (botStates != null) {
+                HandlerLookupResult result = findHandlerMethod(telegramEvent, botStates.get(state));
+                if (result.getHandlerMethod() != null) {
+                    return result;
+                }
+            }
+        }
+        return findHandlerMethod(telegramEvent, handlers.get(telegramEvent.getToken()));
+    }
+
+    private HandlerLookupResult findHandlerMethod(TelegramEvent telegramEvent, List<RequestMapping> botMethods) {
         if (botMethods != null) {
             for (RequestMapping botMappings : botMethods) {
                 RequestMappingInfo info = botMappings.getMappingInfo();
@@ -47,17 +73,116 @@ public class HandlerMethodContainer {
         return new HandlerLookupResult();
     }
 
+    /**
+     * Returns all batch handlers matched with the given event. Each handler is returned once with its most specific
+     * matched mapping.
+     *
+     * @param telegramEvent telegram event
+     * @return matched batch handlers
+     * @since 0.29
+     */
+    @NotNull
+    public List<HandlerLookupResult> lookupBatchHandlerMethods(@NotNull TelegramEvent telegramEvent) {
+        if (matcherStrategy == null) throw new IllegalStateException("MatcherStrategy is not set");
+
+        List<RequestMapping> botMethods = batchHandlers.get(telegramEvent.getToken());
+        if (botMethods == null) {
+            return Collections.emptyList();
+        }
+
+        List<HandlerLookupResult> result = new ArrayList<>();
+        Set<HandlerMethod> matched = new HashSet<>();
+        for (RequestMapping botMappings : botMethods) {
+            RequestMappingInfo info = botMappings.getMappingInfo();
+            if (!matched.contains(botMappings.getHandlerMethod()) && matcherStrategy.isMatched(telegramEvent, info)) {
+                matched.add(botMappings.getHandlerMethod());
+                Map<String, String> variables = matcherStrategy.extractPatternVariables(telegramEvent.getText(), info);
+                result.add(new HandlerLookupResult(botMappings.getHandlerMethod(), info.getPattern(), variables));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param token bot token
+     * @return {@code true} if there are batch handlers for the given bot
+     * @since 0.29
+     */
+    public boolean hasBatchHandlers(@NotNull String token) {
+        return batchHandlers.containsKey(token);
+    }
+
     public HandlerMethod registerController(@NotNull Object bean, @NotNull Method method, @NotNull List<RequestMappingInfo> mappingInfo) {
+        return register(handlers, bean, method, mappingInfo);
+    }
+
+    /**
+     * Registers method that is matched only in the given conversation states.
+     *
+     * @param bean        controller
+     * @param method      handler method
+     * @param mappingInfo request mappings
+     * @param states      conversation states, the method is matched in any state if empty
+     * @param transition  transition performed after the successful invocation or {@code null} to keep the state
+     * @return handler method
+     * @since 0.29
+     */
+    public HandlerMethod registerController(@NotNull Object bean, @NotNull Method method, @NotNull List<RequestMappingInfo> mappingInfo, @NotNull Set<String> states, @Nullable StateTransition transition) {
         if (mappingInfo.isEmpty()) return null;
+
         HandlerMethod handlerMethod = new HandlerMethod(bean, method);
-        List<RequestMapping> botHandlers = handlers.computeIfAbsent(mappingInfo.get(0).getToken(), (k) -> new ArrayList<>());
-        mappingInfo.forEach(info -> botHandlers.add(new RequestMapping(info, handlerMethod)));
+        if (states.isEmpty()) {
+            addMappings(handlers, mappingInfo.get(0).getToken(), handlerMethod, mappingInfo);
+        } else {
+            Map<String, List<RequestMapping>> botStates = stateHandlers.computeIfAbsent(mappingInfo.get(0).getToken(), (k) -> new HashMap<>());
+            states.forEach(state -> addMappings(botStates, state, handlerMethod, mappingInfo));
+        }
+        if (transition != null) {
+            transitions.put(handlerMethod, transition);
+        }
         return handlerMethod;
     }
 
+    /**
+     * @param handlerMethod handler method
+     * @return transition declared for the handler method or {@code null} if the state should be kept
+     * @since 0.29
+     */
+    @Nullable
+    public StateTransition getStateTransition(@NotNull HandlerMethod handlerMethod) {
+        return transitions.get(handlerMethod);
+    }
+
+    /**
+     * Registers method that processes batches of requests.
+     *
+     * @param bean        controller
+     * @param method      handler method
+     * @param mappingInfo request mappings
+     * @return handler method
+     * @since 0.29
+     */
+    public HandlerMethod registerBatchController(@NotNull Object bean, @NotNull Method method, @NotNull List<RequestMappingInfo> mappingInfo) {
+        return register(batchHandlers, bean, method, mappingInfo);
+    }
+
     public void setMatcherStrategy(@NotNull RequestMappingsMatcherStrategy matcherStrategy) {
         this.matcherStrategy = matcherStrategy;
         handlers.replaceAll((key, value) -> matcherStrategy.postProcess(value));
+        batchHandlers.replaceAll((key, value) -> matcherStrategy.postProcess(value));
+        stateHandlers.values().forEach(botStates -> botStates.replaceAll((key, value) -> matcherStrategy.postProcess(value)));
+    }
+
+    private HandlerMethod register(Map<String, List<RequestMapping>> handlers, Object bean, Method method, List<RequestMappingInfo> mappingInfo) {
+        if (mappingInfo.isEmpty()) return null;
+        HandlerMethod handlerMethod = new HandlerMethod(bean, method);
+        addMappings(handlers, mappingInfo.get(0).getToken(), handlerMethod, mappingInfo);
+        return handlerMethod;
+    }
+
+    private void addMappings(Map<String, List<RequestMapping>> handlers, String key, HandlerMethod handlerMethod, List<RequestMappingInfo> mappingInfo) {
+        List<RequestMapping> keyHandlers = handlers.computeIfAbsent(key, (k) -> new ArrayList<>());
+        mappingInfo.forEach(info -> keyHandlers.add(new RequestMapping(info, handlerMethod)));
     }
 
     @Getter
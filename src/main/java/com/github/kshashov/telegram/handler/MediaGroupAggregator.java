@@ -0,0 +1,160 @@
+package com.github.kshashov.telegram.handler;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.model.Update;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Buffers the messages that share the same {@code media_group_id} (albums) and passes them further as a single group.
+ * The group is flushed once no new parts have been received for the configured window, or immediately once it reaches
+ * the max album size.
+ *
+ * <p>Parts received after the group has been flushed start a new group.</p>
+ */
+@Slf4j
+public class MediaGroupAggregator {
+    /**
+     * Max count of the messages in a single album.
+     */
+    static final int MAX_GROUP_SIZE = 10;
+
+    private static final Comparator<Update> BY_MESSAGE_ID = Comparator.comparing(u -> getGroupMessage(u).messageId());
+
+    private final ConcurrentMap<GroupKey, Group> groups = new ConcurrentHashMap<>();
+    private final long windowNanos;
+    private final MediaGroupListener listener;
+    private final ScheduledExecutorService scheduler;
+
+    public MediaGroupAggregator(@NotNull Duration window, @NotNull MediaGroupListener listener) {
+        this.windowNanos = window.toNanos();
+        this.listener = listener;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("telegram-media-groups-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Buffers the update if it is a part of media group.
+     *
+     * @param token  bot token
+     * @param bot    bot
+     * @param update telegram update
+     * @return {@code true} if the update has been buffered, {@code false} if it is not a part of media group or the
+     * aggregator has been closed, so it should be processed as is
+     */
+    public boolean offer(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        Message message = getGroupMessage(update);
+        if ((message == null) || (message.mediaGroupId() == null)) {
+            return false;
+        }
+
+        GroupKey key = new GroupKey(token, message.chat() != null ? message.chat().id() : 0L, message.mediaGroupId());
+        boolean[] buffered = {true};
+        groups.compute(key, (k, group) -> {
+            boolean created = (group == null);
+            if (created) {
+                group = new Group(bot);
+            }
+            long delay = (group.updates.size() + 1 >= MAX_GROUP_SIZE) ? 0 : windowNanos;
+            Group scheduled = group;
+            ScheduledFuture<?> flushTask;
+            try {
+                flushTask = scheduler.schedule(() -> flush(k, scheduled), delay, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ex) {
+                // The aggregator is being closed, so the buffered parts are flushed by close()
+                buffered[0] = false;
+                return created ? null : group;
+            }
+
+            if (group.flushTask != null) {
+                group.flushTask.cancel(false);
+            }
+            group.updates.add(update);
+            group.flushTask = flushTask;
+            return group;
+        });
+        return buffered[0];
+    }
+
+    /**
+     * Returns count of the groups that are currently buffered.
+     *
+     * @return groups count
+     */
+    public int size() {
+        return groups.size();
+    }
+
+    /**
+     * Stops the flush scheduler and immediately passes all buffered groups further. Parts of media groups received
+     * after that are processed one by one.
+     */
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            // Let the flush that is already running complete
+            if (!scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
+                log.warn("Media groups flush has not completed in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        groups.forEach(this::flush);
+    }
+
+    private void flush(GroupKey key, Group group) {
+        // The group could be already flushed by a concurrent task
+        if (!groups.remove(key, group)) {
+            return;
+        }
+
+        // Removal happens-after the last compute, so the updates list is safely published
+        List<Update> updates = new ArrayList<>(group.updates);
+        updates.sort(BY_MESSAGE_ID);
+        try {
+            listener.onMediaGroup(key.token(), group.bot, updates);
+        } catch (RuntimeException ex) {
+            log.error("Media group {} processing has failed", key.mediaGroupId(), ex);
+        }
+    }
+
+    private static Message getGroupMessage(Update update) {
+        return (update.message() != null) ? update.message() : update.channelPost();
+    }
+
+    private record GroupKey(String token, long chatId, String mediaGroupId) {
+    }
+
+    private static class Group {
+        private final TelegramBot bot;
+        private final List<Update> updates = new ArrayList<>(MAX_GROUP_SIZE);
+        private ScheduledFuture<?> flushTask;
+
+        Group(TelegramBot bot) {
+            this.bot = bot;
+        }
+    }
+
+    /**
+     * Receives the buffered media groups.
+     */
+    @FunctionalInterface
+    public interface MediaGroupListener {
+        /**
+         * @param token   bot token
+         * @param bot     bot
+         * @param updates parts of the media group sorted by message id
+         */
+        void onMediaGroup(@NotNull String token, @NotNull TelegramBot bot, @NotNull List<Update> updates);
+    }
+}
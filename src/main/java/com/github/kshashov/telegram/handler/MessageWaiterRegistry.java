@@ -0,0 +1,110 @@
+package com.github.kshashov.telegram.handler;
+
+import com.github.kshashov.telegram.api.MessageType;
+import com.github.kshashov.telegram.api.TelegramRequest;
+import com.github.kshashov.telegram.handler.processor.TelegramEvent;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Message;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the futures waiting for the next message in the chat. Waiters do not hold any thread: the future is completed
+ * by the thread that processes the next matched message, which is not routed to the handler methods then.
+ *
+ * @see TelegramRequest#awaitNextMessage(Predicate, Duration)
+ * @since 0.29
+ */
+@Slf4j
+public class MessageWaiterRegistry {
+    private final ConcurrentMap<ChatKey, Queue<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the waiter for the next message in the chat. The future is completed exceptionally with {@link
+     * java.util.concurrent.TimeoutException} once the timeout has elapsed. Cancel the future to stop waiting.
+     *
+     * @param bot     bot that should receive the message
+     * @param chatId  chat id
+     * @param filter  filter for the messages, {@code null} to accept any message
+     * @param timeout max time to wait
+     * @return future completed with the next matched message
+     */
+    @NotNull
+    public CompletableFuture<Message> await(@NotNull TelegramBot bot, long chatId, @Nullable Predicate<Message> filter, @NotNull Duration timeout) {
+        ChatKey key = new ChatKey(bot, chatId);
+        Waiter waiter = new Waiter(filter, new CompletableFuture<>());
+        waiters.compute(key, (k, queue) -> {
+            if (queue == null) {
+                queue = new ConcurrentLinkedQueue<>();
+            }
+            queue.add(waiter);
+            return queue;
+        });
+
+        // Forget the waiter once it is completed in any way, including timeout and cancellation
+        waiter.future.whenComplete((message, ex) -> waiters.computeIfPresent(key, (k, queue) -> {
+            queue.remove(waiter);
+            return queue.isEmpty() ? null : queue;
+        }));
+        return waiter.future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Completes the oldest waiter that accepts the message of the event, if any.
+     *
+     * @param event telegram event
+     * @return {@code true} if the message has been delivered to the waiter and should not be processed anymore
+     */
+    public boolean deliver(@NotNull TelegramEvent event) {
+        if (waiters.isEmpty() || (event.getMessageType() != MessageType.MESSAGE) || (event.getChat() == null)) {
+            return false;
+        }
+
+        Queue<Waiter> queue = waiters.get(new ChatKey(event.getTelegramBot(), event.getChat().id()));
+        if (queue == null) {
+            return false;
+        }
+
+        Message message = event.getMessage();
+        for (Waiter waiter : queue) {
+            if (waiter.accepts(message) && waiter.future.complete(message)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return count of the chats with waiters
+     */
+    public int size() {
+        return waiters.size();
+    }
+
+    private record ChatKey(TelegramBot bot, long chatId) {
+    }
+
+    private record Waiter(Predicate<Message> filter, CompletableFuture<Message> future) {
+        boolean accepts(Message message) {
+            if (filter == null) {
+                return true;
+            }
+            try {
+                return filter.test(message);
+            } catch (RuntimeException ex) {
+                log.error("Message waiter filter has failed", ex);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.kshashov.telegram.handler;
+
+import com.github.kshashov.telegram.api.TelegramSession;
+import com.github.kshashov.telegram.api.bind.annotation.BotState;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Transition of the conversation state declared by {@link BotState#next()}.
+ *
+ * @since 0.29
+ */
+@Getter
+@EqualsAndHashCode
+public class StateTransition {
+    private final @Nullable String next;
+    private final @Nullable Duration timeout;
+
+    /**
+     * @param next    next state or {@code null} to clear the state
+     * @param timeout time after which the next state is cleared, {@code null} if the state never expires
+     */
+    public StateTransition(@Nullable String next, @Nullable Duration timeout) {
+        this.next = next;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Creates transition from the annotation.
+     *
+     * @param state annotation
+     * @return transition or {@code null} if the state should be kept
+     */
+    @Nullable
+    public static StateTransition of(@NotNull BotState state) {
+        if (BotState.KEEP.equals(state.next())) {
+            return null;
+        }
+        String next = BotState.END.equals(state.next()) ? null : state.next();
+        Duration timeout = (state.timeoutSeconds() > 0) ? Duration.ofSeconds(state.timeoutSeconds()) : null;
+        return new StateTransition(next, timeout);
+    }
+
+    /**
+     * Applies the transition to the session.
+     *
+     * @param session session
+     */
+    public void apply(@NotNull TelegramSession session) {
+        session.setState(next, timeout);
+    }
+}
@@ -1,12 +1,20 @@
 package com.github.kshashov.telegram.handler;
 
+import com.github.kshashov.telegram.TelegramRequestContext;
 import com.github.kshashov.telegram.handler.processor.TelegramCallback;
 import com.github.kshashov.telegram.handler.processor.Template;
+import com.pengrad.telegrambot.Callback;
 import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.TelegramException;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
+import com.pengrad.telegrambot.response.SendResponse;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Helper service that processes {@link List} of {@link Update} updates.
@@ -63,4 +71,136 @@ public interface TelegramExecuteHandler {
      * @param <T>      T
      */
     <T> void execute(TelegramBot bot, String chatId, Template<T> template);
+
+    /**
+     * Sends the request to the Telegram.
+     *
+     * @param request request
+     * @param <T>     request type
+     * @param <R>     response type
+     * @return future that is completed with the response or completed exceptionally with {@link
+     * com.pengrad.telegrambot.TelegramException} if the response is not ok, or with {@link java.io.IOException} if the
+     * request has failed
+     * @since 0.29
+     */
+    @SuppressWarnings("unchecked")
+    default <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> executeAsync(BaseRequest<T, R> request) {
+        return (CompletableFuture<R>) executeAsync(new TelegramCallback(request, null));
+    }
+
+    /**
+     * Sends the request to the Telegram. The callback of the request is invoked before the future is completed. Both are
+     * invoked within the {@link TelegramRequestContext} of the caller.
+     *
+     * @param request request
+     * @return future that is completed the same way as {@link #executeAsync(BaseRequest)}
+     * @since 0.29
+     */
+    default CompletableFuture<BaseResponse> executeAsync(TelegramCallback request) {
+        CompletableFuture<BaseResponse> future = new CompletableFuture<>();
+        execute(completing(request, future));
+        return future;
+    }
+
+    /**
+     * Sends the request by template to the Telegram.
+     *
+     * @param chatId   chat id
+     * @param template template
+     * @param <T>      T
+     * @return future that is completed the same way as {@link #executeAsync(BaseRequest)} or completed with {@code
+     * null} if the template is rendered to nothing
+     * @since 0.29
+     */
+    <T> CompletableFuture<SendResponse> executeAsync(String chatId, Template<T> template);
+
+    /**
+     * Sends the request to the Telegram.
+     *
+     * @param bot     bot
+     * @param request request
+     * @param <T>     request type
+     * @param <R>     response type
+     * @return future that is completed the same way as {@link #executeAsync(BaseRequest)}
+     * @since 0.29
+     */
+    @SuppressWarnings("unchecked")
+    default <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> executeAsync(TelegramBot bot, BaseRequest<T, R> request) {
+        return (CompletableFuture<R>) executeAsync(bot, new TelegramCallback(request, null));
+    }
+
+    /**
+     * Sends the request to the Telegram. The callback of the request is invoked before the future is completed.
+     *
+     * @param bot     bot
+     * @param request request
+     * @return future that is completed the same way as {@link #executeAsync(BaseRequest)}
+     * @since 0.29
+     */
+    default CompletableFuture<BaseResponse> executeAsync(TelegramBot bot, TelegramCallback request) {
+        CompletableFuture<BaseResponse> future = new CompletableFuture<>();
+        execute(bot, completing(request, future));
+        return future;
+    }
+
+    /**
+     * Sends the request by template to the Telegram.
+     *
+     * @param bot      bot
+     * @param chatId   chat id
+     * @param template template
+     * @param <T>      T
+     * @return future that is completed the same way as {@link #executeAsync(String, Template)}
+     * @since 0.29
+     */
+    <T> CompletableFuture<SendResponse> executeAsync(TelegramBot bot, String chatId, Template<T> template);
+
+    /**
+     * Wraps the request callback, so the future is completed once the callback is invoked. The callback and the
+     * dependent stages of the future are executed within the context of the caller.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static TelegramCallback completing(TelegramCallback request, CompletableFuture<BaseResponse> future) {
+        TelegramRequestContext context = TelegramRequestContext.current();
+        return new TelegramCallback(request.getRequest(), new Callback() {
+            @Override
+            public void onResponse(BaseRequest baseRequest, BaseResponse response) {
+                runWithin(context, () -> {
+                    try {
+                        request.onResponse(baseRequest, response);
+                    } finally {
+                        if (response.isOk()) {
+                            future.complete(response);
+                        } else {
+                            future.completeExceptionally(new TelegramException(response.description(), response));
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(BaseRequest baseRequest, IOException e) {
+                runWithin(context, () -> {
+                    try {
+                        request.onFailure(baseRequest, e);
+                    } finally {
+                        future.completeExceptionally(e);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void runWithin(@Nullable TelegramRequestContext context, Runnable action) {
+        if (context == null) {
+            action.run();
+            return;
+        }
+        TelegramRequestContext.Binding binding = context.bind();
+        try {
+            action.run();
+        } finally {
+            binding.close();
+        }
+    }
 }
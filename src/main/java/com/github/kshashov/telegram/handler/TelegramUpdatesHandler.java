@@ -4,6 +4,7 @@ import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.Update;
 
 import javax.validation.constraints.NotNull;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -19,4 +20,26 @@ public interface TelegramUpdatesHandler {
      * @param updates telegram updates
      */
     void processUpdates(@NotNull String token, @NotNull TelegramBot bot, @NotNull List<Update> updates);
+
+    /**
+     * Processes a single update received out of any batch (e.g. via webhook) and sends the processing result to the
+     * Telegram. Implementations could collect such updates into batches.
+     *
+     * @param token  token
+     * @param bot    bot
+     * @param update telegram update
+     * @since 0.29
+     */
+    default void processUpdate(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        processUpdates(token, bot, Collections.singletonList(update));
+    }
+
+    /**
+     * Passes all buffered updates further for processing. Is invoked once the bots are stopped and before the task
+     * executor is shut down.
+     *
+     * @since 0.29
+     */
+    default void shutdown() {
+    }
 }
@@ -13,8 +13,6 @@ import lombok.extern.slf4j.Slf4j;
 
 import javax.validation.constraints.NotNull;
 import java.net.URL;
-import java.util.Collections;
-import java.util.List;
 import java.util.UUID;
 
 /**
@@ -62,15 +60,14 @@ public class TelegramWebhookService implements TelegramService {
 
     private void registerEndpoint(String endpoint) {
         server.post(endpoint, context -> {
-            List<Update> updates = null;
+            Update update = null;
             try {
-                Update update = BotUtils.parseUpdate(context.body());
-                updates = Collections.singletonList(update);
+                update = BotUtils.parseUpdate(context.body());
             } catch (Exception ex) {
                 log.error("Telegram updates can't be parsed for '{}' webhook", endpoint);
             }
-            if (updates != null) {
-                updatesHandler.processUpdates(botProperties.getToken(), telegramBot, updates);
+            if (update != null) {
+                updatesHandler.processUpdate(botProperties.getToken(), telegramBot, update);
             }
         });
     }
@@ -0,0 +1,126 @@
+package com.github.kshashov.telegram.handler;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Collects updates received one by one (e.g. via webhooks) into batches per bot. The batch is flushed once the window
+ * since its first update has elapsed, or immediately once it reaches the max size.
+ */
+@Slf4j
+public class UpdateBatcher {
+    private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+    private final long windowNanos;
+    private final int maxSize;
+    private final BatchListener listener;
+    private final ScheduledExecutorService scheduler;
+
+    public UpdateBatcher(@NotNull Duration window, int maxSize, @NotNull BatchListener listener) {
+        this.windowNanos = window.toNanos();
+        this.maxSize = maxSize;
+        this.listener = listener;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("telegram-update-batches-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Adds the update to the current batch of the bot.
+     *
+     * @param token  bot token
+     * @param bot    bot
+     * @param update telegram update
+     */
+    public void offer(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        if (scheduler.isShutdown()) {
+            deliver(token, new Batch(bot, update));
+            return;
+        }
+
+        Batch[] full = new Batch[1];
+        batches.compute(token, (k, current) -> {
+            if (current == null) {
+                current = new Batch(bot, maxSize);
+                Batch scheduled = current;
+                current.flushTask = scheduler.schedule(() -> flush(k, scheduled), windowNanos, TimeUnit.NANOSECONDS);
+            }
+            current.updates.add(update);
+            if (current.updates.size() >= maxSize) {
+                // Remove the full batch atomically, so no more updates could be added to it
+                current.flushTask.cancel(false);
+                full[0] = current;
+                return null;
+            }
+            return current;
+        });
+
+        if (full[0] != null) {
+            deliver(token, full[0]);
+        }
+    }
+
+    /**
+     * Stops the flush scheduler and immediately delivers all collected batches. Updates received after that are
+     * delivered one by one.
+     */
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            // Let the flush that is already running complete
+            if (!scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
+                log.warn("Updates batch flush has not completed in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batches.forEach(this::flush);
+    }
+
+    private void flush(String token, Batch batch) {
+        // The batch could be already flushed because of the max size
+        if (batches.remove(token, batch)) {
+            deliver(token, batch);
+        }
+    }
+
+    private void deliver(String token, Batch batch) {
+        try {
+            listener.onBatch(token, batch.bot, batch.updates);
+        } catch (RuntimeException ex) {
+            log.error("Updates batch processing has failed", ex);
+        }
+    }
+
+    private static class Batch {
+        private final TelegramBot bot;
+        private final List<Update> updates;
+        private ScheduledFuture<?> flushTask;
+
+        Batch(TelegramBot bot, int maxSize) {
+            this.bot = bot;
+            this.updates = new ArrayList<>(maxSize);
+        }
+
+        Batch(TelegramBot bot, Update update) {
+            this.bot = bot;
+            this.updates = List.of(update);
+        }
+    }
+
+    /**
+     * Receives the collected batches.
+     */
+    @FunctionalInterface
+    public interface BatchListener {
+        void onBatch(@NotNull String token, @NotNull TelegramBot bot, @NotNull List<Update> updates);
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.kshashov.telegram.config.TelegramBotGlobalProperties;
+import com.github.kshashov.telegram.handler.processor.RequestDispatcher;
+import com.github.kshashov.telegram.outbound.OutboundScheduler;
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.CallbackQuery;
+import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.request.AnswerCallbackQuery;
+import com.pengrad.telegrambot.response.BaseResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Coalesces repeated presses of the same inline button. Presses are identified by chat id, message id and callback
+ * data. While the first press is still being processed or during {@link Builder#window} after that, the repeated
+ * presses are only acknowledged with an empty {@link AnswerCallbackQuery} and are not passed to the
+ * {@link RequestDispatcher}.
+ */
+@Slf4j
+public class CallbackCoalescingUpdateFilter implements UpdateFilter {
+    private final long windowNanos;
+    private final Cache<PressKey, Press> presses;
+    private volatile OutboundScheduler outboundScheduler;
+
+    private CallbackCoalescingUpdateFilter(Builder builder) {
+        this.windowNanos = builder.window.toNanos();
+        this.presses = Caffeine.newBuilder()
+                .maximumSize(builder.maximumSize)
+                .expireAfterWrite(builder.maxProcessingTime.plus(builder.window))
+                .build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void init(@NotNull TelegramBotGlobalProperties globalProperties) {
+        this.outboundScheduler = globalProperties.getOutboundScheduler();
+    }
+
+    @Override
+    public boolean filter(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        PressKey key = PressKey.of(update);
+        if (key == null) {
+            return true;
+        }
+
+        ConcurrentMap<PressKey, Press> map = presses.asMap();
+        while (true) {
+            Press press = map.putIfAbsent(key, new Press(update));
+            if (press == null) {
+                return true;
+            }
+
+            if (press.isActive(System.nanoTime(), windowNanos)) {
+                acknowledge(bot, update.callbackQuery());
+                return false;
+            }
+
+            if (map.replace(key, press, new Press(update))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void afterCompletion(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        PressKey key = PressKey.of(update);
+        if (key == null) {
+            return;
+        }
+
+        // The press of this update could have already expired and been replaced by the press of another update
+        presses.asMap().computeIfPresent(key, (k, press) -> {
+            if (press.update == update) {
+                press.complete(System.nanoTime());
+            }
+            return press;
+        });
+    }
+
+    private void acknowledge(TelegramBot bot, CallbackQuery callbackQuery) {
+        log.debug("Repeated callback query {} has been coalesced", callbackQuery.id());
+        FilterRequests.execute(outboundScheduler, bot, new AnswerCallbackQuery(callbackQuery.id()), new Callback<AnswerCallbackQuery, BaseResponse>() {
+            @Override
+            public void onResponse(AnswerCallbackQuery request, BaseResponse response) {
+            }
+
+            @Override
+            public void onFailure(AnswerCallbackQuery request, IOException e) {
+                log.warn("Callback query acknowledgement has failed", e);
+            }
+        });
+    }
+
+    private static class Press {
+        private static final long IN_FLIGHT = Long.MIN_VALUE;
+        private final Update update;
+        private volatile long completedAt = IN_FLIGHT;
+
+        Press(Update update) {
+            this.update = update;
+        }
+
+        boolean isActive(long now, long windowNanos) {
+            long completed = completedAt;
+            return completed == IN_FLIGHT || now - completed < windowNanos;
+        }
+
+        void complete(long now) {
+            completedAt = now;
+        }
+    }
+
+    private record PressKey(long chatId, int messageId, String inlineMessageId, String data) {
+
+        static PressKey of(Update update) {
+            CallbackQuery callbackQuery = update.callbackQuery();
+            if (callbackQuery == null) {
+                return null;
+            }
+
+            Message message = callbackQuery.message();
+            if (message != null && message.chat() != null && message.messageId() != null) {
+                return new PressKey(message.chat().id(), message.messageId(), null, callbackQuery.data());
+            } else if (callbackQuery.inlineMessageId() != null) {
+                return new PressKey(0, 0, callbackQuery.inlineMessageId(), callbackQuery.data());
+            }
+            return null;
+        }
+    }
+
+    public static class Builder {
+        private Duration window = Duration.ofSeconds(1);
+        private Duration maxProcessingTime = Duration.ofSeconds(30);
+        private long maximumSize = 100_000;
+
+        /**
+         * @param window time after the processing of the first press during which repeated presses are coalesced.
+         *               1 second by default
+         * @return current instance
+         */
+        public Builder window(@NotNull Duration window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * @param maxProcessingTime time after which the press that is still being processed is forgotten. 30 seconds
+         *                          by default
+         * @return current instance
+         */
+        public Builder maxProcessingTime(@NotNull Duration maxProcessingTime) {
+            this.maxProcessingTime = maxProcessingTime;
+            return this;
+        }
+
+        /**
+         * @param maximumSize max count of the tracked presses. 100000 by default
+         * @return current instance
+         */
+        public Builder maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public CallbackCoalescingUpdateFilter build() {
+            return new CallbackCoalescingUpdateFilter(this);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.kshashov.telegram.handler.processor.UpdateUtils;
+import com.github.kshashov.telegram.util.LongHashSet;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Filters updates by chat and user ids. Deny lists always have priority. If an allow list is not empty, only updates
+ * from the listed chats (users) are accepted. Updates without chat (user), e.g. inline queries, are not affected by the
+ * chat (user) lists.
+ *
+ * <p>Ids are kept in primitive hash sets, and the ids of the update are read without boxing.</p>
+ */
+public class ChatUpdateFilter implements UpdateFilter {
+    private final LongHashSet allowedChats;
+    private final LongHashSet deniedChats;
+    private final LongHashSet allowedUsers;
+    private final LongHashSet deniedUsers;
+
+    private ChatUpdateFilter(Builder builder) {
+        this.allowedChats = builder.allowedChats;
+        this.deniedChats = builder.deniedChats;
+        this.allowedUsers = builder.allowedUsers;
+        this.deniedUsers = builder.deniedUsers;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public boolean filter(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        if (!deniedUsers.isEmpty() || !allowedUsers.isEmpty()) {
+            long userId = UpdateUtils.getUserId(update);
+            if ((userId != UpdateUtils.NO_ID) && !isAllowed(userId, allowedUsers, deniedUsers)) {
+                return false;
+            }
+        }
+
+        if (!deniedChats.isEmpty() || !allowedChats.isEmpty()) {
+            long chatId = UpdateUtils.getChatId(update);
+            return (chatId == UpdateUtils.NO_ID) || isAllowed(chatId, allowedChats, deniedChats);
+        }
+
+        return true;
+    }
+
+    private static boolean isAllowed(long id, LongHashSet allowed, LongHashSet denied) {
+        if (denied.contains(id)) {
+            return false;
+        }
+        return allowed.isEmpty() || allowed.contains(id);
+    }
+
+    @Override
+    public String toString() {
+        return "ChatUpdateFilter{" +
+                "allowedChats=" + allowedChats.size() +
+                ", deniedChats=" + deniedChats.size() +
+                ", allowedUsers=" + allowedUsers.size() +
+                ", deniedUsers=" + deniedUsers.size() +
+                '}';
+    }
+
+    public static class Builder {
+        private final LongHashSet allowedChats = new LongHashSet();
+        private final LongHashSet deniedChats = new LongHashSet();
+        private final LongHashSet allowedUsers = new LongHashSet();
+        private final LongHashSet deniedUsers = new LongHashSet();
+
+        /**
+         * Accept updates only from the specified chats.
+         *
+         * @param chatIds chat ids
+         * @return current instance
+         */
+        public Builder allowChats(long... chatIds) {
+            addAll(allowedChats, chatIds);
+            return this;
+        }
+
+        /**
+         * Reject updates from the specified chats.
+         *
+         * @param chatIds chat ids
+         * @return current instance
+         */
+        public Builder denyChats(long... chatIds) {
+            addAll(deniedChats, chatIds);
+            return this;
+        }
+
+        /**
+         * Accept updates only from the specified users.
+         *
+         * @param userIds user ids
+         * @return current instance
+         */
+        public Builder allowUsers(long... userIds) {
+            addAll(allowedUsers, userIds);
+            return this;
+        }
+
+        /**
+         * Reject updates from the specified users.
+         *
+         * @param userIds user ids
+         * @return current instance
+         */
+        public Builder denyUsers(long... userIds) {
+            addAll(deniedUsers, userIds);
+            return this;
+        }
+
+        public ChatUpdateFilter build() {
+            return new ChatUpdateFilter(this);
+        }
+
+        private static void addAll(LongHashSet set, long[] values) {
+            for (long value : values) {
+                set.add(value);
+            }
+        }
+    }
+}
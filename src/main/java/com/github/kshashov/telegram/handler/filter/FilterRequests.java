@@ -0,0 +1,27 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.kshashov.telegram.outbound.OutboundScheduler;
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
+
+import javax.annotation.Nullable;
+
+/**
+ * Sends the requests of the filters the same way as the requests of the handler methods are sent.
+ */
+final class FilterRequests {
+
+    private FilterRequests() {
+    }
+
+    static <T extends BaseRequest<T, R>, R extends BaseResponse> void execute(
+            @Nullable OutboundScheduler outboundScheduler, TelegramBot bot, T request, Callback<T, R> callback) {
+        if (outboundScheduler != null) {
+            outboundScheduler.execute(bot, request, callback);
+        } else {
+            bot.execute(request, callback);
+        }
+    }
+}
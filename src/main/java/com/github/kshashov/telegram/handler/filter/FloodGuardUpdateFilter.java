@@ -0,0 +1,275 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.kshashov.telegram.TelegramSessionResolver;
+import com.github.kshashov.telegram.api.MessageType;
+import com.github.kshashov.telegram.config.TelegramBotGlobalProperties;
+import com.github.kshashov.telegram.handler.processor.UpdateUtils;
+import com.github.kshashov.telegram.outbound.OutboundScheduler;
+import com.github.kshashov.telegram.util.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Anti-flood guard that drops updates from sessions exceeding the configured rates. Sessions are identified the same
+ * way as {@link TelegramSessionResolver} does it, so a single user or chat could not occupy the whole thread pool.
+ *
+ * <p>Each session keeps one compact token bucket per configured rate. Buckets are stored in a cache bounded by
+ * {@link Builder#maximumSize} and expired after {@link Builder#expireAfterAccess}, so the memory stays bounded regardless
+ * of the users count.</p>
+ *
+ * @see TokenBucket
+ */
+@Slf4j
+public class FloodGuardUpdateFilter implements UpdateFilter {
+    private static final int NOT_LIMITED = -1;
+
+    private final TokenBucket[] buckets;
+    private final int[] bucketIndexes;
+    private final ThrottleListener throttleListener;
+    private final Cache<Long, SessionState> sessions;
+
+    private FloodGuardUpdateFilter(Builder builder) {
+        List<TokenBucket> distinctBuckets = new ArrayList<>();
+        this.bucketIndexes = new int[MessageType.values().length];
+        Arrays.fill(bucketIndexes, NOT_LIMITED);
+        for (MessageType type : MessageType.values()) {
+            TokenBucket bucket = builder.rates.getOrDefault(type, builder.defaultRate);
+            if (bucket != null) {
+                int index = distinctBuckets.indexOf(bucket);
+                if (index < 0) {
+                    index = distinctBuckets.size();
+                    distinctBuckets.add(bucket);
+                }
+                bucketIndexes[type.ordinal()] = index;
+            }
+        }
+        this.buckets = distinctBuckets.toArray(new TokenBucket[0]);
+        this.throttleListener = builder.throttleListener;
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(builder.maximumSize)
+                .expireAfterAccess(builder.expireAfterAccess)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void init(@NotNull TelegramBotGlobalProperties globalProperties) {
+        if (throttleListener != null) {
+            throttleListener.init(globalProperties);
+        }
+    }
+
+    @Override
+    public boolean filter(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        int bucketIndex = bucketIndexes[UpdateUtils.getMessageType(update).ordinal()];
+        if (bucketIndex == NOT_LIMITED) {
+            return true;
+        }
+
+        long sessionId = UpdateUtils.getSessionId(update);
+        SessionState state = sessions.asMap().computeIfAbsent(sessionId, k -> new SessionState(buckets.length));
+
+        boolean notify;
+        synchronized (state) {
+            long now = System.nanoTime();
+            TokenBucket bucket = buckets[bucketIndex];
+            if (bucket.waitNanos(state.buckets[bucketIndex], now) == 0) {
+                state.buckets[bucketIndex] = bucket.consume(state.buckets[bucketIndex], now);
+                state.throttled = false;
+                return true;
+            }
+
+            // Notify only once until the session is allowed again
+            notify = !state.throttled;
+            state.throttled = true;
+        }
+
+        log.debug("Update {} has been throttled for session {}", update.updateId(), sessionId);
+        if (notify && (throttleListener != null)) {
+            try {
+                throttleListener.onThrottled(bot, update);
+            } catch (RuntimeException ex) {
+                log.error("Throttle listener has failed", ex);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns approximate count of the tracked sessions.
+     *
+     * @return sessions count
+     */
+    public long size() {
+        sessions.cleanUp();
+        return sessions.estimatedSize();
+    }
+
+    private static class SessionState {
+        private final long[] buckets;
+        private boolean throttled;
+
+        SessionState(int bucketsCount) {
+            this.buckets = new long[bucketsCount];
+            Arrays.fill(buckets, TokenBucket.FULL);
+        }
+    }
+
+    /**
+     * Is invoked on the ingest thread once the session is throttled. Will not be invoked again until the session
+     * gets an update through.
+     */
+    @FunctionalInterface
+    public interface ThrottleListener {
+        void onThrottled(@NotNull TelegramBot bot, @NotNull Update update);
+
+        /**
+         * Is invoked once the global properties containing the filter are built.
+         *
+         * @param globalProperties global properties
+         * @see UpdateFilter#init(TelegramBotGlobalProperties)
+         */
+        default void init(@NotNull TelegramBotGlobalProperties globalProperties) {
+        }
+
+        /**
+         * Creates listener that replies with the given text to the chat of the throttled update, if any. The reply is
+         * sent through the outbound scheduler, if it is enabled.
+         *
+         * @param text reply text
+         * @return listener
+         */
+        static ThrottleListener reply(@NotNull String text) {
+            return new ReplyThrottleListener(text);
+        }
+    }
+
+    private static class ReplyThrottleListener implements ThrottleListener {
+        private final String text;
+        private volatile OutboundScheduler outboundScheduler;
+
+        ReplyThrottleListener(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void init(@NotNull TelegramBotGlobalProperties globalProperties) {
+            this.outboundScheduler = globalProperties.getOutboundScheduler();
+        }
+
+        @Override
+        public void onThrottled(@NotNull TelegramBot bot, @NotNull Update update) {
+            long chatId = UpdateUtils.getChatId(update);
+            if (chatId == UpdateUtils.NO_ID) {
+                return;
+            }
+
+            FilterRequests.execute(outboundScheduler, bot, new SendMessage(chatId, text), new Callback<SendMessage, SendResponse>() {
+                @Override
+                public void onResponse(SendMessage request, SendResponse response) {
+                }
+
+                @Override
+                public void onFailure(SendMessage request, IOException e) {
+                    log.warn("Throttling reply has failed", e);
+                }
+            });
+        }
+    }
+
+    public static class Builder {
+        private final Map<MessageType, TokenBucket> rates = new EnumMap<>(MessageType.class);
+        private TokenBucket defaultRate = new TokenBucket(30, Duration.ofMinutes(1), 10);
+        private long maximumSize = 100_000;
+        private Duration expireAfterAccess = Duration.ofMinutes(10);
+        private ThrottleListener throttleListener;
+
+        /**
+         * Specify rate that is used for all message types without a dedicated rate. 30 updates per minute with bursts
+         * up to 10 updates by default.
+         *
+         * @param permits  updates count
+         * @param period   period
+         * @param capacity max burst size
+         * @return current instance
+         */
+        public Builder defaultRate(int permits, @NotNull Duration period, int capacity) {
+            this.defaultRate = new TokenBucket(permits, period, capacity);
+            return this;
+        }
+
+        /**
+         * Disable the default rate, so only the message types with dedicated rates are limited.
+         *
+         * @return current instance
+         */
+        public Builder noDefaultRate() {
+            this.defaultRate = null;
+            return this;
+        }
+
+        /**
+         * Specify rate for the given message type.
+         *
+         * @param type     message type
+         * @param permits  updates count
+         * @param period   period
+         * @param capacity max burst size
+         * @return current instance
+         */
+        public Builder rate(@NotNull MessageType type, int permits, @NotNull Duration period, int capacity) {
+            rates.put(type, new TokenBucket(permits, period, capacity));
+            return this;
+        }
+
+        /**
+         * @param maximumSize max count of the tracked sessions. 100000 by default
+         * @return current instance
+         */
+        public Builder maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * @param expireAfterAccess how long the session state is kept after the last update. Should be longer than the
+         *                          longest rate period. 10 minutes by default
+         * @return current instance
+         */
+        public Builder expireAfterAccess(@NotNull Duration expireAfterAccess) {
+            this.expireAfterAccess = expireAfterAccess;
+            return this;
+        }
+
+        /**
+         * @param throttleListener listener that is invoked once the session is throttled
+         * @return current instance
+         */
+        public Builder throttleListener(@NotNull ThrottleListener throttleListener) {
+            this.throttleListener = throttleListener;
+            return this;
+        }
+
+        public FloodGuardUpdateFilter build() {
+            return new FloodGuardUpdateFilter(this);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.kshashov.telegram.api.CancellationToken;
+import com.github.kshashov.telegram.api.bind.annotation.request.InlineQueryRequest;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.InlineQuery;
+import com.pengrad.telegrambot.model.Update;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Latest-wins scheduling for inline queries. Telegram sends a new inline query on every keystroke, but only the answer
+ * to the latest one is shown to the user. So the filter remembers the latest inline query of each user when it is
+ * received and:
+ * <ul>
+ *     <li>skips the queued inline queries superseded by a newer one before they are dispatched</li>
+ *     <li>cancels the {@link CancellationToken} of the {@link InlineQueryRequest} handlers that are already running</li>
+ * </ul>
+ */
+@Slf4j
+public class InlineQueryDebounceUpdateFilter implements UpdateFilter {
+    private final Cache<QueryKey, Integer> latestQueries;
+
+    public InlineQueryDebounceUpdateFilter() {
+        this(100_000, Duration.ofMinutes(1));
+    }
+
+    /**
+     * @param maximumSize       max count of the tracked users of all bots
+     * @param expireAfterWrite  how long the latest inline query of the user is tracked
+     */
+    public InlineQueryDebounceUpdateFilter(long maximumSize, @NotNull Duration expireAfterWrite) {
+        this.latestQueries = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    @Override
+    public boolean filter(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        InlineQuery inlineQuery = update.inlineQuery();
+        if ((inlineQuery != null) && (inlineQuery.from() != null)) {
+            // Webhook updates could be received out of order, so the latest query is the one with the greatest id
+            latestQueries.asMap().merge(new QueryKey(token, inlineQuery.from().id()), update.updateId(), Math::max);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean preHandle(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        InlineQuery inlineQuery = update.inlineQuery();
+        if ((inlineQuery != null) && (inlineQuery.from() != null) && isSuperseded(token, inlineQuery.from().id(), update.updateId())) {
+            log.debug("Inline query {} has been superseded", inlineQuery.id());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns token that is cancelled once a newer inline query is received by the same bot from the same user.
+     *
+     * @param token    bot token
+     * @param userId   user id
+     * @param updateId update id of the current inline query
+     * @return cancellation token
+     */
+    @NotNull
+    public CancellationToken getCancellationToken(@NotNull String token, long userId, int updateId) {
+        QueryKey key = new QueryKey(token, userId);
+        return () -> isSuperseded(key, updateId);
+    }
+
+    private boolean isSuperseded(String token, long userId, int updateId) {
+        return isSuperseded(new QueryKey(token, userId), updateId);
+    }
+
+    private boolean isSuperseded(QueryKey key, int updateId) {
+        Integer latest = latestQueries.getIfPresent(key);
+        return (latest != null) && (latest > updateId);
+    }
+
+    /**
+     * Update ids are sequential per bot, so the queries received by different bots are tracked separately.
+     */
+    private record QueryKey(String token, long userId) {
+    }
+}
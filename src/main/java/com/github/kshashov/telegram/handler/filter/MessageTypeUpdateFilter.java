@@ -0,0 +1,33 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.kshashov.telegram.api.MessageType;
+import com.github.kshashov.telegram.handler.processor.UpdateUtils;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Accepts only the updates of the specified {@link MessageType} types. {@link MessageType#ANY} accepts all updates.
+ */
+public class MessageTypeUpdateFilter implements UpdateFilter {
+    private final Set<MessageType> messageTypes;
+
+    public MessageTypeUpdateFilter(@NotNull MessageType... messageTypes) {
+        this.messageTypes = EnumSet.noneOf(MessageType.class);
+        this.messageTypes.addAll(Arrays.asList(messageTypes));
+    }
+
+    @Override
+    public boolean filter(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        return messageTypes.contains(MessageType.ANY) || messageTypes.contains(UpdateUtils.getMessageType(update));
+    }
+
+    @Override
+    public String toString() {
+        return "MessageTypeUpdateFilter{" + messageTypes + '}';
+    }
+}
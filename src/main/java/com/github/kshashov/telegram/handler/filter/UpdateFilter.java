@@ -0,0 +1,68 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.kshashov.telegram.config.TelegramBotGlobalProperties;
+import com.github.kshashov.telegram.handler.TelegramUpdatesHandler;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Cheap check that is applied to every received {@link Update} before the update is submitted to the task executor.
+ * Filters are invoked on the thread that received the updates: the long polling thread or the Javalin request thread
+ * for webhooks. So implementations should never block.
+ *
+ * <p>Filters are ordered according to {@link org.springframework.core.Ordered} or
+ * {@link org.springframework.core.annotation.Order}. Any {@link UpdateFilter} bean is registered automatically.</p>
+ *
+ * @see UpdateFilterChain
+ * @see TelegramUpdatesHandler
+ */
+@FunctionalInterface
+public interface UpdateFilter {
+
+    /**
+     * Is invoked once the global properties containing this filter are built. Filters that send requests to the
+     * Telegram should send them through {@link TelegramBotGlobalProperties#getOutboundScheduler()}, if any.
+     *
+     * @param globalProperties global properties
+     * @since 0.29
+     */
+    default void init(@NotNull TelegramBotGlobalProperties globalProperties) {
+    }
+
+    /**
+     * Decide whether the update should be processed.
+     *
+     * @param token  bot token
+     * @param bot    bot that received the update
+     * @param update telegram update
+     * @return {@code true} if the update should be processed, {@code false} to drop it
+     */
+    boolean filter(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update);
+
+    /**
+     * Is invoked on the worker thread right before the accepted update is dispatched. Allows to skip updates that have
+     * become stale while waiting in the executor queue.
+     *
+     * @param token  bot token
+     * @param bot    bot that received the update
+     * @param update telegram update
+     * @return {@code true} if the update should be dispatched, {@code false} to skip it
+     */
+    default boolean preHandle(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        return true;
+    }
+
+    /**
+     * Is invoked for the update accepted by this filter once the update has been processed, successfully or not. It
+     * happens on the worker thread. If the update is rejected by one of the subsequent filters, this method is invoked
+     * on the ingest thread right away.
+     *
+     * @param token  bot token
+     * @param bot    bot that received the update
+     * @param update telegram update
+     */
+    default void afterCompletion(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.kshashov.telegram.config.TelegramBotGlobalProperties;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies the list of registered {@link UpdateFilter} filters in order. The update is rejected by the first filter
+ * that returns {@code false}.
+ */
+@Slf4j
+public class UpdateFilterChain implements UpdateFilter {
+    private final UpdateFilter[] filters;
+
+    /**
+     * Create a chain for the given {@link UpdateFilter}s.
+     *
+     * @param filters filters to apply
+     */
+    public UpdateFilterChain(@NotNull List<UpdateFilter> filters) {
+        List<UpdateFilter> sorted = new ArrayList<>(filters);
+        AnnotationAwareOrderComparator.sort(sorted);
+        this.filters = sorted.toArray(new UpdateFilter[0]);
+    }
+
+    @Override
+    public void init(@NotNull TelegramBotGlobalProperties globalProperties) {
+        for (UpdateFilter filter : filters) {
+            filter.init(globalProperties);
+        }
+    }
+
+    @Override
+    public boolean filter(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        for (int i = 0; i < filters.length; i++) {
+            UpdateFilter filter = filters[i];
+            try {
+                if (!filter.filter(token, bot, update)) {
+                    if (log.isTraceEnabled()) {
+                        log.trace("Update {} has been rejected by {}", update.updateId(), filter);
+                    }
+                    triggerAfterCompletion(token, bot, update, i);
+                    return false;
+                }
+            } catch (RuntimeException ex) {
+                // Don't lose the update because of the broken filter
+                log.error("Update filter " + filter + " has failed", ex);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean preHandle(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        for (UpdateFilter filter : filters) {
+            try {
+                if (!filter.preHandle(token, bot, update)) {
+                    if (log.isTraceEnabled()) {
+                        log.trace("Update {} has been skipped by {}", update.updateId(), filter);
+                    }
+                    return false;
+                }
+            } catch (RuntimeException ex) {
+                log.error("Update filter " + filter + " has failed", ex);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(@NotNull String token, @NotNull TelegramBot bot, @NotNull Update update) {
+        triggerAfterCompletion(token, bot, update, filters.length);
+    }
+
+    /**
+     * Invoke {@link UpdateFilter#afterCompletion} for the filters that accepted the update.
+     */
+    private void triggerAfterCompletion(String token, TelegramBot bot, Update update, int acceptedCount) {
+        for (int i = acceptedCount - 1; i >= 0; i--) {
+            try {
+                filters[i].afterCompletion(token, bot, update);
+            } catch (RuntimeException ex) {
+                log.error("Update filter " + filters[i] + " has failed", ex);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return filters.length == 0;
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.kshashov.telegram.handler.processor;
+
+import com.codahale.metrics.Timer;
+import com.github.kshashov.telegram.api.TelegramRequest;
+import com.github.kshashov.telegram.api.bind.annotation.BotBatchRequest;
+import com.github.kshashov.telegram.handler.HandlerMethodContainer;
+import com.github.kshashov.telegram.metrics.MetricsService;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.MethodParameter;
+import org.springframework.util.ReflectionUtils;
+
+import javax.validation.constraints.NotNull;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatcher which is used to find the {@link BotBatchRequest} handlers for the batch of telegram requests and invoke
+ * each of them once with all matched requests.
+ *
+ * @since 0.29
+ */
+@Slf4j
+public class BatchRequestDispatcher {
+    private final HandlerMethodContainer handlerMethodContainer;
+    private final MetricsService metricsService;
+
+    public BatchRequestDispatcher(@NotNull HandlerMethodContainer handlerMethodContainer, @NotNull MetricsService metricsService) {
+        this.handlerMethodContainer = handlerMethodContainer;
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * @param token bot token
+     * @return {@code true} if there are batch handlers for the given bot
+     */
+    public boolean hasHandlers(@NotNull String token) {
+        return handlerMethodContainer.hasBatchHandlers(token);
+    }
+
+    /**
+     * Checks whether the batch handler method parameter of the given type could be resolved.
+     *
+     * @param parameterType parameter type
+     * @return {@code true} for {@link List} of {@link TelegramRequest} and {@link TelegramBot}
+     */
+    public static boolean isSupportedParameterType(@NotNull Class<?> parameterType) {
+        return List.class.isAssignableFrom(parameterType) || TelegramBot.class.isAssignableFrom(parameterType);
+    }
+
+    /**
+     * Finds batch handlers for each update and invokes every handler once. Failure of one handler does not affect the
+     * others. Updates that could not be routed are skipped.
+     *
+     * @param token   bot token
+     * @param bot     bot
+     * @param updates telegram updates
+     */
+    public void execute(@NotNull String token, @NotNull TelegramBot bot, @NotNull List<Update> updates) {
+        Map<HandlerMethod, List<TelegramRequest>> batches = new LinkedHashMap<>();
+        for (Update update : updates) {
+            try {
+                collect(batches, new TelegramEvent(token, update, bot));
+            } catch (RuntimeException ex) {
+                metricsService.onUpdateError();
+                log.error("Update {} has been skipped by the batch handlers", update.updateId(), ex);
+            }
+        }
+
+        batches.forEach((method, requests) -> {
+            Timer.Context timerContext = metricsService.onMethodHandlerStarted(method);
+            try {
+                invoke(method, bot, requests);
+                metricsService.onUpdateSuccess(method, timerContext);
+                log.info("Batch of {} requests has been executed by '{}' handler method", requests.size(), method);
+            } catch (IllegalStateException ex) {
+                metricsService.onUpdateError(method);
+                log.error("Batch execution error", ex);
+            }
+        });
+    }
+
+    private void collect(Map<HandlerMethod, List<TelegramRequest>> batches, TelegramEvent event) {
+        for (HandlerMethodContainer.HandlerLookupResult lookupResult : handlerMethodContainer.lookupBatchHandlerMethods(event)) {
+            TelegramRequest request = new TelegramRequest(
+                    event.getTelegramBot(),
+                    event.getUpdate(),
+                    event.getMessageType(),
+                    lookupResult.getBasePattern(),
+                    lookupResult.getTemplateVariables(),
+                    event.getMessage(),
+                    event.getText(),
+                    event.getChat(),
+                    event.getUser());
+            batches.computeIfAbsent(lookupResult.getHandlerMethod(), k -> new ArrayList<>()).add(request);
+        }
+    }
+
+    private void invoke(HandlerMethod method, TelegramBot bot, List<TelegramRequest> requests) throws IllegalStateException {
+        MethodParameter[] parameters = method.getMethodParameters();
+        Object[] args = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            Class<?> paramType = parameters[i].getParameterType();
+            if (List.class.isAssignableFrom(paramType)) {
+                args[i] = requests;
+            } else if (TelegramBot.class.isAssignableFrom(paramType)) {
+                args[i] = bot;
+            }
+        }
+
+        ReflectionUtils.makeAccessible(method.getBridgedMethod());
+        try {
+            method.getBridgedMethod().invoke(method.getBean(), args);
+        } catch (InvocationTargetException ex) {
+            throw new IllegalStateException("Failed to invoke batch handler method " + method, ex.getTargetException());
+        } catch (Exception ex) {
+            throw new IllegalStateException("Failed to invoke batch handler method " + method, ex);
+        }
+    }
+}
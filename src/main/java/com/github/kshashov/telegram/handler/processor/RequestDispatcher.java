@@ -5,12 +5,15 @@ import com.github.kshashov.telegram.TelegramSessionResolver;
 import com.github.kshashov.telegram.api.TelegramRequest;
 import com.github.kshashov.telegram.api.TelegramSession;
 import com.github.kshashov.telegram.handler.HandlerMethodContainer;
+import com.github.kshashov.telegram.handler.MessageWaiterRegistry;
+import com.github.kshashov.telegram.handler.StateTransition;
 import com.github.kshashov.telegram.handler.processor.arguments.BotHandlerMethodArgumentResolver;
 import com.github.kshashov.telegram.handler.processor.response.BotHandlerMethodReturnValueHandler;
 import com.github.kshashov.telegram.metrics.MetricsService;
 import com.pengrad.telegrambot.request.BaseRequest;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 /**
@@ -23,13 +26,28 @@ public class RequestDispatcher {
     private final BotHandlerMethodArgumentResolver argumentResolver;
     private final BotHandlerMethodReturnValueHandler returnValueHandler;
     private final MetricsService metricsService;
+    private final MessageWaiterRegistry messageWaiters;
 
     public RequestDispatcher(@NotNull HandlerMethodContainer handlerMethodContainer, @NotNull TelegramSessionResolver sessionResolver, @NotNull BotHandlerMethodArgumentResolver argumentResolver, @NotNull BotHandlerMethodReturnValueHandler returnValueHandler, @NotNull MetricsService metricsService) {
+        this(handlerMethodContainer, sessionResolver, argumentResolver, returnValueHandler, metricsService, null);
+    }
+
+    /**
+     * @param handlerMethodContainer handler methods
+     * @param sessionResolver        session resolver
+     * @param argumentResolver       argument resolver
+     * @param returnValueHandler     return value handler
+     * @param metricsService         metrics
+     * @param messageWaiters         waiters that get the matched messages before the handler methods
+     * @since 0.29
+     */
+    public RequestDispatcher(@NotNull HandlerMethodContainer handlerMethodContainer, @NotNull TelegramSessionResolver sessionResolver, @NotNull BotHandlerMethodArgumentResolver argumentResolver, @NotNull BotHandlerMethodReturnValueHandler returnValueHandler, @NotNull MetricsService metricsService, @Nullable MessageWaiterRegistry messageWaiters) {
         this.handlerMethodContainer = handlerMethodContainer;
         this.sessionResolver = sessionResolver;
         this.argumentResolver = argumentResolver;
         this.returnValueHandler = returnValueHandler;
         this.metricsService = metricsService;
+        this.messageWaiters = messageWaiters;
     }
 
     /**
@@ -41,12 +59,21 @@ public class RequestDispatcher {
      */
     public TelegramCallback execute(@NotNull TelegramEvent event) throws IllegalStateException {
         TelegramSessionResolver.TelegramSessionHolder sessionHolder = null;
-
-        HandlerMethodContainer.HandlerLookupResult lookupResult = handlerMethodContainer.lookupHandlerMethod(event);
-        HandlerMethod method = lookupResult.getHandlerMethod();
+        HandlerMethod method = null;
         try {
-            // Start telegram session
+            // Start telegram session, it is needed to find the handler for the current conversation state
             sessionHolder = sessionResolver.resolveTelegramSession(event);
+
+            // The waiter continuation is executed within the context of the current session
+            if ((messageWaiters != null) && messageWaiters.deliver(event)) {
+                log.debug("Update {} has been delivered to the message waiter", event.getUpdate().updateId());
+                return null;
+            }
+
+            TelegramSession session = sessionHolder.getSession();
+            HandlerMethodContainer.HandlerLookupResult lookupResult = handlerMethodContainer.lookupHandlerMethod(event, session.getState());
+            method = lookupResult.getHandlerMethod();
+
             // Process telegram request by controller
             if (method == null) {
                 log.debug("Not found controller for {} (type {})", event.getText(), event.getMessageType());
@@ -67,8 +94,14 @@ public class RequestDispatcher {
                     event.getText(),
                     event.getChat(),
                     event.getUser());
+            request.setMediaGroup(event.getMediaGroup());
+            request.setMessageWaiters(messageWaiters);
 
-            BaseRequest result = doExecute(request, lookupResult, sessionHolder.getSession());
+            BaseRequest result = doExecute(request, lookupResult, session);
+            StateTransition transition = handlerMethodContainer.getStateTransition(method);
+            if (transition != null) {
+                transition.apply(session);
+            }
             metricsService.onUpdateSuccess(method, timerContext);
 
             return result == null ? null : new TelegramCallback(result, request.getCallback());
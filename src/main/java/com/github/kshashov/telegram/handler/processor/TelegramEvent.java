@@ -8,6 +8,7 @@ import lombok.Getter;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
+import java.util.List;
 
 /**
  * Accumulates all available parameters from the initial telegram request.
@@ -49,6 +50,7 @@ public class TelegramEvent {
      * The first non-empty object, if any, among:
      * <ul>
      *     <li>{@code message.text()}</li>
+     *     <li>{@code message.caption()}</li>
      *     <li>{@code update.inlineQuery.query()}</li>
      *     <li>{@code update.chosenInlineResult.query()}</li>
      *     <li>{@code update.callbackQuery.data()}</li>
@@ -72,8 +74,28 @@ public class TelegramEvent {
 
     private final String token;
 
+    /**
+     * All messages of the media group (album) sorted by message id if the current request is a media group.
+     *
+     * @since 0.29
+     */
+    @Nullable
+    private final List<Message> mediaGroup;
+
     public TelegramEvent(@NotNull String token, @NotNull Update update, @NotNull TelegramBot telegramBot) {
+        this(token, update, telegramBot, null);
+    }
+
+    /**
+     * @param token       bot token
+     * @param update      the main update of the request
+     * @param telegramBot bot
+     * @param mediaGroup  all messages of the media group, if any
+     * @since 0.29
+     */
+    public TelegramEvent(@NotNull String token, @NotNull Update update, @NotNull TelegramBot telegramBot, @Nullable List<Message> mediaGroup) {
         this.token = token;
+        this.mediaGroup = mediaGroup;
         this.telegramBot = telegramBot;
         this.update = update;
         this.message = firstNonNull(update.message(),
@@ -84,19 +106,12 @@ public class TelegramEvent {
         if (message != null) {
             this.user = firstNonNull(message.from(), message.leftChatMember(), message.forwardFrom());
             this.chat = firstNonNull(message.chat(), message.forwardFromChat());
-            String text = message.text();
-            if (text.contains("@")) {
+            // Media messages have caption instead of text
+            String text = (message.text() != null) ? message.text() : message.caption();
+            if ((text != null) && text.contains("@")) {
                 text = text.substring(0, text.indexOf("@"));
             }
-            if (update.editedMessage() != null) {
-                this.messageType = MessageType.EDITED_MESSAGE;
-            } else if (update.channelPost() != null) {
-                this.messageType = MessageType.CHANNEL_POST;
-            } else if (update.editedChannelPost() != null) {
-                this.messageType = MessageType.EDITED_CHANNEL_POST;
-            } else {
-                this.messageType = MessageType.MESSAGE;
-            }
+            this.messageType = UpdateUtils.getMessageType(update);
             this.text = text;
         } else if (update.inlineQuery() != null) {
             InlineQuery inlineQuery = update.inlineQuery();
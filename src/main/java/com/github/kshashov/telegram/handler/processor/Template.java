@@ -43,6 +43,12 @@ public class Template<T> {
     }
 
 
+    /**
+     * Edits of the same message that are still waiting for the rate limits are coalesced, so only the latest one is
+     * sent.
+     *
+     * @see com.github.kshashov.telegram.outbound.OutboundScheduler
+     */
     public enum Edit {
         MESSAGE, REPLY_MARKUP
     }
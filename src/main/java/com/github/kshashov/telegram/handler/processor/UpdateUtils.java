@@ -0,0 +1,142 @@
+package com.github.kshashov.telegram.handler.processor;
+
+import com.github.kshashov.telegram.api.MessageType;
+import com.pengrad.telegrambot.model.*;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Lightweight accessors for the raw {@link Update} object. Unlike {@link TelegramEvent} they neither wrap the update nor
+ * box ids, so they could be used on the hot path before the update is submitted for processing.
+ */
+public final class UpdateUtils {
+    /**
+     * Returned by {@link #getChatId(Update)} and {@link #getUserId(Update)} if the update has no chat (user). Telegram
+     * never assigns this value to chats and users.
+     */
+    public static final long NO_ID = Long.MIN_VALUE;
+
+    private UpdateUtils() {
+    }
+
+    /**
+     * Returns the type of the telegram request.
+     *
+     * @param update telegram update
+     * @return message type, {@link MessageType#UNSUPPORTED} for unknown updates
+     */
+    @NotNull
+    public static MessageType getMessageType(@NotNull Update update) {
+        if (update.message() != null) {
+            return MessageType.MESSAGE;
+        } else if (update.editedMessage() != null) {
+            return MessageType.EDITED_MESSAGE;
+        } else if (update.channelPost() != null) {
+            return MessageType.CHANNEL_POST;
+        } else if (update.editedChannelPost() != null) {
+            return MessageType.EDITED_CHANNEL_POST;
+        } else if (update.inlineQuery() != null) {
+            return MessageType.INLINE_QUERY;
+        } else if (update.chosenInlineResult() != null) {
+            return MessageType.CHOSEN_INLINE_RESULT;
+        } else if (update.callbackQuery() != null) {
+            return MessageType.CALLBACK_QUERY;
+        } else if (update.shippingQuery() != null) {
+            return MessageType.SHIPPING_QUERY;
+        } else if (update.preCheckoutQuery() != null) {
+            return MessageType.PRECHECKOUT_QUERY;
+        } else if (update.poll() != null) {
+            return MessageType.POLL;
+        } else if (update.myChatMember() != null) {
+            return MessageType.MY_CHAT_MEMBER;
+        }
+        return MessageType.UNSUPPORTED;
+    }
+
+    /**
+     * Returns the first non-empty message, if any, among message, edited message, channel post and edited channel post.
+     *
+     * @param update telegram update
+     * @return message or {@code null}
+     */
+    @Nullable
+    public static Message getMessage(@NotNull Update update) {
+        if (update.message() != null) {
+            return update.message();
+        } else if (update.editedMessage() != null) {
+            return update.editedMessage();
+        } else if (update.channelPost() != null) {
+            return update.channelPost();
+        }
+        return update.editedChannelPost();
+    }
+
+    /**
+     * Returns id of the chat the same way as {@link TelegramEvent#getChat()} is resolved.
+     *
+     * @param update telegram update
+     * @return chat id or {@link #NO_ID} if the update has no chat
+     */
+    public static long getChatId(@NotNull Update update) {
+        Chat chat = null;
+        Message message = getMessage(update);
+        if (message != null) {
+            chat = message.chat() != null ? message.chat() : message.forwardFromChat();
+        } else if (update.callbackQuery() != null) {
+            Message callbackMessage = update.callbackQuery().message();
+            chat = callbackMessage != null ? callbackMessage.chat() : null;
+        } else if (update.myChatMember() != null) {
+            chat = update.myChatMember().chat();
+        }
+        return chat != null ? chat.id() : NO_ID;
+    }
+
+    /**
+     * Returns id of the user the same way as {@link TelegramEvent#getUser()} is resolved.
+     *
+     * @param update telegram update
+     * @return user id or {@link #NO_ID} if the update has no user
+     */
+    public static long getUserId(@NotNull Update update) {
+        User user = null;
+        Message message = getMessage(update);
+        if (message != null) {
+            user = message.from();
+            if (user == null) user = message.leftChatMember();
+            if (user == null) user = message.forwardFrom();
+        } else if (update.inlineQuery() != null) {
+            user = update.inlineQuery().from();
+        } else if (update.chosenInlineResult() != null) {
+            user = update.chosenInlineResult().from();
+        } else if (update.callbackQuery() != null) {
+            user = update.callbackQuery().from();
+        } else if (update.shippingQuery() != null) {
+            user = update.shippingQuery().from();
+        } else if (update.preCheckoutQuery() != null) {
+            user = update.preCheckoutQuery().from();
+        } else if (update.myChatMember() != null) {
+            user = update.myChatMember().from();
+        }
+        return user != null ? user.id() : NO_ID;
+    }
+
+    /**
+     * Returns id of the session the update belongs to: chat id, if any, user id otherwise. Updates without both chat
+     * and user get a dedicated session by the update id.
+     *
+     * @param update telegram update
+     * @return session id
+     */
+    public static long getSessionId(@NotNull Update update) {
+        long id = getChatId(update);
+        if (id == NO_ID) {
+            id = getUserId(update);
+        }
+        if (id == NO_ID) {
+            // We are sure that update object could not be null
+            return update.updateId();
+        }
+        return id;
+    }
+}
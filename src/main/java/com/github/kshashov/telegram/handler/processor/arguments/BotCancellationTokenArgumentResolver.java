@@ -0,0 +1,40 @@
+package com.github.kshashov.telegram.handler.processor.arguments;
+
+import com.github.kshashov.telegram.api.CancellationToken;
+import com.github.kshashov.telegram.api.MessageType;
+import com.github.kshashov.telegram.api.TelegramRequest;
+import com.github.kshashov.telegram.api.TelegramSession;
+import com.github.kshashov.telegram.handler.filter.InlineQueryDebounceUpdateFilter;
+import org.springframework.core.MethodParameter;
+
+import javax.annotation.Nullable;
+
+/**
+ * Add support for {@link CancellationToken} arguments. Inline queries get the token that is cancelled by
+ * {@link InlineQueryDebounceUpdateFilter}, other requests are never cancelled.
+ */
+public class BotCancellationTokenArgumentResolver implements BotHandlerMethodArgumentResolver {
+    private final InlineQueryDebounceUpdateFilter inlineQueryFilter;
+
+    public BotCancellationTokenArgumentResolver(@Nullable InlineQueryDebounceUpdateFilter inlineQueryFilter) {
+        this.inlineQueryFilter = inlineQueryFilter;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return CancellationToken.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, TelegramRequest telegramRequest, TelegramSession telegramSession) {
+        if ((inlineQueryFilter != null)
+                && (telegramRequest.getMessageType() == MessageType.INLINE_QUERY)
+                && (telegramRequest.getUser() != null)) {
+            return inlineQueryFilter.getCancellationToken(
+                    telegramRequest.getTelegramBot().getToken(),
+                    telegramRequest.getUser().id(),
+                    telegramRequest.getUpdate().updateId());
+        }
+        return CancellationToken.NONE;
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.kshashov.telegram.handler.processor.arguments;
+
+import com.github.kshashov.telegram.api.TelegramRequest;
+import com.github.kshashov.telegram.api.TelegramSession;
+import com.pengrad.telegrambot.model.Message;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+
+import java.util.List;
+
+/**
+ * Add support for {@code List<Message>} arguments that contain all messages of the media group (album).
+ *
+ * @see TelegramRequest#getMediaGroup()
+ */
+public class BotMediaGroupArgumentResolver implements BotHandlerMethodArgumentResolver {
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        if (!List.class.equals(parameter.getParameterType())) {
+            return false;
+        }
+        Class<?> elementType = ResolvableType.forMethodParameter(parameter).getGeneric(0).resolve();
+        return Message.class.equals(elementType);
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, TelegramRequest telegramRequest, TelegramSession telegramSession) {
+        return telegramRequest.getMediaGroup();
+    }
+}
@@ -1,10 +1,24 @@
 package com.github.kshashov.telegram.metrics;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SlidingWindowReservoir;
 import com.codahale.metrics.Timer;
+import com.github.kshashov.telegram.TelegramScope;
 import com.github.kshashov.telegram.handler.processor.HandlerMethod;
+import com.github.kshashov.telegram.outbound.CircuitBreaker;
+import com.github.kshashov.telegram.outbound.OutboundListener;
+import com.github.kshashov.telegram.outbound.OutboundPriority;
+import com.github.kshashov.telegram.outbound.OutboundScheduler;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
 
 import static java.lang.String.format;
 
@@ -15,16 +29,29 @@ import static java.lang.String.format;
  */
 public class MetricsService {
     public static final String UPDATES_RECEIVED = "updates";
+    public static final String UPDATES_FILTERED = "updates.filtered";
     public static final String UPDATE_ERRORS = "processing.errors";
     public static final String NO_HANDLERS_ERRORS = "no.handlers.errors";
     public static final String HANDLER_ERRORS = "handler.%s.errors";
     public static final String HANDLER_SUCCESSES = "handler.%s.successes";
     public static final String HANDLER_EXECUTION_TIME = "handler.%s.execution.time";
+    public static final String SESSIONS_SIZE = "sessions.size";
+    public static final String SESSIONS_HIT_RATE = "sessions.hit.rate";
+    public static final String SESSIONS_EVICTIONS = "sessions.evictions";
+    public static final String OUTBOUND_QUEUED = "outbound.queued";
+    public static final String OUTBOUND_RETRIES = "outbound.retries";
+    public static final String OUTBOUND_RETRY_DELAY = "outbound.retry.delay";
+    public static final String OUTBOUND_LANE_LATENCY = "outbound.%s.latency";
+    public static final String OUTBOUND_IN_FLIGHT = "outbound.in.flight";
+    public static final String OUTBOUND_CONCURRENCY_LIMIT = "outbound.concurrency.limit";
+    public static final String OUTBOUND_CIRCUITS_OPEN = "outbound.circuits.open";
+    public static final String OUTBOUND_CIRCUIT_OPENINGS = "outbound.circuit.openings";
     private final MetricRegistry metricRegistry;
 
     public MetricsService(MetricRegistry metricRegistry) {
         this.metricRegistry = metricRegistry;
         metricRegistry.register(UPDATES_RECEIVED, new Meter());
+        metricRegistry.register(UPDATES_FILTERED, new Meter());
         metricRegistry.register(UPDATE_ERRORS, new Meter());
         metricRegistry.register(NO_HANDLERS_ERRORS, new Meter());
     }
@@ -38,6 +65,13 @@ public class MetricsService {
         metricRegistry.getMeters().get(UPDATES_RECEIVED).mark(messages);
     }
 
+    /**
+     * Updates {@link #UPDATES_FILTERED} metric.
+     */
+    public void onUpdateFiltered() {
+        metricRegistry.getMeters().get(UPDATES_FILTERED).mark();
+    }
+
     /**
      * Updates {@link #NO_HANDLERS_ERRORS} metric.
      */
@@ -52,6 +86,61 @@ public class MetricsService {
         metricRegistry.getMeters().get(UPDATE_ERRORS).mark();
     }
 
+    /**
+     * Creates {@link #SESSIONS_SIZE}, {@link #SESSIONS_HIT_RATE} and {@link #SESSIONS_EVICTIONS} gauges.
+     *
+     * @param scope sessions scope
+     * @since 0.29
+     */
+    public void registerSessionMetrics(TelegramScope scope) {
+        metricRegistry.register(SESSIONS_SIZE, (Gauge<Long>) scope::size);
+        metricRegistry.register(SESSIONS_HIT_RATE, (Gauge<Double>) () -> scope.stats().hitRate());
+        metricRegistry.register(SESSIONS_EVICTIONS, (Gauge<Long>) () -> scope.stats().evictionCount());
+    }
+
+    /**
+     * Creates {@link #OUTBOUND_QUEUED}, {@link #OUTBOUND_IN_FLIGHT}, {@link #OUTBOUND_CONCURRENCY_LIMIT} and {@link
+     * #OUTBOUND_CIRCUITS_OPEN} gauges, updates {@link #OUTBOUND_LANE_LATENCY} timer of the lane once the request is sent,
+     * {@link #OUTBOUND_RETRIES} and {@link #OUTBOUND_RETRY_DELAY} metrics once the scheduler retries the request and
+     * {@link #OUTBOUND_CIRCUIT_OPENINGS} metric once the circuit breaker opens.
+     *
+     * @param scheduler outbound scheduler
+     * @since 0.29
+     */
+    public void registerOutboundMetrics(OutboundScheduler scheduler) {
+        metricRegistry.register(OUTBOUND_QUEUED, (Gauge<Integer>) scheduler::size);
+        metricRegistry.register(OUTBOUND_IN_FLIGHT, (Gauge<Integer>) scheduler::getInFlight);
+        metricRegistry.register(OUTBOUND_CONCURRENCY_LIMIT, (Gauge<Integer>) scheduler::getConcurrencyLimit);
+        metricRegistry.register(OUTBOUND_CIRCUITS_OPEN, (Gauge<Integer>) scheduler::getOpenCircuits);
+        Meter circuitOpenings = metricRegistry.register(OUTBOUND_CIRCUIT_OPENINGS, new Meter());
+        Meter retries = metricRegistry.register(OUTBOUND_RETRIES, new Meter());
+        Histogram retryDelay = metricRegistry.register(OUTBOUND_RETRY_DELAY, new Histogram(new SlidingWindowReservoir(64)));
+        Map<OutboundPriority, Timer> latencies = new EnumMap<>(OutboundPriority.class);
+        for (OutboundPriority priority : OutboundPriority.values()) {
+            String name = format(OUTBOUND_LANE_LATENCY, priority.name().toLowerCase(Locale.ROOT));
+            latencies.put(priority, metricRegistry.register(name, new Timer(new SlidingWindowReservoir(64))));
+        }
+        scheduler.addListener(new OutboundListener() {
+            @Override
+            public void onSent(BaseRequest<?, ?> request, OutboundPriority priority, Duration latency) {
+                latencies.get(priority).update(latency);
+            }
+
+            @Override
+            public void onRetry(BaseRequest<?, ?> request, int attempt, Duration delay) {
+                retries.mark();
+                retryDelay.update(delay.toMillis());
+            }
+
+            @Override
+            public void onCircuitStateChanged(TelegramBot bot, CircuitBreaker.State state) {
+                if (state == CircuitBreaker.State.OPEN) {
+                    circuitOpenings.mark();
+                }
+            }
+        });
+    }
+
     /**
      * Creates handler related metrics.
      *
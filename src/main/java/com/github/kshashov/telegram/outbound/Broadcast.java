@@ -0,0 +1,365 @@
+package com.github.kshashov.telegram.outbound;
+
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Progress of the single broadcast started by {@link BroadcastService}.
+ *
+ * <p>Chats are processed in the order of the source. The checkpoint file keeps the count of the chats at the beginning
+ * of the source that have been processed, so the broadcast started again with the same name skips them. Messages that
+ * were in flight when the application stopped are sent again, so each chat receives the message at least once.</p>
+ *
+ * <p>Messages rejected by {@link OutboundScheduler} because its queue is full or the circuit breaker is open are sent
+ * again after the backoff. The broadcast is cancelled once the scheduler is shut down.</p>
+ *
+ * @since 0.29
+ */
+@Slf4j
+public class Broadcast {
+    private static final long CHECKPOINT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * Name of the broadcast.
+     */
+    @Getter
+    private final String name;
+    /**
+     * File with the ids of the chats that have blocked the bot or are not available anymore, one id per line.
+     */
+    @Getter
+    private final Path blockedFile;
+    private final Path checkpointFile;
+    private final TelegramBot bot;
+    private final OutboundScheduler scheduler;
+    private final LongFunction<SendMessage> messages;
+    private final Semaphore window;
+    private final int windowSize;
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final Object lock = new Object();
+    private volatile long next;
+    private volatile boolean paused;
+    private volatile boolean cancelled;
+    private BufferedWriter blockedWriter;
+
+    Broadcast(String name, Path dir, TelegramBot bot, OutboundScheduler scheduler, LongFunction<SendMessage> messages, int windowSize) {
+        this.name = name;
+        this.checkpointFile = dir.resolve(name + ".checkpoint");
+        this.blockedFile = dir.resolve(name + ".blocked");
+        this.bot = bot;
+        this.scheduler = scheduler;
+        this.messages = messages;
+        this.windowSize = windowSize;
+        this.window = new Semaphore(windowSize);
+    }
+
+    /**
+     * Sends the message to each chat of the source, starting from the checkpoint.
+     */
+    void run(Iterator<Long> chatIds) {
+        try {
+            Files.createDirectories(checkpointFile.getParent());
+            long skip = readCheckpoint();
+            blockedWriter = Files.newBufferedWriter(blockedFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+            long seq = 0;
+            for (; (seq < skip) && chatIds.hasNext(); seq++) {
+                chatIds.next();
+            }
+            next = seq;
+            log.info("Broadcast {} is started from {}", name, seq);
+
+            long lastCheckpoint = System.nanoTime();
+            while (chatIds.hasNext() && awaitRunning()) {
+                long chatId = chatIds.next();
+                window.acquire();
+                inFlight.add(seq);
+                next = seq + 1;
+                long backoff = MIN_BACKOFF_NANOS;
+                while (!send(seq, chatId)) {
+                    if (!awaitBackoff(backoff)) {
+                        // The message has not been sent, so the checkpoint should not move past it
+                        window.release();
+                        break;
+                    }
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+                }
+                seq++;
+
+                if (System.nanoTime() - lastCheckpoint >= CHECKPOINT_INTERVAL_NANOS) {
+                    lastCheckpoint = System.nanoTime();
+                    writeCheckpoint();
+                }
+            }
+
+            // Wait for the requests in flight
+            window.acquire(windowSize);
+            window.release(windowSize);
+            writeCheckpoint();
+            closeBlockedWriter();
+
+            if (cancelled) {
+                completion.completeExceptionally(new CancellationException("Broadcast " + name + " has been cancelled"));
+            } else {
+                log.info("Broadcast {} is completed: {} sent, {} failed, {} blocked", name, sent.get(), failed.get(), blocked.get());
+                completion.complete(null);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            writeCheckpoint();
+            closeBlockedWriter();
+            completion.completeExceptionally(ex);
+        } catch (IOException | RuntimeException ex) {
+            log.error("Broadcast {} has failed", name, ex);
+            writeCheckpoint();
+            closeBlockedWriter();
+            completion.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Sends the message to the chat.
+     *
+     * @return {@code false} if the message has been rejected because the scheduler queue is full or the circuit breaker
+     * is open, so it should be sent again later. Such rejections are reported synchronously by the scheduler
+     */
+    private boolean send(long seq, long chatId) {
+        SendMessage message;
+        try {
+            message = messages.apply(chatId);
+        } catch (RuntimeException ex) {
+            log.error("Broadcast {} message could not be created for chat {}", name, chatId, ex);
+            failed.incrementAndGet();
+            complete(seq);
+            return true;
+        }
+
+        AtomicBoolean rejected = new AtomicBoolean();
+        scheduler.execute(bot, message, new Callback<SendMessage, SendResponse>() {
+            @Override
+            public void onResponse(SendMessage request, SendResponse response) {
+                if (response.isOk()) {
+                    sent.incrementAndGet();
+                } else if (isBlocked(response)) {
+                    blocked.incrementAndGet();
+                    recordBlocked(chatId);
+                } else {
+                    failed.incrementAndGet();
+                    log.warn("Broadcast {} message to chat {} has failed: {}", name, chatId, response.description());
+                }
+                complete(seq);
+            }
+
+            @Override
+            public void onFailure(SendMessage request, IOException e) {
+                if (e instanceof OutboundRejectedException) {
+                    if (scheduler.isShutdown()) {
+                        // The message has not been sent, so the checkpoint should not move past it
+                        log.warn("Broadcast {} is stopped because the outbound scheduler has been shut down", name);
+                        window.release();
+                        cancel();
+                    } else {
+                        log.debug("Broadcast {} message to chat {} has been rejected: {}", name, chatId, e.getMessage());
+                        rejected.set(true);
+                    }
+                    return;
+                }
+                failed.incrementAndGet();
+                log.warn("Broadcast {} message to chat {} has failed", name, chatId, e);
+                complete(seq);
+            }
+        }, OutboundPriority.BULK);
+        return !rejected.get();
+    }
+
+    private void complete(long seq) {
+        inFlight.remove(seq);
+        window.release();
+    }
+
+    /**
+     * The bot has been blocked by the user, the user has been deactivated, the bot has been kicked from the group or the
+     * chat does not exist anymore.
+     */
+    private static boolean isBlocked(SendResponse response) {
+        return (response.errorCode() == 403)
+                || ((response.errorCode() == 400) && (response.description() != null) && response.description().contains("chat not found"));
+    }
+
+    private void recordBlocked(long chatId) {
+        synchronized (lock) {
+            try {
+                if (blockedWriter != null) {
+                    blockedWriter.write(Long.toString(chatId));
+                    blockedWriter.newLine();
+                }
+            } catch (IOException ex) {
+                log.error("Blocked chat {} could not be recorded", chatId, ex);
+            }
+        }
+    }
+
+    private boolean awaitRunning() throws InterruptedException {
+        synchronized (lock) {
+            while (paused && !cancelled) {
+                lock.wait();
+            }
+        }
+        return !cancelled;
+    }
+
+    /**
+     * Waits before the rejected message is sent again.
+     *
+     * @return {@code false} if the broadcast has been cancelled
+     */
+    private boolean awaitBackoff(long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        synchronized (lock) {
+            long left;
+            while (!cancelled && ((left = deadline - System.nanoTime()) > 0)) {
+                TimeUnit.NANOSECONDS.timedWait(lock, left);
+            }
+        }
+        return !cancelled;
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        return Long.parseLong(Files.readString(checkpointFile, StandardCharsets.UTF_8).trim());
+    }
+
+    /**
+     * Persists the count of the processed chats at the beginning of the source.
+     */
+    private void writeCheckpoint() {
+        long processed = next;
+        Long first = inFlight.isEmpty() ? null : inFlight.first();
+        if ((first != null) && (first < processed)) {
+            processed = first;
+        }
+
+        synchronized (lock) {
+            try {
+                if (blockedWriter != null) {
+                    blockedWriter.flush();
+                }
+                Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+                Files.writeString(tmp, Long.toString(processed), StandardCharsets.UTF_8);
+                Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Checkpoint of broadcast " + name + " could not be written", ex);
+            }
+        }
+    }
+
+    private void closeBlockedWriter() {
+        synchronized (lock) {
+            try {
+                if (blockedWriter != null) {
+                    blockedWriter.close();
+                    blockedWriter = null;
+                }
+            } catch (IOException ex) {
+                log.error("Blocked chats file of broadcast {} could not be closed", name, ex);
+            }
+        }
+    }
+
+    /**
+     * Stops sending new messages and persists the checkpoint. Messages in flight are still delivered.
+     */
+    public void pause() {
+        synchronized (lock) {
+            paused = true;
+        }
+        if (!completion.isDone()) {
+            writeCheckpoint();
+        }
+    }
+
+    /**
+     * Continues the paused broadcast.
+     */
+    public void resume() {
+        synchronized (lock) {
+            paused = false;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the broadcast. The checkpoint is kept, so the broadcast could be started again later.
+     */
+    public void cancel() {
+        synchronized (lock) {
+            cancelled = true;
+            lock.notifyAll();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return future that is completed once all messages have been sent or completed exceptionally if the broadcast
+     * has been cancelled or failed
+     */
+    @NotNull
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * @return count of the delivered messages
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return count of the messages that could not be delivered, except of the blocked chats
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return count of the chats that have blocked the bot or are not available anymore
+     */
+    public long getBlocked() {
+        return blocked.get();
+    }
+}
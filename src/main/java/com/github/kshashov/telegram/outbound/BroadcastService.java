@@ -0,0 +1,168 @@
+package com.github.kshashov.telegram.outbound;
+
+import com.github.kshashov.telegram.handler.processor.Template;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.SendMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Sends the same message to a large number of chats at the max rate allowed by {@link OutboundScheduler}.
+ *
+ * <p>Each broadcast runs on its own thread and keeps a bounded number of messages in flight, so the outbound queues
+ * are never overflowed. Templates are rendered once per distinct template and model. The progress is persisted to
+ * the checkpoint file, so the broadcast restarted with the same name continues from the last checkpoint.</p>
+ *
+ * @see Broadcast
+ * @since 0.29
+ */
+@Slf4j
+public class BroadcastService {
+    private static final int RENDERED_CACHE_SIZE = 1024;
+
+    private final TelegramBot defaultBot;
+    private final @Nullable OutboundScheduler scheduler;
+    private final @Nullable ITemplateEngine templateEngine;
+    private final Path dir;
+    private final int windowSize;
+    private final ConcurrentMap<String, Broadcast> broadcasts = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("telegram-broadcast-%d")
+            .setDaemon(true)
+            .build());
+
+    /**
+     * @param defaultBot     bot that sends the messages by default
+     * @param scheduler      outbound scheduler that limits the rate
+     * @param templateEngine template engine, if any
+     * @param dir            directory for the checkpoint and blocked chats files
+     * @param windowSize     max count of the messages in flight per broadcast
+     */
+    public BroadcastService(@NotNull TelegramBot defaultBot, @Nullable OutboundScheduler scheduler, @Nullable ITemplateEngine templateEngine, @NotNull Path dir, int windowSize) {
+        this.defaultBot = defaultBot;
+        this.scheduler = scheduler;
+        this.templateEngine = templateEngine;
+        this.dir = dir;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Starts the broadcast of the templates with the default bot.
+     *
+     * @param name      unique name of the broadcast that is used to resume it
+     * @param chatIds   chat ids in the same order for each start of the broadcast
+     * @param templates template for the given chat, e.g. depending on the user locale
+     * @return broadcast
+     */
+    @NotNull
+    public Broadcast broadcast(@NotNull String name, @NotNull Stream<Long> chatIds, @NotNull LongFunction<Template<?>> templates) {
+        return broadcast(defaultBot, name, chatIds, templates);
+    }
+
+    /**
+     * Starts the broadcast of the templates.
+     *
+     * @param bot       bot that sends the messages
+     * @param name      unique name of the broadcast that is used to resume it
+     * @param chatIds   chat ids in the same order for each start of the broadcast
+     * @param templates template for the given chat, e.g. depending on the user locale
+     * @return broadcast
+     */
+    @NotNull
+    public Broadcast broadcast(@NotNull TelegramBot bot, @NotNull String name, @NotNull Stream<Long> chatIds, @NotNull LongFunction<Template<?>> templates) {
+        if (templateEngine == null) {
+            throw new IllegalStateException("Template engine is not initialized");
+        }
+
+        // Rendering is the most expensive part, and most chats share a few templates
+        Map<Template<?>, String> rendered = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Template<?>, String> eldest) {
+                return size() > RENDERED_CACHE_SIZE;
+            }
+        });
+        return broadcastMessages(bot, name, chatIds, chatId -> {
+            Template<?> template = templates.apply(chatId);
+            String text = rendered.computeIfAbsent(template, this::render);
+            SendMessage sendMessage = new SendMessage(chatId, text)
+                    .disableWebPagePreview(true)
+                    .disableNotification(template.isDisableNotification());
+            if (template.parseMode() != null) {
+                sendMessage.parseMode(template.parseMode());
+            }
+            if (template.getKeyboard() != null) {
+                sendMessage.replyMarkup(template.getKeyboard());
+            }
+            return sendMessage;
+        });
+    }
+
+    /**
+     * Starts the broadcast of the messages.
+     *
+     * @param bot      bot that sends the messages
+     * @param name     unique name of the broadcast that is used to resume it
+     * @param chatIds  chat ids in the same order for each start of the broadcast
+     * @param messages message for the given chat
+     * @return broadcast
+     */
+    @NotNull
+    public Broadcast broadcastMessages(@NotNull TelegramBot bot, @NotNull String name, @NotNull Stream<Long> chatIds, @NotNull LongFunction<SendMessage> messages) {
+        if (scheduler == null) {
+            throw new IllegalStateException("Broadcasts require the outbound scheduler");
+        }
+
+        Broadcast broadcast = new Broadcast(name, dir, bot, scheduler, messages, windowSize);
+        if (broadcasts.putIfAbsent(name, broadcast) != null) {
+            throw new IllegalStateException("Broadcast " + name + " is already running");
+        }
+        broadcast.getCompletion().whenComplete((r, ex) -> broadcasts.remove(name, broadcast));
+        executor.execute(() -> {
+            try (chatIds) {
+                broadcast.run(chatIds.iterator());
+            }
+        });
+        return broadcast;
+    }
+
+    /**
+     * @param name name of the broadcast
+     * @return running broadcast or {@code null} if it is not running
+     */
+    @Nullable
+    public Broadcast getBroadcast(@NotNull String name) {
+        return broadcasts.get(name);
+    }
+
+    /**
+     * Pauses all running broadcasts, so they could be continued after the restart.
+     */
+    public void shutdown() {
+        broadcasts.values().forEach(broadcast -> {
+            broadcast.pause();
+            broadcast.cancel();
+        });
+        executor.shutdown();
+    }
+
+    private String render(Template<?> template) {
+        Context context = new Context();
+        context.setVariable("model", template.getModel());
+        return templateEngine.process(template.getTemplate(), context);
+    }
+}
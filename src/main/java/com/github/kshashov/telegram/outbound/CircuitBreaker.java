@@ -0,0 +1,141 @@
+package com.github.kshashov.telegram.outbound;
+
+/**
+ * Circuit breaker of the single bot inside {@link OutboundScheduler}. It opens once the share of the failed or slow
+ * requests among the recent ones exceeds the threshold, so no requests are sent while Telegram is unavailable. After
+ * the open duration the breaker lets a single probe request through: the breaker is closed if the probe succeeds and
+ * opened again otherwise.
+ *
+ * <p>File uploads are not counted as slow, since their latency depends on the file size rather than on Telegram. They
+ * are counted only if they fail, e.g. due to the timeout.</p>
+ *
+ * <p>Not thread-safe, the caller is responsible for the synchronization.</p>
+ *
+ * @since 0.29
+ */
+public class CircuitBreaker {
+    private static final int WINDOW_SIZE = 20;
+    private static final int MIN_CALLS = 10;
+
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final boolean[] window = new boolean[WINDOW_SIZE];
+    private int calls;
+    private int failures;
+    private int next;
+    private State state = State.CLOSED;
+    private long openUntil;
+    private boolean probeInFlight;
+
+    CircuitBreaker(double failureRateThreshold, long slowCallNanos, long openNanos) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallNanos;
+        this.openNanos = openNanos;
+    }
+
+    State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the time until the next request is allowed to be sent. Moves the open breaker to the half-open state once
+     * the open duration has elapsed.
+     *
+     * @return 0 if the request could be sent now, {@link Long#MAX_VALUE} if the probe result is awaited
+     */
+    long waitNanos(long now) {
+        switch (state) {
+            case OPEN:
+                if (openUntil - now > 0) {
+                    return openUntil - now;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = false;
+                return 0;
+            case HALF_OPEN:
+                return probeInFlight ? Long.MAX_VALUE : 0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Is invoked once the request is sent.
+     *
+     * @return {@code true} if the request is the probe of the half-open breaker
+     */
+    boolean onSend() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records the result of the completed request.
+     *
+     * @param latencyNanos latency of the request
+     * @param failed       {@code true} if the request has failed due to the network or server error
+     * @param upload       {@code true} if the request uploads files, so its latency is not checked
+     * @param probe        {@code true} if the request is the probe
+     * @param now          current time
+     */
+    void onResult(long latencyNanos, boolean failed, boolean upload, boolean probe, long now) {
+        boolean failure = failed || (!upload && (latencyNanos >= slowCallNanos));
+        if (state == State.HALF_OPEN) {
+            if (!probe) {
+                // The request has been sent before the breaker was opened
+                return;
+            }
+            if (failure) {
+                open(now);
+            } else {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            if (calls == WINDOW_SIZE) {
+                failures -= window[next] ? 1 : 0;
+            } else {
+                calls++;
+            }
+            window[next] = failure;
+            failures += failure ? 1 : 0;
+            next = (next + 1) % WINDOW_SIZE;
+
+            if ((calls >= MIN_CALLS) && (failures >= calls * failureRateThreshold)) {
+                open(now);
+            }
+        }
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openUntil = now + openNanos;
+        probeInFlight = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        calls = 0;
+        failures = 0;
+        next = 0;
+        probeInFlight = false;
+    }
+
+    public enum State {
+        /**
+         * Requests are sent.
+         */
+        CLOSED,
+        /**
+         * Requests are not sent because Telegram is considered unavailable.
+         */
+        OPEN,
+        /**
+         * The single probe request is sent to check whether Telegram is available again.
+         */
+        HALF_OPEN
+    }
+}
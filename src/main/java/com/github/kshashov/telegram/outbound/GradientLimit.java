@@ -0,0 +1,71 @@
+package com.github.kshashov.telegram.outbound;
+
+/**
+ * Concurrency limit that follows the gradient of the request latency. The limit grows while the latency stays close to
+ * its long-term average and shrinks once the latency rises, i.e. the requests start to queue up on the server side.
+ * Network failures shrink the limit as well.
+ *
+ * <p>Not thread-safe, the caller is responsible for the synchronization.</p>
+ *
+ * @since 0.29
+ */
+class GradientLimit {
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int LONG_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private double longRtt;
+    private int samples;
+
+    GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @return current count of the requests allowed to be in flight
+     */
+    int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Updates the limit with the result of the completed request.
+     *
+     * @param rttNanos latency of the request
+     * @param inFlight count of the requests in flight when the request has been sent
+     * @param dropped  {@code true} if the request has failed without the response
+     */
+    void onSample(long rttNanos, int inFlight, boolean dropped) {
+        if (dropped) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return;
+        }
+
+        double rtt = Math.max(1, rttNanos);
+        if (samples < LONG_WINDOW) {
+            samples++;
+            longRtt += (rtt - longRtt) / samples;
+        } else {
+            longRtt += (rtt - longRtt) * 2 / (LONG_WINDOW + 1);
+        }
+        if (longRtt / rtt > 2) {
+            // The latency is back to normal after the long slowdown, so the average should catch up faster
+            longRtt *= 0.95;
+        }
+        if (inFlight < limit / 2) {
+            // The limit is not reached, so the latency says nothing about the higher concurrency
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / rtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+}
@@ -0,0 +1,480 @@
+package com.github.kshashov.telegram.outbound;
+
+import com.pengrad.telegrambot.BotUtils;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Durable outbox of {@link OutboundScheduler}. Requests are appended to memory-mapped segment files on the local disk
+ * once they are queued and are marked as done once Telegram has accepted them, so the requests that were not delivered
+ * before the process stopped are replayed on the next start.
+ *
+ * <p>Each record consists of the length, the state, the lane, the bot id, the method name and the request parameters
+ * converted to strings the same way as the bot does before sending them. Marking the record as done rewrites its state
+ * byte in place, and the segment is deleted once all its records are done. The records are not forced to the disk on
+ * each write, so they survive the process crash, but not the crash of the operating system.</p>
+ *
+ * <p>Requests that have failed permanently are moved to the dead-letter file along with the error, see {@link
+ * #deadLetters()}. Multipart requests are not journaled because their files could not be restored.</p>
+ *
+ * @since 0.29
+ */
+@Slf4j
+public class OutboundJournal implements Closeable {
+    static final String SEGMENT_PREFIX = "outbox-";
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String DEAD_LETTERS_FILE = "outbox.dead";
+    static final long NONE = -1L;
+    private static final int HEADER_SIZE = Integer.BYTES + 2 + Long.BYTES;
+    private static final byte PENDING = 1;
+    private static final byte DONE = 2;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<Segment> segments = new ArrayList<>();
+    private final FileChannel deadLetters;
+    private List<Entry> recovered = new ArrayList<>();
+    private Segment active;
+    private boolean closed;
+
+    /**
+     * @param directory   directory for the segment files. Pending requests of the existing segments are kept for
+     *                    {@link OutboundScheduler#replay(Collection)}
+     * @param segmentSize size of the segment file in bytes
+     * @throws IOException if the directory could not be prepared
+     */
+    public OutboundJournal(@NotNull Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(OutboundJournal::isSegment)
+                    .sorted(Comparator.comparingInt(OutboundJournal::segmentId))
+                    .toList();
+        }
+        for (Path file : files) {
+            recover(file);
+        }
+        if (!recovered.isEmpty()) {
+            log.info("{} outbound requests have been recovered from {}", recovered.size(), directory);
+        }
+
+        this.deadLetters = FileChannel.open(directory.resolve(DEAD_LETTERS_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.active = createSegment(segmentSize);
+    }
+
+    /**
+     * Serializes the request, so it could be appended to the journal without holding the caller lock for long.
+     *
+     * @return serialized record or {@code null} if the request could not be journaled
+     */
+    @Nullable
+    byte[] encode(TelegramBot bot, BaseRequest<?, ?> request, OutboundPriority priority) {
+        if (request.isMultipart()) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeByte(PENDING);
+            out.writeByte(priority.ordinal());
+            out.writeLong(getBotId(bot));
+            out.writeUTF(request.getMethod());
+            Map<String, Object> parameters = request.getParameters();
+            out.writeInt(parameters.size());
+            for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+                out.writeUTF(parameter.getKey());
+                writeString(out, toParamValue(parameter.getValue()));
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.error("Request {} could not be journaled", request, ex);
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Appends the serialized request to the active segment.
+     *
+     * @return position of the record or {@link #NONE} if it could not be written
+     */
+    synchronized long append(@NotNull byte[] record) {
+        if (closed) {
+            return NONE;
+        }
+        try {
+            if (active.position + record.length > active.buffer.capacity()) {
+                Segment full = active;
+                active = createSegment(Math.max(segmentSize, record.length));
+                // The active segment is never deleted on release, so it could already be empty
+                if (full.live == 0) {
+                    delete(full);
+                }
+            }
+        } catch (UncheckedIOException ex) {
+            log.error("Outbound request could not be journaled", ex);
+            return NONE;
+        }
+
+        // The length is written last, so the partially written record is not recovered
+        int offset = active.position;
+        active.buffer.put(offset + Integer.BYTES, record, Integer.BYTES, record.length - Integer.BYTES);
+        active.buffer.putInt(offset, record.length - HEADER_SIZE);
+        active.position += record.length;
+        active.live++;
+        return position(active.id, offset);
+    }
+
+    /**
+     * Marks the request as delivered.
+     *
+     * @param position position of the record
+     */
+    synchronized void complete(long position) {
+        if (closed || (position == NONE)) {
+            return;
+        }
+        Segment segment = segments.get(segmentId(position));
+        segment.buffer.put(offset(position) + Integer.BYTES, DONE);
+        release(segment);
+    }
+
+    /**
+     * Moves the request to the dead-letter file.
+     *
+     * @param position position of the record
+     * @param error    description of the failure
+     */
+    synchronized void deadLetter(long position, @NotNull String error) {
+        if (closed || (position == NONE)) {
+            return;
+        }
+        Segment segment = segments.get(segmentId(position));
+        int offset = offset(position);
+        int length = HEADER_SIZE + segment.buffer.getInt(offset);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(length + error.length() + 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(System.currentTimeMillis());
+            writeString(out, error);
+            out.writeInt(length);
+            byte[] record = new byte[length];
+            segment.buffer.get(offset, record);
+            out.write(record);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                deadLetters.write(buffer);
+            }
+        } catch (IOException ex) {
+            log.error("Outbound request could not be moved to the dead letters", ex);
+        }
+        segment.buffer.put(offset + Integer.BYTES, DONE);
+        release(segment);
+    }
+
+    /**
+     * Returns the requests that were pending when the previous journal instance was closed. Each request is returned
+     * only once.
+     */
+    synchronized List<Entry> takeRecovered() {
+        List<Entry> entries = recovered;
+        recovered = new ArrayList<>();
+        return entries;
+    }
+
+    /**
+     * Reads the requests that have failed permanently.
+     *
+     * @return dead letters in the order they were written
+     * @throws IOException if the dead-letter file could not be read
+     */
+    @NotNull
+    public synchronized List<DeadLetter> deadLetters() throws IOException {
+        List<DeadLetter> result = new ArrayList<>();
+        Path file = directory.resolve(DEAD_LETTERS_FILE);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                long time;
+                try {
+                    time = in.readLong();
+                } catch (EOFException ex) {
+                    break;
+                }
+                String error = readString(in);
+                byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                Entry entry = decode(ByteBuffer.wrap(record), 0, NONE);
+                result.add(new DeadLetter(Instant.ofEpochMilli(time), entry.botId(), entry.method(), entry.parameters(), error));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return count of the requests that are not delivered yet
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            if (segment != null) {
+                size += segment.live;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Flushes the segments to the disk. Requests that are completed after this call stay pending and are replayed by
+     * the next journal instance.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            if (segment != null) {
+                segment.buffer.force();
+            }
+        }
+        try {
+            deadLetters.close();
+        } catch (IOException ex) {
+            log.warn("Outbound dead-letter file could not be closed", ex);
+        }
+    }
+
+    /**
+     * Maps the existing segment and collects its pending records.
+     */
+    private void recover(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        int id = segmentId(path);
+        while (segments.size() <= id) {
+            segments.add(null);
+        }
+        Segment segment = new Segment(id, path, buffer);
+        segments.set(id, segment);
+
+        int offset = 0;
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if ((length <= 0) || (offset + HEADER_SIZE + length > buffer.capacity())) {
+                break;
+            }
+            if (buffer.get(offset + Integer.BYTES) == PENDING) {
+                try {
+                    recovered.add(decode(buffer, offset, position(id, offset)));
+                    segment.live++;
+                } catch (RuntimeException ex) {
+                    log.warn("Outbound journal {} is corrupted at {}, the rest is skipped", path, offset, ex);
+                    break;
+                }
+            }
+            offset += HEADER_SIZE + length;
+        }
+        segment.position = offset;
+
+        if (segment.live == 0) {
+            delete(segment);
+        }
+    }
+
+    private static Entry decode(ByteBuffer buffer, int offset, long position) {
+        int length = buffer.getInt(offset);
+        OutboundPriority priority = OutboundPriority.values()[buffer.get(offset + Integer.BYTES + 1)];
+        long botId = buffer.getLong(offset + Integer.BYTES + 2);
+        byte[] payload = new byte[length];
+        buffer.get(offset + HEADER_SIZE, payload);
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            String method = in.readUTF();
+            int count = in.readInt();
+            Map<String, String> parameters = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                parameters.put(in.readUTF(), readString(in));
+            }
+            return new Entry(position, botId, priority, method, parameters);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void release(Segment segment) {
+        segment.live--;
+        if ((segment != active) && (segment.live == 0)) {
+            delete(segment);
+        }
+    }
+
+    private Segment createSegment(int size) {
+        int id = segments.indexOf(null);
+        if (id < 0) {
+            id = segments.size();
+            segments.add(null);
+        }
+
+        Path path = directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Segment segment = new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            segments.set(id, segment);
+            return segment;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Outbound journal segment could not be created", ex);
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.set(segment.id, null);
+        try {
+            // The mapping is released once the buffer is garbage collected
+            Files.deleteIfExists(segment.path);
+        } catch (IOException ex) {
+            log.warn("Outbound journal segment {} could not be deleted", segment.path, ex);
+        }
+    }
+
+    /**
+     * Converts the parameter the same way as {@link com.pengrad.telegrambot.impl.TelegramBotClient} does.
+     */
+    private static String toParamValue(Object value) {
+        Class<?> type = value.getClass();
+        if (type.isPrimitive() || type.isEnum() || type.getName().startsWith("java.lang")) {
+            return String.valueOf(value);
+        }
+        return BotUtils.toJson(value);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the bot id, which is the public part of the token before the colon.
+     */
+    static long getBotId(TelegramBot bot) {
+        String token = bot.getToken();
+        if (token == null) {
+            return 0;
+        }
+        int colon = token.indexOf(':');
+        try {
+            return Long.parseLong((colon < 0) ? token : token.substring(0, colon));
+        } catch (NumberFormatException ex) {
+            return token.hashCode();
+        }
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static int segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static long position(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentId(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offset(long position) {
+        return (int) position;
+    }
+
+    /**
+     * Request that has failed permanently.
+     *
+     * @param time       time of the failure
+     * @param botId      id of the bot that has sent the request
+     * @param method     Bot API method
+     * @param parameters request parameters
+     * @param error      description of the failure
+     */
+    public record DeadLetter(Instant time, long botId, String method, Map<String, String> parameters, String error) {
+    }
+
+    /**
+     * Pending request recovered from the segment.
+     */
+    record Entry(long position, long botId, OutboundPriority priority, String method, Map<String, String> parameters) {
+
+        JournaledRequest toRequest() {
+            return new JournaledRequest(method, parameters);
+        }
+    }
+
+    /**
+     * Request restored from the journal. The parameters are sent as is, since they have been converted to strings
+     * already.
+     */
+    static class JournaledRequest extends BaseRequest<JournaledRequest, BaseResponse> {
+        private final String method;
+
+        JournaledRequest(String method, Map<String, String> parameters) {
+            super(BaseResponse.class);
+            this.method = method;
+            addAll(new LinkedHashMap<String, Object>(parameters));
+        }
+
+        @Override
+        public String getMethod() {
+            return method;
+        }
+    }
+
+    private static class Segment {
+        private final int id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int live;
+
+        Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
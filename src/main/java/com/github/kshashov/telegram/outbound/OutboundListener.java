@@ -0,0 +1,45 @@
+package com.github.kshashov.telegram.outbound;
+
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Is notified about the events of {@link OutboundScheduler}, e.g. to collect metrics.
+ *
+ * @see OutboundScheduler#addListener(OutboundListener)
+ * @since 0.29
+ */
+public interface OutboundListener {
+
+    /**
+     * Is invoked right before the request is passed to the bot.
+     *
+     * @param request  request
+     * @param priority lane of the request
+     * @param latency  time since the request has been queued
+     */
+    default void onSent(@NotNull BaseRequest<?, ?> request, @NotNull OutboundPriority priority, @NotNull Duration latency) {
+    }
+
+    /**
+     * Is invoked when the failed request is queued again.
+     *
+     * @param request request
+     * @param attempt number of the retry, starting from 1
+     * @param delay   time before the retry
+     */
+    default void onRetry(@NotNull BaseRequest<?, ?> request, int attempt, @NotNull Duration delay) {
+    }
+
+    /**
+     * Is invoked when the circuit breaker of the bot changes its state.
+     *
+     * @param bot   bot
+     * @param state new state
+     */
+    default void onCircuitStateChanged(@NotNull TelegramBot bot, @NotNull CircuitBreaker.State state) {
+    }
+}
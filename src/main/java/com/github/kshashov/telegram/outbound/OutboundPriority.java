@@ -0,0 +1,46 @@
+package com.github.kshashov.telegram.outbound;
+
+import com.pengrad.telegrambot.request.*;
+
+import javax.validation.constraints.NotNull;
+import java.util.Set;
+
+/**
+ * Lanes of {@link OutboundScheduler}. Each lane receives the share of the bot rate limit proportional to its weight,
+ * so the interactive answers are not delayed by the bulk traffic.
+ *
+ * @since 0.29
+ */
+public enum OutboundPriority {
+    /**
+     * Answers to callback, inline, shipping and pre-checkout queries and chat actions that the user is waiting for.
+     */
+    INTERACTIVE,
+    /**
+     * Replies and other requests.
+     */
+    DEFAULT,
+    /**
+     * Broadcasts and other background traffic.
+     */
+    BULK;
+
+    private static final Set<Class<?>> INTERACTIVE_REQUESTS = Set.of(
+            AnswerCallbackQuery.class,
+            AnswerInlineQuery.class,
+            AnswerPreCheckoutQuery.class,
+            AnswerShippingQuery.class,
+            AnswerWebAppQuery.class,
+            SendChatAction.class);
+
+    /**
+     * Returns the default lane of the request.
+     *
+     * @param request request
+     * @return {@link #INTERACTIVE} for the answers to the queries and chat actions, {@link #DEFAULT} otherwise
+     */
+    @NotNull
+    public static OutboundPriority of(@NotNull BaseRequest<?, ?> request) {
+        return INTERACTIVE_REQUESTS.contains(request.getClass()) ? INTERACTIVE : DEFAULT;
+    }
+}
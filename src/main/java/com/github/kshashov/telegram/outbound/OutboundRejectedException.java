@@ -0,0 +1,17 @@
+package com.github.kshashov.telegram.outbound;
+
+import java.io.IOException;
+
+/**
+ * Is passed to {@link com.pengrad.telegrambot.Callback#onFailure} if the request has not been sent to Telegram by
+ * {@link OutboundScheduler}, e.g. because the outbound queue is full.
+ *
+ * @since 0.29
+ */
+public class OutboundRejectedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public OutboundRejectedException(String message) {
+        super(message);
+    }
+}
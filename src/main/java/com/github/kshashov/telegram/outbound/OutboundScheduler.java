@@ -0,0 +1,1180 @@
+package com.github.kshashov.telegram.outbound;
+
+import com.github.kshashov.telegram.util.TokenBucket;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.ResponseParameters;
+import com.pengrad.telegrambot.request.*;
+import com.pengrad.telegrambot.response.BaseResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Sends requests to Telegram without exceeding its flood limits: about 30 messages per second for the whole bot, 1
+ * message per second for a private chat and 20 messages per minute for a group or channel.
+ *
+ * <p>Requests are kept in per-chat queues. A single scheduler thread drains the chats in round-robin order, so a chat
+ * with a long queue could not delay the replies to other chats. Each bot and each chat has its own token bucket, and
+ * the drain is rescheduled to the moment when the next token becomes available instead of polling.</p>
+ *
+ * <p>Requests are divided into {@link OutboundPriority} lanes. The lane of each request is selected by the smooth
+ * weighted round-robin, so the interactive answers are sent first, but the bulk traffic is not starved.</p>
+ *
+ * <p>Only one request per chat is in flight at a time: the next request of the chat is sent once Telegram has responded
+ * to the previous one, so the messages are delivered in the order they were submitted. Requests to different chats are
+ * still sent concurrently.</p>
+ *
+ * <p>The count of the requests in flight per bot is limited by {@link GradientLimit}, which lowers the limit once the
+ * Telegram latency rises and raises it back once the latency recovers. Excess requests wait in their chat queues.</p>
+ *
+ * <p>Each bot has its own {@link CircuitBreaker}. While it is open, requests are kept in the queues instead of being sent,
+ * or rejected at once if the fail-fast mode is enabled, see {@link #getCircuitState(TelegramBot)}.</p>
+ *
+ * <p>The memory is bounded: once the chat queue or the whole bot queue is full, new requests are rejected with
+ * {@link OutboundRejectedException}. Only the requests that send, forward, copy or edit messages are charged to their
+ * chat. Other requests, e.g. callback answers, chat actions or {@link GetChat}, are limited only by the bot rate and
+ * are not serialized, even if they have {@code chat_id}.</p>
+ *
+ * <p>Requests failed with {@code 429 Too Many Requests} are queued again at the head of their chat queue, and the chat
+ * is paused for {@code retry_after} seconds. Server errors and network failures are retried after the capped
+ * exponential backoff with jitter. Retries of the requests that are not charged to any chat are delayed on their own,
+ * so they do not pause the other such requests. Pending retries do not hold any thread or timer, they are drained along
+ * with the other requests.</p>
+ *
+ * <p>Edits of the same message replace each other while they are queued, so only the latest content is sent. The
+ * callbacks of the replaced edits receive {@link RequestSupersededException}.</p>
+ *
+ * <p>If the {@link OutboundJournal} is specified, queued requests are journaled until Telegram accepts them, so they
+ * could be sent again by {@link #replay(Collection)} after the restart. Requests that have failed permanently are moved
+ * to the dead letters of the journal.</p>
+ *
+ * @since 0.29
+ */
+@Slf4j
+public class OutboundScheduler {
+    private static final long IDLE_CHATS_SWEEP_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final Object NO_CHAT = new Object();
+    private static final Callback<OutboundJournal.JournaledRequest, BaseResponse> REPLAY_CALLBACK = new Callback<>() {
+        @Override
+        public void onResponse(OutboundJournal.JournaledRequest request, BaseResponse response) {
+            if (!response.isOk()) {
+                log.warn("Journaled {} request has failed: {}", request.getMethod(), response.description());
+            }
+        }
+
+        @Override
+        public void onFailure(OutboundJournal.JournaledRequest request, IOException e) {
+            log.warn("Journaled {} request has failed", request.getMethod(), e);
+        }
+    };
+    private static final OutboundPriority[] LANES = OutboundPriority.values();
+    private static final Set<Class<?>> EDIT_REQUESTS = Set.of(
+            EditMessageText.class,
+            EditMessageCaption.class,
+            EditMessageMedia.class,
+            EditMessageReplyMarkup.class,
+            EditMessageLiveLocation.class);
+
+    private final TokenBucket botRate;
+    private final TokenBucket privateChatRate;
+    private final TokenBucket groupChatRate;
+    private final int maxChatQueueSize;
+    private final int maxQueueSize;
+    private final int maxRetries;
+    private final long minBackoffNanos;
+    private final long maxBackoffNanos;
+    private final int[] weights;
+    private final int initialConcurrencyLimit;
+    private final int maxConcurrencyLimit;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openCircuitNanos;
+    private final boolean failFastWhenOpen;
+    private final @Nullable OutboundJournal journal;
+    private final List<OutboundListener> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<TelegramBot, BotQueue> bots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Object idle = new Object();
+    private volatile boolean draining;
+    private volatile boolean shutdown;
+
+    private OutboundScheduler(Builder builder) {
+        this.botRate = builder.botRate;
+        this.privateChatRate = builder.privateChatRate;
+        this.groupChatRate = builder.groupChatRate;
+        this.maxChatQueueSize = builder.maxChatQueueSize;
+        this.maxQueueSize = builder.maxQueueSize;
+        this.maxRetries = builder.maxRetries;
+        this.minBackoffNanos = builder.minBackoff.toNanos();
+        this.maxBackoffNanos = builder.maxBackoff.toNanos();
+        this.weights = builder.weights.clone();
+        this.initialConcurrencyLimit = builder.initialConcurrencyLimit;
+        this.maxConcurrencyLimit = builder.maxConcurrencyLimit;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallNanos = builder.slowCallThreshold.toNanos();
+        this.openCircuitNanos = builder.openDuration.toNanos();
+        this.failFastWhenOpen = builder.failFastWhenOpen;
+        this.journal = builder.journal;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("telegram-outbound-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Adds listener that is notified about the events of this scheduler.
+     *
+     * @param listener listener
+     */
+    public void addListener(@NotNull OutboundListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Enqueues the request to the lane selected by {@link OutboundPriority#of(BaseRequest)}. The callback is invoked
+     * once Telegram responds or the request is rejected.
+     *
+     * @param bot      bot that should send the request
+     * @param request  request
+     * @param callback callback
+     */
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> void execute(
+            @NotNull TelegramBot bot, @NotNull T request, @NotNull Callback<T, R> callback) {
+        execute(bot, request, callback, OutboundPriority.of(request));
+    }
+
+    /**
+     * Enqueues the request to the given lane. The callback is invoked once Telegram responds or the request is
+     * rejected.
+     *
+     * @param bot      bot that should send the request
+     * @param request  request
+     * @param callback callback
+     * @param priority lane
+     */
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> void execute(
+            @NotNull TelegramBot bot, @NotNull T request, @NotNull Callback<T, R> callback, @NotNull OutboundPriority priority) {
+        enqueue(bot, new Pending<>(request, callback, priority));
+    }
+
+    private void enqueue(TelegramBot bot, Pending<?, ?> pending) {
+        if (shutdown) {
+            reject(pending, "Outbound scheduler has been shut down");
+            return;
+        }
+
+        byte[] record = ((journal != null) && (pending.journalPosition == OutboundJournal.NONE))
+                ? journal.encode(bot, pending.request, pending.priority)
+                : null;
+        BotQueue queue = bots.computeIfAbsent(bot, this::createBotQueue);
+        Object chatId = pending.chatId;
+        String rejection = null;
+        Pending<?, ?> superseded = null;
+        synchronized (queue) {
+            ChatQueue chat = queue.chats.computeIfAbsent(chatId, this::createChatQueue);
+            superseded = (pending.editKey == null) ? null : chat.replaceEdit(pending);
+            if (superseded != null) {
+                // The latest edit takes the place of the replaced one
+                log.debug("Request {} has been superseded by {}", superseded.request, pending.request);
+                settle(superseded, null);
+            } else if (failFastWhenOpen && (queue.breaker.getState() == CircuitBreaker.State.OPEN)) {
+                rejection = "Circuit breaker of the bot is open";
+            } else if (queue.size >= maxQueueSize) {
+                rejection = "Outbound queue of the bot is full";
+            } else if ((chatId != NO_CHAT) && (chat.size() >= maxChatQueueSize)) {
+                rejection = "Outbound queue of the chat " + chatId + " is full";
+            } else {
+                chat.lane(pending.priority).addLast(pending);
+                queue.size++;
+                markReady(queue, chat);
+                scheduleDrain(queue, 0);
+            }
+            if ((rejection == null) && (record != null)) {
+                pending.journalPosition = journal.append(record);
+            }
+        }
+
+        if (rejection != null) {
+            settle(pending, rejection);
+            reject(pending, rejection);
+        }
+        if (superseded != null) {
+            fail(superseded, new RequestSupersededException("Request has been superseded by the newer edit of the message"));
+        }
+    }
+
+    private BotQueue createBotQueue(TelegramBot bot) {
+        return new BotQueue(bot,
+                new GradientLimit(initialConcurrencyLimit, 1, maxConcurrencyLimit),
+                new CircuitBreaker(failureRateThreshold, slowCallNanos, openCircuitNanos));
+    }
+
+    private ChatQueue createChatQueue(Object chatId) {
+        if (chatId == NO_CHAT) {
+            return new ChatQueue(chatId, null);
+        }
+        // Private chats have positive ids, groups and channels have negative ids or usernames
+        boolean isPrivate = (chatId instanceof Long id) && (id > 0);
+        return new ChatQueue(chatId, isPrivate ? privateChatRate : groupChatRate);
+    }
+
+    /**
+     * Adds the chat to the round-robin of each lane where it has queued requests, unless the chat has the request in
+     * flight. Should be invoked under the queue lock.
+     */
+    private static void markReady(BotQueue queue, ChatQueue chat) {
+        if (chat.sending) {
+            return;
+        }
+        for (int lane = 0; lane < LANES.length; lane++) {
+            if (!chat.ready[lane] && !chat.requests.get(lane).isEmpty()) {
+                chat.ready[lane] = true;
+                queue.ready.get(lane).addLast(chat);
+            }
+        }
+    }
+
+    /**
+     * Should be invoked under the queue lock.
+     */
+    private void scheduleDrain(BotQueue queue, long delayNanos) {
+        long at = System.nanoTime() + delayNanos;
+        if ((queue.drainTask != null) && (queue.drainAt - at <= 0)) {
+            // The earlier drain is already scheduled
+            return;
+        }
+        if (queue.drainTask != null) {
+            queue.drainTask.cancel(false);
+        }
+        queue.drainAt = at;
+        try {
+            queue.drainTask = scheduler.schedule(() -> drain(queue), delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException ex) {
+            queue.drainTask = null;
+        }
+    }
+
+    /**
+     * Sends requests of the ready chats in round-robin order while the tokens are available.
+     */
+    private void drain(BotQueue queue) {
+        List<Pending<?, ?>> toSend = new ArrayList<>();
+        CircuitBreaker.State before;
+        CircuitBreaker.State after;
+        synchronized (queue) {
+            queue.drainTask = null;
+            long now = System.nanoTime();
+            long nextDrain = requeueRetries(queue, now);
+            boolean[] exhausted = new boolean[LANES.length];
+            before = queue.breaker.getState();
+            while (true) {
+                if (queue.inFlight >= queue.limit.getLimit()) {
+                    // The drain is resumed once any request is completed
+                    break;
+                }
+                long breakerWait = queue.breaker.waitNanos(now);
+                if (breakerWait > 0) {
+                    if (breakerWait != Long.MAX_VALUE) {
+                        nextDrain = Math.min(nextDrain, breakerWait);
+                    }
+                    // Requests are spooled in the queues while the breaker is open
+                    break;
+                }
+                long botWait = botRate.waitNanos(queue.bucket, now);
+                if (botWait > 0) {
+                    nextDrain = Math.min(nextDrain, botWait);
+                    break;
+                }
+                int lane = selectLane(queue, exhausted);
+                if (lane < 0) {
+                    break;
+                }
+
+                // Find the first chat of the lane that is allowed to send now
+                ArrayDeque<ChatQueue> ring = queue.ready.get(lane);
+                ChatQueue chat = null;
+                for (int i = ring.size(); i > 0; i--) {
+                    ChatQueue candidate = ring.pollFirst();
+                    if (candidate.sending) {
+                        // The request of another lane is in flight, the chat is returned once it is completed
+                        candidate.ready[lane] = false;
+                        continue;
+                    }
+                    long chatWait = candidate.waitNanos(now);
+                    if (chatWait > 0) {
+                        nextDrain = Math.min(nextDrain, chatWait);
+                        ring.addLast(candidate);
+                        continue;
+                    }
+                    chat = candidate;
+                    break;
+                }
+                if (chat == null) {
+                    exhausted[lane] = true;
+                    continue;
+                }
+
+                queue.bucket = botRate.consume(queue.bucket, now);
+                if (chat.rate != null) {
+                    chat.bucket = chat.rate.consume(chat.bucket, now);
+                }
+                Pending<?, ?> pending = chat.requests.get(lane).pollFirst();
+                pending.sentAt = now;
+                pending.inFlight = ++queue.inFlight;
+                pending.probe = queue.breaker.onSend();
+                toSend.add(pending);
+                queue.size--;
+                chat.ready[lane] = false;
+                if (chat.chatId != NO_CHAT) {
+                    // The chat is returned to the round-robin once the response is received
+                    chat.sending = true;
+                } else {
+                    markReady(queue, chat);
+                }
+            }
+
+            if (nextDrain != Long.MAX_VALUE) {
+                scheduleDrain(queue, nextDrain);
+            }
+            removeIdleChats(queue, now);
+            after = queue.breaker.getState();
+        }
+        onCircuitStateChanged(queue, before, after);
+
+        // Requests are sent asynchronously, so the drain thread is not blocked
+        toSend.forEach(pending -> send(queue, pending));
+    }
+
+    /**
+     * Queues the chatless requests which retry delays have elapsed. Should be invoked under the queue lock.
+     *
+     * @return time until the next retry or {@link Long#MAX_VALUE} if there are no more retries
+     */
+    private long requeueRetries(BotQueue queue, long now) {
+        Pending<?, ?> pending;
+        while (((pending = queue.retries.peek()) != null) && (pending.retryAt - now <= 0)) {
+            queue.retries.poll();
+            ChatQueue chat = queue.chats.computeIfAbsent(NO_CHAT, this::createChatQueue);
+            chat.lane(pending.priority).addFirst(pending);
+            markReady(queue, chat);
+        }
+        return (pending == null) ? Long.MAX_VALUE : pending.retryAt - now;
+    }
+
+    /**
+     * Selects the lane of the next request by the smooth weighted round-robin among the lanes with ready chats.
+     *
+     * @return lane index or -1 if there are no ready chats
+     */
+    private int selectLane(BotQueue queue, boolean[] exhausted) {
+        int selected = -1;
+        int total = 0;
+        for (int lane = 0; lane < LANES.length; lane++) {
+            if (!exhausted[lane] && !queue.ready.get(lane).isEmpty()) {
+                queue.credits[lane] += weights[lane];
+                total += weights[lane];
+                if ((selected < 0) || (queue.credits[lane] > queue.credits[selected])) {
+                    selected = lane;
+                }
+            }
+        }
+        if (selected >= 0) {
+            queue.credits[selected] -= total;
+        }
+        return selected;
+    }
+
+    private <T extends BaseRequest<T, R>, R extends BaseResponse> void send(BotQueue queue, Pending<T, R> pending) {
+        if (!listeners.isEmpty()) {
+            Duration latency = Duration.ofNanos(System.nanoTime() - pending.enqueuedAt);
+            for (OutboundListener listener : listeners) {
+                try {
+                    listener.onSent(pending.request, pending.priority, latency);
+                } catch (RuntimeException ex) {
+                    log.error("Outbound listener has failed", ex);
+                }
+            }
+        }
+
+        try {
+            queue.bot.execute(pending.request, new Callback<T, R>() {
+                @Override
+                public void onResponse(T request, R response) {
+                    complete(queue, pending, false, response.errorCode() >= 500);
+                    long delay = response.isOk() ? -1 : getRetryDelay(pending, response);
+                    if ((delay < 0) || !retry(queue, pending, delay)) {
+                        if (delay < 0) {
+                            // Retryable requests are kept in the journal if the scheduler has been shut down
+                            settle(pending, response.isOk() ? null : response.errorCode() + " " + response.description());
+                        }
+                        release(queue, pending);
+                        pending.callback.onResponse(request, response);
+                    }
+                }
+
+                @Override
+                public void onFailure(T request, IOException e) {
+                    complete(queue, pending, true, true);
+                    long delay = getRetryDelay(pending, e);
+                    if ((delay < 0) || !retry(queue, pending, delay)) {
+                        if (delay < 0) {
+                            settle(pending, e.toString());
+                        }
+                        release(queue, pending);
+                        pending.callback.onFailure(request, e);
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            log.error("Request {} could not be sent", pending.request, ex);
+            complete(queue, pending, true, true);
+            settle(pending, ex.toString());
+            release(queue, pending);
+            fail(pending, new IOException(ex));
+        }
+    }
+
+    /**
+     * Updates the concurrency limit and the circuit breaker with the result of the completed request and resumes the
+     * drain if it has been stopped by them.
+     *
+     * @param dropped {@code true} if the request has failed without the response
+     * @param failed  {@code true} if the request has failed due to the network or server error
+     */
+    private void complete(BotQueue queue, Pending<?, ?> pending, boolean dropped, boolean failed) {
+        long now = System.nanoTime();
+        long latency = now - pending.sentAt;
+        CircuitBreaker.State before;
+        CircuitBreaker.State after;
+        synchronized (queue) {
+            boolean limited = (queue.inFlight >= queue.limit.getLimit()) || pending.probe;
+            queue.inFlight--;
+            queue.limit.onSample(latency, pending.inFlight, dropped);
+            before = queue.breaker.getState();
+            queue.breaker.onResult(latency, failed, pending.upload, pending.probe, now);
+            after = queue.breaker.getState();
+            if (after == CircuitBreaker.State.OPEN) {
+                scheduleDrain(queue, queue.breaker.waitNanos(now));
+            } else if (limited && (queue.size > 0)) {
+                scheduleDrain(queue, 0);
+            }
+        }
+        onCircuitStateChanged(queue, before, after);
+    }
+
+    private void onCircuitStateChanged(BotQueue queue, CircuitBreaker.State before, CircuitBreaker.State after) {
+        if (before == after) {
+            return;
+        }
+        if (after == CircuitBreaker.State.OPEN) {
+            log.warn("Circuit breaker of the bot is open for {} ms", TimeUnit.NANOSECONDS.toMillis(openCircuitNanos));
+        } else {
+            log.info("Circuit breaker of the bot is {}", after.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+        }
+        for (OutboundListener listener : listeners) {
+            try {
+                listener.onCircuitStateChanged(queue.bot, after);
+            } catch (RuntimeException ex) {
+                log.error("Outbound listener has failed", ex);
+            }
+        }
+    }
+
+    /**
+     * Allows the next request of the chat to be sent.
+     */
+    private void release(BotQueue queue, Pending<?, ?> pending) {
+        synchronized (queue) {
+            ChatQueue chat = queue.chats.get(pending.chatId);
+            if ((chat != null) && chat.sending) {
+                chat.sending = false;
+                markReady(queue, chat);
+                if (!chat.isEmpty()) {
+                    scheduleDrain(queue, 0);
+                }
+            }
+        }
+        if (draining) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the delay before the next attempt of the request failed with the error response.
+     *
+     * @return delay in nanoseconds or -1 if the request should not be retried
+     */
+    private long getRetryDelay(Pending<?, ?> pending, BaseResponse response) {
+        if (pending.attempts >= maxRetries) {
+            return -1;
+        }
+        if (response.errorCode() == 429) {
+            ResponseParameters parameters = response.parameters();
+            if ((parameters != null) && (parameters.retryAfter() != null)) {
+                return TimeUnit.SECONDS.toNanos(parameters.retryAfter());
+            }
+            return getBackoff(pending.attempts);
+        }
+        return (response.errorCode() >= 500) ? getBackoff(pending.attempts) : -1;
+    }
+
+    /**
+     * Returns the delay before the next attempt of the request failed with the network error.
+     *
+     * @return delay in nanoseconds or -1 if the request should not be retried
+     */
+    private long getRetryDelay(Pending<?, ?> pending, IOException ex) {
+        if ((pending.attempts >= maxRetries) || (ex instanceof OutboundRejectedException)) {
+            return -1;
+        }
+        return getBackoff(pending.attempts);
+    }
+
+    /**
+     * Returns the exponential backoff capped by the max value, the second half of which is randomized, so the
+     * requests failed together are not retried together.
+     */
+    private long getBackoff(int attempts) {
+        long backoff = Math.min(maxBackoffNanos, minBackoffNanos << Math.min(attempts, 30));
+        if (backoff <= 0) {
+            backoff = maxBackoffNanos;
+        }
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    /**
+     * Queues the request again at the head of its chat queue and pauses the chat until the delay has elapsed. Chatless
+     * requests are kept aside until the delay has elapsed instead, since their queue is shared.
+     *
+     * @return {@code false} if the scheduler has been shut down
+     */
+    private boolean retry(BotQueue queue, Pending<?, ?> pending, long delayNanos) {
+        if (shutdown) {
+            return false;
+        }
+
+        boolean superseded;
+        synchronized (queue) {
+            ChatQueue chat = queue.chats.computeIfAbsent(pending.chatId, this::createChatQueue);
+            superseded = chat.hasEdit(pending.editKey);
+            if (!superseded) {
+                pending.attempts++;
+                if (chat.chatId == NO_CHAT) {
+                    pending.retryAt = System.nanoTime() + delayNanos;
+                    queue.retries.add(pending);
+                } else {
+                    chat.lane(pending.priority).addFirst(pending);
+                    chat.pausedUntil = Math.max(chat.pausedUntil, System.nanoTime() + delayNanos);
+                }
+                queue.size++;
+            }
+            chat.sending = false;
+            markReady(queue, chat);
+            scheduleDrain(queue, superseded ? 0 : delayNanos);
+        }
+        if (superseded) {
+            // The newer edit of the same message is queued already, so there is no reason to retry the old one
+            settle(pending, null);
+            fail(pending, new RequestSupersededException("Request has been superseded by the newer edit of the message"));
+            return true;
+        }
+
+        log.debug("Request {} will be retried in {} ms", pending.request, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+        Duration delay = Duration.ofNanos(delayNanos);
+        for (OutboundListener listener : listeners) {
+            try {
+                listener.onRetry(pending.request, pending.attempts, delay);
+            } catch (RuntimeException ex) {
+                log.error("Outbound listener has failed", ex);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forgets the chats without queued requests once their rate limits have been restored.
+     */
+    private void removeIdleChats(BotQueue queue, long now) {
+        if (now - queue.lastSweep < IDLE_CHATS_SWEEP_NANOS) {
+            return;
+        }
+        queue.lastSweep = now;
+        queue.chats.values().removeIf(chat -> chat.isEmpty()
+                && !chat.sending
+                && (chat.pausedUntil - now <= 0)
+                && ((chat.rate == null) || chat.rate.isFull(chat.bucket, now)));
+    }
+
+    /**
+     * Removes the request from the journal once its result is final.
+     *
+     * @param error description of the failure or {@code null} if the request has been delivered or superseded
+     */
+    private void settle(Pending<?, ?> pending, @Nullable String error) {
+        if ((journal == null) || (pending.journalPosition == OutboundJournal.NONE)) {
+            return;
+        }
+        if (error == null) {
+            journal.complete(pending.journalPosition);
+        } else {
+            journal.deadLetter(pending.journalPosition, error);
+        }
+    }
+
+    private void reject(Pending<?, ?> pending, String reason) {
+        log.warn("Request {} has been rejected: {}", pending.request, reason);
+        fail(pending, new OutboundRejectedException(reason));
+    }
+
+    private static <T extends BaseRequest<T, R>, R extends BaseResponse> void fail(Pending<T, R> pending, IOException ex) {
+        try {
+            pending.callback.onFailure(pending.request, ex);
+        } catch (RuntimeException e) {
+            log.error("Request callback has failed", e);
+        }
+    }
+
+    /**
+     * Returns the identity of the edited message if the request is the message edit.
+     */
+    @Nullable
+    private static EditKey getEditKey(BaseRequest<?, ?> request) {
+        if (!EDIT_REQUESTS.contains(request.getClass())) {
+            return null;
+        }
+        Map<String, Object> parameters = request.getParameters();
+        return new EditKey(request.getClass(), parameters.get("chat_id"), parameters.get("message_id"), parameters.get("inline_message_id"));
+    }
+
+    /**
+     * Returns the key of the request chat: {@code Long} for numeric ids, {@code String} for channel usernames.
+     * Requests that do not post or edit messages are not charged to their chat.
+     */
+    private static Object getChatId(BaseRequest<?, ?> request) {
+        if (!isChatMessage(request)) {
+            return NO_CHAT;
+        }
+        Object chatId = request.getParameters().get("chat_id");
+        if (chatId instanceof Number number) {
+            return number.longValue();
+        } else if (chatId instanceof String name) {
+            try {
+                return Long.parseLong(name);
+            } catch (NumberFormatException ex) {
+                return name;
+            }
+        }
+        return NO_CHAT;
+    }
+
+    /**
+     * Returns {@code true} if the request sends, forwards, copies or edits the message, so it is subject to the chat
+     * flood limits. The method name is checked, so the replayed requests are classified the same way.
+     */
+    private static boolean isChatMessage(BaseRequest<?, ?> request) {
+        String method = request.getMethod();
+        return (method.startsWith("send") && !method.equals("sendChatAction"))
+                || method.startsWith("forward")
+                || method.startsWith("copy")
+                || method.startsWith("editMessage");
+    }
+
+    /**
+     * Queues the requests that have been left in the journal by the previous run. Their results are only logged, since
+     * the original callbacks are lost.
+     *
+     * @param bots bots that should send the requests. Requests of other bots are left in the journal
+     * @return count of the queued requests
+     */
+    public int replay(@NotNull Collection<TelegramBot> bots) {
+        if (journal == null) {
+            return 0;
+        }
+
+        Map<Long, TelegramBot> botsById = new HashMap<>();
+        bots.forEach(bot -> botsById.put(OutboundJournal.getBotId(bot), bot));
+        int count = 0;
+        for (OutboundJournal.Entry entry : journal.takeRecovered()) {
+            TelegramBot bot = botsById.get(entry.botId());
+            if (bot == null) {
+                log.warn("Journaled {} request of the unknown bot {} is skipped", entry.method(), entry.botId());
+                continue;
+            }
+            Pending<?, ?> pending = new Pending<>(entry.toRequest(), REPLAY_CALLBACK, entry.priority());
+            pending.journalPosition = entry.position();
+            enqueue(bot, pending);
+            count++;
+        }
+        if (count > 0) {
+            log.info("{} journaled outbound requests have been queued again", count);
+        }
+        return count;
+    }
+
+    /**
+     * @return count of the queued requests of all bots
+     */
+    public int size() {
+        int size = 0;
+        for (BotQueue queue : bots.values()) {
+            synchronized (queue) {
+                size += queue.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the state of the bot circuit breaker, so the handlers could skip non-essential requests while Telegram is
+     * unavailable.
+     *
+     * @param bot bot
+     * @return state of the breaker, {@link CircuitBreaker.State#CLOSED} if the bot has not sent any requests yet
+     */
+    @NotNull
+    public CircuitBreaker.State getCircuitState(@NotNull TelegramBot bot) {
+        BotQueue queue = bots.get(bot);
+        if (queue == null) {
+            return CircuitBreaker.State.CLOSED;
+        }
+        synchronized (queue) {
+            return queue.breaker.getState();
+        }
+    }
+
+    /**
+     * @return count of the bots which circuit breakers are not closed
+     */
+    public int getOpenCircuits() {
+        int count = 0;
+        for (BotQueue queue : bots.values()) {
+            synchronized (queue) {
+                count += (queue.breaker.getState() != CircuitBreaker.State.CLOSED) ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return sum of the current concurrency limits of all bots
+     */
+    public int getConcurrencyLimit() {
+        int limit = 0;
+        for (BotQueue queue : bots.values()) {
+            synchronized (queue) {
+                limit += queue.limit.getLimit();
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * @return count of the requests of all bots that have been sent, but not completed yet
+     */
+    public int getInFlight() {
+        int inFlight = 0;
+        for (BotQueue queue : bots.values()) {
+            synchronized (queue) {
+                inFlight += queue.inFlight;
+            }
+        }
+        return inFlight;
+    }
+
+    /**
+     * @return {@code true} if the scheduler has been shut down and rejects all requests
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Waits until all queued requests are sent and completed, then stops the scheduler. New requests are still accepted
+     * while waiting, so the replies to the updates that are being processed are sent as well. Requests that are still
+     * queued once the timeout has elapsed are rejected.
+     *
+     * @param timeout max time to wait
+     * @return {@code true} if all requests have been completed before the shutdown
+     * @since 0.29
+     */
+    public boolean shutdown(@NotNull Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        boolean completed;
+        draining = true;
+        synchronized (idle) {
+            while (!(completed = isIdle())) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        shutdown();
+        return completed;
+    }
+
+    private boolean isIdle() {
+        for (BotQueue queue : bots.values()) {
+            synchronized (queue) {
+                if ((queue.size > 0) || (queue.inFlight > 0)) {
+                    return false;
+                }
+                for (ChatQueue chat : queue.chats.values()) {
+                    if (chat.sending) {
+                        // The request is about to be retried
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the scheduler. Queued requests are rejected.
+     */
+    public void shutdown() {
+        shutdown = true;
+        scheduler.shutdownNow();
+        for (BotQueue queue : bots.values()) {
+            List<Pending<?, ?>> rejected = new ArrayList<>();
+            synchronized (queue) {
+                for (ChatQueue chat : queue.chats.values()) {
+                    for (ArrayDeque<Pending<?, ?>> requests : chat.requests) {
+                        rejected.addAll(requests);
+                    }
+                }
+                rejected.addAll(queue.retries);
+                queue.retries.clear();
+                queue.chats.clear();
+                for (ArrayDeque<ChatQueue> ring : queue.ready) {
+                    ring.clear();
+                }
+                queue.size = 0;
+            }
+            rejected.forEach(pending -> reject(pending, "Outbound scheduler has been shut down"));
+        }
+    }
+
+    private static class Pending<T extends BaseRequest<T, R>, R extends BaseResponse> {
+        private final T request;
+        private final Callback<T, R> callback;
+        private final OutboundPriority priority;
+        private final Object chatId;
+        private final @Nullable EditKey editKey;
+        private final boolean upload;
+        private final long enqueuedAt = System.nanoTime();
+        private int attempts;
+        private long journalPosition = OutboundJournal.NONE;
+        private long sentAt;
+        private long retryAt;
+        private int inFlight;
+        private boolean probe;
+
+        Pending(T request, Callback<T, R> callback, OutboundPriority priority) {
+            this.request = request;
+            this.callback = callback;
+            this.priority = priority;
+            this.chatId = getChatId(request);
+            this.editKey = getEditKey(request);
+            this.upload = request.isMultipart();
+        }
+    }
+
+    private record EditKey(Class<?> type, Object chatId, Object messageId, Object inlineMessageId) {
+    }
+
+    private static class BotQueue {
+        private final TelegramBot bot;
+        private final GradientLimit limit;
+        private final CircuitBreaker breaker;
+        private final Map<Object, ChatQueue> chats = new HashMap<>();
+        private final List<ArrayDeque<ChatQueue>> ready = new ArrayList<>(LANES.length);
+        private final Queue<Pending<?, ?>> retries = new PriorityQueue<>((a, b) -> Long.signum(a.retryAt - b.retryAt));
+        private final int[] credits = new int[LANES.length];
+        private long bucket = TokenBucket.FULL;
+        private int size;
+        private int inFlight;
+        private ScheduledFuture<?> drainTask;
+        private long drainAt;
+        private long lastSweep = System.nanoTime();
+
+        BotQueue(TelegramBot bot, GradientLimit limit, CircuitBreaker breaker) {
+            this.bot = bot;
+            this.limit = limit;
+            this.breaker = breaker;
+            for (int lane = 0; lane < LANES.length; lane++) {
+                ready.add(new ArrayDeque<>());
+            }
+        }
+    }
+
+    private static class ChatQueue {
+        private final Object chatId;
+        private final @Nullable TokenBucket rate;
+        private final List<ArrayDeque<Pending<?, ?>>> requests = new ArrayList<>(LANES.length);
+        private final boolean[] ready = new boolean[LANES.length];
+        private long bucket = TokenBucket.FULL;
+        private long pausedUntil = System.nanoTime();
+        private boolean sending;
+
+        ChatQueue(Object chatId, @Nullable TokenBucket rate) {
+            this.chatId = chatId;
+            this.rate = rate;
+            for (int lane = 0; lane < LANES.length; lane++) {
+                requests.add(new ArrayDeque<>(2));
+            }
+        }
+
+        ArrayDeque<Pending<?, ?>> lane(OutboundPriority priority) {
+            return requests.get(priority.ordinal());
+        }
+
+        int size() {
+            int size = 0;
+            for (ArrayDeque<Pending<?, ?>> lane : requests) {
+                size += lane.size();
+            }
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size() == 0;
+        }
+
+        /**
+         * Returns the time until the chat is allowed to send the next request.
+         */
+        long waitNanos(long now) {
+            return Math.max(pausedUntil - now, (rate == null) ? 0 : rate.waitNanos(bucket, now));
+        }
+
+        boolean hasEdit(@Nullable EditKey editKey) {
+            if (editKey != null) {
+                for (ArrayDeque<Pending<?, ?>> lane : requests) {
+                    for (Pending<?, ?> pending : lane) {
+                        if (editKey.equals(pending.editKey)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Replaces the queued edit of the same message with the given one.
+         *
+         * @return replaced edit or {@code null} if there is no queued edit of the message
+         */
+        @Nullable
+        Pending<?, ?> replaceEdit(Pending<?, ?> edit) {
+            ArrayDeque<Pending<?, ?>> requests = lane(edit.priority);
+            for (Iterator<Pending<?, ?>> it = requests.iterator(); it.hasNext(); ) {
+                Pending<?, ?> pending = it.next();
+                if (edit.editKey.equals(pending.editKey)) {
+                    // ArrayDeque could not replace the element in place, so the tail is moved after the new edit
+                    List<Pending<?, ?>> tail = new ArrayList<>();
+                    it.remove();
+                    while (it.hasNext()) {
+                        tail.add(it.next());
+                        it.remove();
+                    }
+                    requests.addLast(edit);
+                    requests.addAll(tail);
+                    return pending;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class Builder {
+        private TokenBucket botRate = new TokenBucket(30, Duration.ofSeconds(1));
+        private TokenBucket privateChatRate = new TokenBucket(1, Duration.ofSeconds(1));
+        private TokenBucket groupChatRate = new TokenBucket(20, Duration.ofMinutes(1));
+        private int maxChatQueueSize = 100;
+        private int maxQueueSize = 10_000;
+        private int maxRetries = 5;
+        private Duration minBackoff = Duration.ofMillis(500);
+        private Duration maxBackoff = Duration.ofSeconds(30);
+        private final int[] weights = {10, 3, 1};
+        private OutboundJournal journal;
+        private int initialConcurrencyLimit = 20;
+        private int maxConcurrencyLimit = 64;
+        private double failureRateThreshold = 0.5;
+        private Duration slowCallThreshold = Duration.ofSeconds(10);
+        private Duration openDuration = Duration.ofSeconds(30);
+        private boolean failFastWhenOpen = false;
+
+        /**
+         * @param permits requests count. 30 by default
+         * @param period  period. 1 second by default
+         * @return current instance
+         */
+        public Builder botRate(int permits, @NotNull Duration period) {
+            this.botRate = new TokenBucket(permits, period);
+            return this;
+        }
+
+        /**
+         * @param permits requests count. 1 by default
+         * @param period  period. 1 second by default
+         * @return current instance
+         */
+        public Builder privateChatRate(int permits, @NotNull Duration period) {
+            this.privateChatRate = new TokenBucket(permits, period);
+            return this;
+        }
+
+        /**
+         * @param permits requests count. 20 by default
+         * @param period  period. 1 minute by default
+         * @return current instance
+         */
+        public Builder groupChatRate(int permits, @NotNull Duration period) {
+            this.groupChatRate = new TokenBucket(permits, period);
+            return this;
+        }
+
+        /**
+         * @param maxChatQueueSize max count of the queued requests per chat. 100 by default
+         * @return current instance
+         */
+        public Builder maxChatQueueSize(int maxChatQueueSize) {
+            this.maxChatQueueSize = maxChatQueueSize;
+            return this;
+        }
+
+        /**
+         * @param maxQueueSize max count of the queued requests per bot. 10000 by default
+         * @return current instance
+         */
+        public Builder maxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * @param maxRetries max count of the retries of the failed request. 5 by default
+         * @return current instance
+         */
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Specify the backoff of the retries after server and network errors. The delay is doubled after each attempt.
+         * Retries after {@code 429 Too Many Requests} use {@code retry_after} of the response instead.
+         *
+         * @param minBackoff delay before the first retry. 500 milliseconds by default
+         * @param maxBackoff max delay between the retries. 30 seconds by default
+         * @return current instance
+         */
+        public Builder retryBackoff(@NotNull Duration minBackoff, @NotNull Duration maxBackoff) {
+            this.minBackoff = minBackoff;
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * Specify the share of the bot rate limit that the lane receives when all lanes have queued requests.
+         *
+         * @param priority lane
+         * @param weight   positive weight. 10 for {@link OutboundPriority#INTERACTIVE}, 3 for {@link
+         *                 OutboundPriority#DEFAULT} and 1 for {@link OutboundPriority#BULK} by default
+         * @return current instance
+         */
+        public Builder weight(@NotNull OutboundPriority priority, int weight) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weight should be positive");
+            }
+            this.weights[priority.ordinal()] = weight;
+            return this;
+        }
+
+        /**
+         * Specify the bounds of the adaptive limit of the requests in flight per bot.
+         *
+         * @param initialLimit initial limit. 20 by default
+         * @param maxLimit     max limit. 64 by default
+         * @return current instance
+         */
+        public Builder concurrencyLimit(int initialLimit, int maxLimit) {
+            if ((initialLimit <= 0) || (maxLimit < initialLimit)) {
+                throw new IllegalArgumentException("Concurrency limit should be positive and not exceed the max limit");
+            }
+            this.initialConcurrencyLimit = initialLimit;
+            this.maxConcurrencyLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Specify when the circuit breaker of the bot opens. The breaker opens once the share of the failed or slow
+         * requests among the last 20 ones reaches the threshold.
+         *
+         * @param failureRateThreshold share of the failed requests from 0 to 1. 0.5 by default
+         * @param slowCallThreshold    requests that take longer are counted as failed, except file uploads. 10 seconds
+         *                             by default
+         * @param openDuration         time before the probe request is sent. 30 seconds by default
+         * @return current instance
+         */
+        public Builder circuitBreaker(double failureRateThreshold, @NotNull Duration slowCallThreshold, @NotNull Duration openDuration) {
+            if ((failureRateThreshold <= 0) || (failureRateThreshold > 1)) {
+                throw new IllegalArgumentException("Failure rate threshold should be between 0 and 1");
+            }
+            this.failureRateThreshold = failureRateThreshold;
+            this.slowCallThreshold = slowCallThreshold;
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * Specify whether the new requests are rejected while the circuit breaker is open.
+         *
+         * @param failFastWhenOpen {@code true} to reject the requests with {@link OutboundRejectedException}, {@code
+         *                         false} to keep them in the queues. {@code false} by default
+         * @return current instance
+         */
+        public Builder failFastWhenOpen(boolean failFastWhenOpen) {
+            this.failFastWhenOpen = failFastWhenOpen;
+            return this;
+        }
+
+        /**
+         * Specify the journal that keeps the queued requests until they are delivered.
+         *
+         * @param journal journal or {@code null} to keep the requests only in memory. {@code null} by default
+         * @return current instance
+         */
+        public Builder journal(@Nullable OutboundJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        public OutboundScheduler build() {
+            return new OutboundScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.kshashov.telegram.outbound;
+
+import java.io.IOException;
+
+/**
+ * Is passed to {@link com.pengrad.telegrambot.Callback#onFailure} if the queued edit of the message has not been sent
+ * because a newer edit of the same message has been submitted to {@link OutboundScheduler}.
+ *
+ * @since 0.29
+ */
+public class RequestSupersededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public RequestSupersededException(String message) {
+        super(message);
+    }
+}
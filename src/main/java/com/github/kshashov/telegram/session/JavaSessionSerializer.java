@@ -0,0 +1,52 @@
+package com.github.kshashov.telegram.session;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link SessionSerializer} that uses the Java serialization. Items that are not {@link Serializable} are skipped.
+ *
+ * @since 0.29
+ */
+@Slf4j
+public class JavaSessionSerializer implements SessionSerializer {
+    private static final byte VERSION = 1;
+
+    @Override
+    @NotNull
+    public byte[] serialize(@NotNull Map<String, Object> items) throws IOException {
+        HashMap<String, Object> serializable = new HashMap<>(items.size() * 2);
+        items.forEach((key, value) -> {
+            if (value instanceof Serializable) {
+                serializable.put(key, value);
+            } else {
+                log.warn("Session item '{}' of type {} is not serializable and will be lost", key, value.getClass().getName());
+            }
+        });
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        bytes.write(VERSION);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(serializable);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> deserialize(@NotNull byte[] data) throws IOException {
+        if ((data.length == 0) || (data[0] != VERSION)) {
+            throw new IOException("Unsupported session format");
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data, 1, data.length - 1))) {
+            return (Map<String, Object>) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException("Session could not be deserialized", ex);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.github.kshashov.telegram.session;
+
+import com.github.kshashov.telegram.util.LongLongHashMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link SessionStore} that appends sessions to memory-mapped segment files on the local disk. Only a primitive index
+ * from the session id to the record position is kept on the heap, so the heap usage does not depend on the sessions
+ * size.
+ *
+ * <p>Each record consists of the session id, the last access time, the data length and the data. Replaced and removed
+ * records become garbage: a segment without live records is deleted, a mostly empty segment is compacted by copying
+ * its live records to the active segment. Expired records are discarded by the periodic sweep, so sessions that are
+ * never promoted back do not pin their segments.</p>
+ *
+ * <p>{@link #snapshot()} writes the live records to a single snapshot file in the same format. On start, the snapshot
+ * is adopted as a regular segment: only the record headers are read to rebuild the index, expired records are skipped,
+ * and the session data is paged in lazily once the session is promoted.</p>
+ *
+ * @since 0.29
+ */
+@Slf4j
+public class MappedSessionStore implements SessionStore, Closeable {
+    static final String SEGMENT_PREFIX = "sessions-";
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String SNAPSHOT_FILE = "sessions.snapshot";
+    static final int HEADER_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final long MISSING = -1L;
+    private static final double COMPACTION_THRESHOLD = 0.25;
+    private static final long SWEEP_PERIOD_SECONDS = 60;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long expireAfterMillis;
+    private final LongLongHashMap index = new LongLongHashMap(MISSING);
+    private final List<Segment> segments = new ArrayList<>();
+    private final ScheduledExecutorService sweeper;
+    private Segment active;
+
+    /**
+     * @param directory   directory for the segment files. Existing segments are deleted, the snapshot is restored if
+     *                    any
+     * @param segmentSize size of the segment file in bytes
+     * @param expireAfter time after the last access when the stored session is discarded
+     * @throws IOException if the directory could not be prepared
+     */
+    public MappedSessionStore(@NotNull Path directory, int segmentSize, @NotNull Duration expireAfter) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.expireAfterMillis = expireAfter.toMillis();
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (isSegment(file)) {
+                    // Segments are not consistent without the index, only the snapshot could be restored
+                    Files.delete(file);
+                }
+            }
+        }
+
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            restore(snapshot);
+        }
+        this.active = createSegment(segmentSize);
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("telegram-session-store-sweeper-%d")
+                .setDaemon(true)
+                .build());
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                expire(System.currentTimeMillis());
+            } catch (RuntimeException ex) {
+                log.error("Session store sweep has failed", ex);
+            }
+        }, SWEEP_PERIOD_SECONDS, SWEEP_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void save(long sessionId, @NotNull byte[] data, long lastAccess) {
+        long position = write(sessionId, data, lastAccess);
+        long previous = index.put(sessionId, position);
+        if (previous != MISSING) {
+            release(previous);
+        }
+    }
+
+    @Override
+    @Nullable
+    public synchronized byte[] take(long sessionId) {
+        long position = index.remove(sessionId);
+        if (position == MISSING) {
+            return null;
+        }
+
+        Segment segment = segments.get(segmentId(position));
+        int offset = offset(position);
+        long lastAccess = segment.buffer.getLong(offset + Long.BYTES);
+        byte[] data = null;
+        if (!isExpired(lastAccess, System.currentTimeMillis())) {
+            data = new byte[segment.buffer.getInt(offset + 2 * Long.BYTES)];
+            segment.buffer.get(offset + HEADER_SIZE, data);
+        }
+        release(position);
+        return data;
+    }
+
+    @Override
+    public synchronized void remove(long sessionId) {
+        long position = index.remove(sessionId);
+        if (position != MISSING) {
+            release(position);
+        }
+    }
+
+    @Override
+    public synchronized long size() {
+        return index.size();
+    }
+
+    /**
+     * Discards the expired records, so their segments could be deleted or compacted.
+     *
+     * @param now current time
+     * @return count of the discarded records
+     */
+    synchronized int expire(long now) {
+        // The index could not be modified while it is iterated
+        long[][] expired = {new long[16]};
+        int[] count = new int[1];
+        index.forEach((sessionId, position) -> {
+            if (isExpired(segments.get(segmentId(position)).buffer.getLong(offset(position) + Long.BYTES), now)) {
+                if (count[0] == expired[0].length) {
+                    expired[0] = Arrays.copyOf(expired[0], count[0] * 2);
+                }
+                expired[0][count[0]++] = sessionId;
+            }
+        });
+
+        for (int i = 0; i < count[0]; i++) {
+            remove(expired[0][i]);
+        }
+        if (count[0] > 0) {
+            log.debug("{} expired sessions have been discarded", count[0]);
+        }
+        return count[0];
+    }
+
+    /**
+     * @return count of the segment files
+     */
+    synchronized int segmentsCount() {
+        return (int) segments.stream().filter(Objects::nonNull).count();
+    }
+
+    /**
+     * Writes all live sessions to the snapshot file, so they are restored by the next store instance in the same
+     * directory. The file is replaced atomically.
+     */
+    @Override
+    public synchronized void snapshot() {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        long now = System.currentTimeMillis();
+        int[] count = new int[1];
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            index.forEach((sessionId, position) -> {
+                Segment segment = segments.get(segmentId(position));
+                int offset = offset(position);
+                if (isExpired(segment.buffer.getLong(offset + Long.BYTES), now)) {
+                    return;
+                }
+
+                int recordSize = HEADER_SIZE + segment.buffer.getInt(offset + 2 * Long.BYTES);
+                ByteBuffer record = segment.buffer.slice(offset, recordSize);
+                try {
+                    if (buffer.remaining() < recordSize) {
+                        flush(channel, buffer);
+                    }
+                    if (buffer.remaining() < recordSize) {
+                        // The record is larger than the buffer
+                        while (record.hasRemaining()) {
+                            channel.write(record);
+                        }
+                    } else {
+                        buffer.put(record);
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                count[0]++;
+            });
+            flush(channel, buffer);
+            channel.force(true);
+        } catch (IOException | UncheckedIOException ex) {
+            log.error("Sessions snapshot could not be written", ex);
+            return;
+        }
+
+        try {
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Sessions snapshot with {} sessions has been written to {}", count[0], snapshot);
+        } catch (IOException ex) {
+            log.error("Sessions snapshot could not be written", ex);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        sweeper.shutdownNow();
+        for (Segment segment : segments) {
+            if (segment != null) {
+                segment.buffer.force();
+            }
+        }
+    }
+
+    private long write(long sessionId, byte[] data, long lastAccess) {
+        int recordSize = HEADER_SIZE + data.length;
+        if (active.position + recordSize > active.buffer.capacity()) {
+            Segment full = active;
+            active = createSegment(Math.max(segmentSize, recordSize));
+            // The active segment is never deleted on release, so it could already be empty
+            if (full.liveBytes == 0) {
+                delete(full);
+            }
+        }
+
+        int offset = active.position;
+        active.buffer.putLong(offset, sessionId);
+        active.buffer.putLong(offset + Long.BYTES, lastAccess);
+        active.buffer.putInt(offset + 2 * Long.BYTES, data.length);
+        active.buffer.put(offset + HEADER_SIZE, data);
+        active.position += recordSize;
+        active.liveBytes += recordSize;
+        return position(active.id, offset);
+    }
+
+    /**
+     * Marks the record as garbage, then deletes or compacts its segment if it is mostly garbage.
+     */
+    private void release(long position) {
+        Segment segment = segments.get(segmentId(position));
+        segment.liveBytes -= HEADER_SIZE + segment.buffer.getInt(offset(position) + 2 * Long.BYTES);
+        if (segment == active) {
+            return;
+        }
+
+        if (segment.liveBytes == 0) {
+            delete(segment);
+        } else if (segment.liveBytes <= segment.position * COMPACTION_THRESHOLD) {
+            compact(segment);
+        }
+    }
+
+    private void compact(Segment segment) {
+        long now = System.currentTimeMillis();
+        int offset = 0;
+        while (offset < segment.position) {
+            long sessionId = segment.buffer.getLong(offset);
+            long lastAccess = segment.buffer.getLong(offset + Long.BYTES);
+            int length = segment.buffer.getInt(offset + 2 * Long.BYTES);
+            long position = position(segment.id, offset);
+
+            // Only the records referenced by the index are alive
+            if (index.get(sessionId) == position) {
+                if (isExpired(lastAccess, now)) {
+                    index.remove(sessionId);
+                } else {
+                    byte[] data = new byte[length];
+                    segment.buffer.get(offset + HEADER_SIZE, data);
+                    index.put(sessionId, write(sessionId, data, lastAccess));
+                }
+            }
+            offset += HEADER_SIZE + length;
+        }
+        delete(segment);
+    }
+
+    /**
+     * Adopts the snapshot file as a segment and indexes its non-expired records.
+     */
+    private void restore(Path snapshot) throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + segments.size() + SEGMENT_SUFFIX);
+        Files.move(snapshot, path);
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        Segment segment = new Segment(segments.size(), path, buffer);
+        segments.add(segment);
+
+        long now = System.currentTimeMillis();
+        int offset = 0;
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+            long sessionId = buffer.getLong(offset);
+            long lastAccess = buffer.getLong(offset + Long.BYTES);
+            int length = buffer.getInt(offset + 2 * Long.BYTES);
+            if ((length < 0) || (offset + HEADER_SIZE + length > buffer.capacity())) {
+                log.warn("Sessions snapshot {} is corrupted at {}, the rest is skipped", snapshot, offset);
+                break;
+            }
+            if (!isExpired(lastAccess, now)) {
+                long previous = index.put(sessionId, position(segment.id, offset));
+                segment.liveBytes += HEADER_SIZE + length;
+                if (previous != MISSING) {
+                    segment.liveBytes -= HEADER_SIZE + buffer.getInt(offset(previous) + 2 * Long.BYTES);
+                }
+            }
+            offset += HEADER_SIZE + length;
+        }
+        segment.position = offset;
+        log.info("{} sessions have been restored from {}", index.size(), snapshot);
+
+        if (segment.liveBytes == 0) {
+            delete(segment);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private Segment createSegment(int size) {
+        int id = segments.indexOf(null);
+        if (id < 0) {
+            id = segments.size();
+            segments.add(null);
+        }
+
+        Path path = directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Segment segment = new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            segments.set(id, segment);
+            return segment;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Session segment could not be created", ex);
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.set(segment.id, null);
+        try {
+            // The mapping is released once the buffer is garbage collected
+            Files.deleteIfExists(segment.path);
+        } catch (IOException ex) {
+            log.warn("Session segment {} could not be deleted", segment.path, ex);
+        }
+    }
+
+    private boolean isExpired(long lastAccess, long now) {
+        return now - lastAccess > expireAfterMillis;
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long position(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentId(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offset(long position) {
+        return (int) position;
+    }
+
+    private static class Segment {
+        private final int id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private long liveBytes;
+
+        Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.kshashov.telegram.session;
+
+import com.github.kshashov.telegram.api.TelegramSession;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Converts {@link TelegramSession#getItems()} to bytes and back, so the session could be moved to {@link SessionStore}.
+ *
+ * @see JavaSessionSerializer
+ * @since 0.29
+ */
+public interface SessionSerializer {
+
+    /**
+     * @param items session items
+     * @return serialized items
+     * @throws IOException if the items could not be serialized
+     */
+    @NotNull
+    byte[] serialize(@NotNull Map<String, Object> items) throws IOException;
+
+    /**
+     * @param data serialized items
+     * @return session items
+     * @throws IOException if the data could not be deserialized
+     */
+    @NotNull
+    Map<String, Object> deserialize(@NotNull byte[] data) throws IOException;
+}
@@ -0,0 +1,56 @@
+package com.github.kshashov.telegram.session;
+
+import com.github.kshashov.telegram.TelegramScope;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Cold tier of the {@link TelegramScope} sessions. Idle sessions are serialized and demoted to the store, then promoted
+ * back to the heap once they are accessed again.
+ *
+ * <p>Implementations should be thread-safe.</p>
+ *
+ * @see MappedSessionStore
+ * @since 0.29
+ */
+public interface SessionStore {
+
+    /**
+     * Saves the serialized session. Replaces the previous value, if any.
+     *
+     * @param sessionId  session id
+     * @param data       serialized session
+     * @param lastAccess the last access time of the session in milliseconds since the epoch
+     */
+    void save(long sessionId, @NotNull byte[] data, long lastAccess);
+
+    /**
+     * Removes the session from the store and returns it.
+     *
+     * @param sessionId session id
+     * @return serialized session or {@code null} if the store does not contain the session or it has expired
+     */
+    @Nullable
+    byte[] take(long sessionId);
+
+    /**
+     * Removes the session from the store.
+     *
+     * @param sessionId session id
+     */
+    void remove(long sessionId);
+
+    /**
+     * @return count of the stored sessions
+     */
+    long size();
+
+    /**
+     * Persists the stored sessions, so they survive the application restart. Is invoked once the application context
+     * is closed and all active sessions have been moved to the store. Does nothing by default, which suits the stores
+     * that are durable anyway.
+     */
+    default void snapshot() {
+    }
+}
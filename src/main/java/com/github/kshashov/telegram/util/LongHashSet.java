@@ -0,0 +1,112 @@
+package com.github.kshashov.telegram.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash set of primitive {@code long} values. Avoids boxing and per-entry allocations, so lookups cost
+ * a few array reads.
+ *
+ * <p><strong>Note:</strong> the set is not thread-safe for writes. It is supposed to be filled once and then only read.
+ */
+public class LongHashSet {
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final long EMPTY = 0L;
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private boolean containsEmpty;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public static LongHashSet of(long... values) {
+        LongHashSet set = new LongHashSet(values.length);
+        for (long value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    /**
+     * Adds the value to the set.
+     *
+     * @param value value to add
+     * @return {@code true} if the set did not already contain the value
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) return false;
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+
+        int index = indexOf(value);
+        if (table[index] == value) {
+            return false;
+        }
+        table[index] = value;
+        if (++size > table.length * LOAD_FACTOR) {
+            rehash(table.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsEmpty;
+        }
+        return table[indexOf(value)] == value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int indexOf(long value) {
+        int index = mix(value) & mask;
+        while (table[index] != EMPTY && table[index] != value) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = table;
+        table = new long[capacity];
+        mask = capacity - 1;
+        for (long value : old) {
+            if (value != EMPTY) {
+                table[indexOf(value)] = value;
+            }
+        }
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        long[] values = new long[size];
+        int i = 0;
+        if (containsEmpty) values[i++] = EMPTY;
+        for (long value : table) {
+            if (value != EMPTY) values[i++] = value;
+        }
+        return Arrays.toString(values);
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.kshashov.telegram.util;
+
+/**
+ * Open addressing hash map of primitive {@code long} keys to primitive {@code long} values. Avoids boxing and
+ * per-entry allocations, so each entry costs two array slots.
+ *
+ * <p><strong>Note:</strong> the map is not thread-safe.
+ */
+public class LongLongHashMap {
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final long EMPTY = 0L;
+
+    private final long missingValue;
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private boolean containsEmpty;
+    private long emptyValue;
+
+    /**
+     * @param missingValue value that is returned for the missing keys
+     */
+    public LongLongHashMap(long missingValue) {
+        this(16, missingValue);
+    }
+
+    public LongLongHashMap(int expectedSize, long missingValue) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        this.mask = capacity - 1;
+        this.missingValue = missingValue;
+    }
+
+    /**
+     * @param key key
+     * @return value or the missing value if the map does not contain the key
+     */
+    public long get(long key) {
+        if (key == EMPTY) {
+            return containsEmpty ? emptyValue : missingValue;
+        }
+        int index = indexOf(key);
+        return (keys[index] == key) ? values[index] : missingValue;
+    }
+
+    /**
+     * @param key   key
+     * @param value value
+     * @return previous value or the missing value
+     */
+    public long put(long key, long value) {
+        if (key == EMPTY) {
+            long previous = containsEmpty ? emptyValue : missingValue;
+            if (!containsEmpty) {
+                containsEmpty = true;
+                size++;
+            }
+            emptyValue = value;
+            return previous;
+        }
+
+        int index = indexOf(key);
+        if (keys[index] == key) {
+            long previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+        return missingValue;
+    }
+
+    /**
+     * @param key key
+     * @return removed value or the missing value
+     */
+    public long remove(long key) {
+        if (key == EMPTY) {
+            if (!containsEmpty) return missingValue;
+            containsEmpty = false;
+            size--;
+            return emptyValue;
+        }
+
+        int index = indexOf(key);
+        if (keys[index] != key) {
+            return missingValue;
+        }
+        long previous = values[index];
+        keys[index] = EMPTY;
+        size--;
+
+        // Shift back the following entries of the same probe sequence
+        int next = (index + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int ideal = mix(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                keys[next] = EMPTY;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Invokes the consumer for each entry. The map should not be modified by the consumer.
+     *
+     * @param consumer entries consumer
+     */
+    public void forEach(EntryConsumer consumer) {
+        if (containsEmpty) consumer.accept(EMPTY, emptyValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) consumer.accept(keys[i], values[i]);
+        }
+    }
+
+    private int indexOf(long key) {
+        int index = mix(key) & mask;
+        while (keys[index] != EMPTY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.kshashov.telegram.util;
+
+import java.time.Duration;
+
+/**
+ * Token bucket rate limit implemented as a generic cell rate algorithm. The whole state of the bucket is a single
+ * {@code long} value (theoretical arrival time), so callers can keep millions of buckets in primitive arrays or fields.
+ *
+ * <p>The instance itself is immutable and only describes the rate. Initial state of each bucket is {@link #FULL}.</p>
+ */
+public final class TokenBucket {
+    /**
+     * State of the bucket that has all tokens available.
+     */
+    public static final long FULL = Long.MIN_VALUE;
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+
+    /**
+     * Create bucket that refills {@code permits} tokens during {@code period} and is able to hold the same amount of
+     * tokens.
+     *
+     * @param permits tokens count
+     * @param period  refill period
+     */
+    public TokenBucket(int permits, Duration period) {
+        this(permits, period, permits);
+    }
+
+    /**
+     * @param permits  tokens count
+     * @param period   refill period
+     * @param capacity max tokens count that can be accumulated
+     */
+    public TokenBucket(int permits, Duration period, int capacity) {
+        if (permits <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Permits and capacity should be positive");
+        }
+        this.emissionIntervalNanos = Math.max(1, period.toNanos() / permits);
+        this.burstToleranceNanos = emissionIntervalNanos * (capacity - 1);
+    }
+
+    /**
+     * Returns time to wait until the next token is available.
+     *
+     * @param state current bucket state
+     * @param now   current {@link System#nanoTime()}
+     * @return delay in nanoseconds, {@code 0} if the token is available right now
+     */
+    public long waitNanos(long state, long now) {
+        long allowAt = Math.max(state, now) - burstToleranceNanos;
+        return Math.max(0, allowAt - now);
+    }
+
+    /**
+     * Takes one token from the bucket. Should be invoked only if {@link #waitNanos} returned {@code 0}.
+     *
+     * @param state current bucket state
+     * @param now   current {@link System#nanoTime()}
+     * @return new bucket state
+     */
+    public long consume(long state, long now) {
+        return Math.max(state, now) + emissionIntervalNanos;
+    }
+
+    /**
+     * Returns {@code true} if the bucket with the given state has been full for a while, so its state can be dropped.
+     *
+     * @param state current bucket state
+     * @param now   current {@link System#nanoTime()}
+     * @return whether the bucket is full
+     */
+    public boolean isFull(long state, long now) {
+        return state == FULL || state <= now;
+    }
+
+    public long getEmissionIntervalNanos() {
+        return emissionIntervalNanos;
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.kshashov.telegram;
+
+import com.github.kshashov.telegram.api.TelegramMvcController;
+import com.github.kshashov.telegram.api.TelegramRequest;
+import com.github.kshashov.telegram.api.bind.annotation.BotBatchRequest;
+import com.github.kshashov.telegram.api.bind.annotation.BotController;
+import com.github.kshashov.telegram.handler.HandlerMethodContainer;
+import com.github.kshashov.telegram.metrics.MetricsService;
+import com.pengrad.telegrambot.TelegramBot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TelegramControllerBeanPostProcessorTest {
+    private HandlerMethodContainer handlerMethodContainer = new HandlerMethodContainer();
+    private TelegramControllerBeanPostProcessor postProcessor = new TelegramControllerBeanPostProcessor(handlerMethodContainer, mock(MetricsService.class));
+
+    @Test
+    void postProcess_BatchController_Register() {
+        postProcessor.postProcessAfterInitialization(new BatchController(), "controller");
+
+        assertTrue(handlerMethodContainer.hasBatchHandlers("token"));
+    }
+
+    @Test
+    void postProcess_UnsupportedBatchParameter_Reject() {
+        assertThrows(IllegalStateException.class, () -> postProcessor.postProcessAfterInitialization(new InvalidBatchController(), "controller"));
+    }
+
+    @BotController
+    public static class BatchController implements TelegramMvcController {
+
+        @Override
+        public String getToken() {
+            return "token";
+        }
+
+        @BotBatchRequest
+        public void batch(List<TelegramRequest> requests, TelegramBot bot) {
+        }
+    }
+
+    @BotController
+    public static class InvalidBatchController implements TelegramMvcController {
+
+        @Override
+        public String getToken() {
+            return "token";
+        }
+
+        @BotBatchRequest
+        public void batch(List<TelegramRequest> requests, String text) {
+        }
+    }
+}
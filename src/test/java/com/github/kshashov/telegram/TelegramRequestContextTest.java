@@ -0,0 +1,126 @@
+package com.github.kshashov.telegram;
+
+import com.github.kshashov.telegram.handler.TelegramExecuteHandler;
+import com.github.kshashov.telegram.handler.processor.TelegramCallback;
+import com.github.kshashov.telegram.handler.processor.Template;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TelegramRequestContextTest {
+
+    @AfterEach
+    void clear() {
+        TelegramRequestContext.unbind();
+    }
+
+    @Test
+    void bind_Nested_RestorePrevious() {
+        TelegramRequestContext first = new TelegramRequestContext(1L, null);
+        TelegramRequestContext second = new TelegramRequestContext(2L, null);
+
+        try (TelegramRequestContext.Binding ignored = first.bind()) {
+            try (TelegramRequestContext.Binding ignored2 = second.bind()) {
+                assertSame(second, TelegramRequestContext.current());
+            }
+            assertSame(first, TelegramRequestContext.current());
+        }
+        assertNull(TelegramRequestContext.current());
+    }
+
+    @Test
+    void propagating_SameSessionOnOtherThread() throws Exception {
+        TelegramScope scope = new TelegramScope(mock(ConfigurableListableBeanFactory.class), 60, 10, Runnable::run);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Object bean;
+            Object asyncBean;
+            try (TelegramRequestContext.Binding ignored = new TelegramRequestContext(1L, null).bind()) {
+                bean = scope.get("bean", Object::new);
+                asyncBean = CompletableFuture
+                        .supplyAsync(() -> scope.get("bean", Object::new), TelegramRequestContext.propagating(executor))
+                        .get();
+            }
+            assertSame(bean, asyncBean);
+
+            // The worker thread does not keep the context after the task
+            assertNull(executor.submit(TelegramRequestContext::current).get());
+
+            // Tasks submitted without context could not access the scope
+            CompletableFuture<Object> unbound = CompletableFuture.supplyAsync(() -> scope.get("bean", Object::new), executor);
+            assertThrows(Exception.class, unbound::get);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void executeAsync_CompleteWithinCallerContext() throws Exception {
+        List<TelegramCallback> callbacks = new ArrayList<>();
+        TelegramExecuteHandler handler = new TelegramExecuteHandler() {
+            @Override
+            public void execute(BaseRequest baseRequest) {
+            }
+
+            @Override
+            public void execute(TelegramCallback baseRequest) {
+                callbacks.add(baseRequest);
+            }
+
+            @Override
+            public <T> void execute(String chatId, Template<T> template) {
+            }
+
+            @Override
+            public void execute(TelegramBot bot, BaseRequest baseRequest) {
+            }
+
+            @Override
+            public void execute(TelegramBot bot, TelegramCallback baseRequest) {
+            }
+
+            @Override
+            public <T> void execute(TelegramBot bot, String chatId, Template<T> template) {
+            }
+
+            @Override
+            public <T> CompletableFuture<SendResponse> executeAsync(String chatId, Template<T> template) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public <T> CompletableFuture<SendResponse> executeAsync(TelegramBot bot, String chatId, Template<T> template) {
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        TelegramRequestContext context = new TelegramRequestContext(1L, null);
+        SendMessage request = new SendMessage(1L, "text");
+        SendResponse response = mock(SendResponse.class);
+        when(response.isOk()).thenReturn(true);
+
+        CompletableFuture<TelegramRequestContext> future;
+        try (TelegramRequestContext.Binding ignored = context.bind()) {
+            future = handler.executeAsync(request).thenApply(r -> TelegramRequestContext.current());
+        }
+        // The response is received after the handler has returned
+        callbacks.get(0).onResponse(request, response);
+
+        assertSame(context, future.get());
+        assertNull(TelegramRequestContext.current());
+    }
+}
@@ -0,0 +1,244 @@
+package com.github.kshashov.telegram;
+
+import com.github.kshashov.telegram.api.TelegramScoped;
+import com.github.kshashov.telegram.api.TelegramSession;
+import com.github.kshashov.telegram.session.JavaSessionSerializer;
+import com.github.kshashov.telegram.session.SessionStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TelegramScopeTest {
+    private ConfigurableListableBeanFactory beanFactory = mock(ConfigurableListableBeanFactory.class);
+
+    @AfterEach
+    void clear() {
+        TelegramScope.removeId();
+    }
+
+    @Test
+    void get_NoSession_ThrowException() {
+        TelegramScope scope = new TelegramScope(beanFactory, 60, 10, Runnable::run);
+
+        assertThrows(TelegramScopeException.class, () -> scope.get("bean", Object::new));
+    }
+
+    @Test
+    void get_SameSession_SameBean() {
+        TelegramScope scope = new TelegramScope(beanFactory, 60, 10, Runnable::run);
+
+        TelegramScope.setIdThreadLocal(1L);
+        Object bean = scope.get("bean", Object::new);
+        assertSame(bean, scope.get("bean", Object::new));
+        assertEquals("1", scope.getConversationId());
+
+        TelegramScope.setIdThreadLocal(2L);
+        assertNotSame(bean, scope.get("bean", Object::new));
+        assertEquals(2, scope.size());
+        assertEquals(1, scope.stats().hitCount());
+    }
+
+    @Test
+    void get_SessionStore_DemoteAndPromote() {
+        TelegramScope scope = new TelegramScope(beanFactory, 60, 1, Runnable::run);
+        Map<Long, byte[]> store = new HashMap<>();
+        scope.setSessionStore(new InMemorySessionStore(store), new JavaSessionSerializer(), Duration.ofMinutes(1));
+
+        TelegramScope.setIdThreadLocal(1L);
+        TelegramSession session = (TelegramSession) scope.get("session", TelegramSession::new);
+        session.getItems().put("key", "value");
+        session.setState("state", Duration.ofMinutes(1));
+
+        // Demote the first session
+        TelegramScope.setIdThreadLocal(2L);
+        scope.get("session", TelegramSession::new);
+        scope.cleanUp();
+        assertEquals(1, scope.size());
+        assertTrue(store.containsKey(1L));
+
+        // Promote it back
+        TelegramScope.setIdThreadLocal(1L);
+        TelegramSession restored = (TelegramSession) scope.get("session", TelegramSession::new);
+        assertNotSame(session, restored);
+        assertEquals("value", restored.getItems().get("key"));
+        assertEquals("state", restored.getState());
+        assertEquals(session.getStateExpiresAt(), restored.getStateExpiresAt());
+        assertFalse(store.containsKey(1L));
+    }
+
+    @Test
+    void get_PromoteWhileDemoting_WaitForStore() throws Exception {
+        Queue<Runnable> removals = new ConcurrentLinkedQueue<>();
+        TelegramScope scope = new TelegramScope(beanFactory, 60, 1, removals::add);
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch saved = new CountDownLatch(1);
+        Map<Long, byte[]> store = new ConcurrentHashMap<>();
+        scope.setSessionStore(new InMemorySessionStore(store) {
+            @Override
+            public void save(long sessionId, byte[] data, long lastAccess) {
+                saving.countDown();
+                awaitUninterruptibly(saved);
+                super.save(sessionId, data, lastAccess);
+            }
+        }, new JavaSessionSerializer(), Duration.ofMinutes(1));
+
+        TelegramScope.setIdThreadLocal(1L);
+        ((TelegramSession) scope.get("session", TelegramSession::new)).getItems().put("key", "value");
+        TelegramScope.setIdThreadLocal(2L);
+        scope.get("session", TelegramSession::new);
+        scope.cleanUp();
+
+        // Demote the first session on another thread and promote it back while it is being saved
+        Thread demotion = new Thread(() -> removals.forEach(Runnable::run));
+        demotion.start();
+        assertTrue(saving.await(1, TimeUnit.SECONDS));
+        AtomicReference<TelegramSession> restored = new AtomicReference<>();
+        Thread promotion = new Thread(() -> {
+            TelegramScope.setIdThreadLocal(1L);
+            restored.set((TelegramSession) scope.get("session", TelegramSession::new));
+        });
+        promotion.start();
+        while (promotion.isAlive() && (promotion.getState() != Thread.State.BLOCKED)) {
+            Thread.onSpinWait();
+        }
+        saved.countDown();
+        promotion.join(1000);
+        demotion.join(1000);
+
+        assertEquals("value", restored.get().getItems().get("key"));
+        assertFalse(store.containsKey(1L));
+    }
+
+    @Test
+    void demoteAll_SessionStore_DemoteActiveSessions() {
+        TelegramScope scope = new TelegramScope(beanFactory, 60, 10, Runnable::run);
+        Map<Long, byte[]> store = new HashMap<>();
+        scope.setSessionStore(new InMemorySessionStore(store), new JavaSessionSerializer(), Duration.ofMinutes(1));
+
+        TelegramScope.setIdThreadLocal(1L);
+        TelegramSession session = (TelegramSession) scope.get("session", TelegramSession::new);
+        session.getItems().put("key", "value");
+
+        scope.demoteAll();
+        assertEquals(0, scope.size());
+        assertTrue(store.containsKey(1L));
+        verify(beanFactory).destroyBean(session);
+    }
+
+    @Test
+    void get_TelegramScopedTtl_ExpireBeanOnly() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            TelegramScope scope = new TelegramScope(context.getBeanFactory(), 60, 10, Runnable::run);
+            context.getBeanFactory().registerScope(TelegramScope.SCOPE, scope);
+            context.register(TtlConfiguration.class);
+            context.refresh();
+
+            TelegramScope.setIdThreadLocal(1L);
+            SearchResults results = context.getBean("searchResults", SearchResults.class);
+            Draft draft = context.getBean(Draft.class);
+            Object resultsTarget = results.instance();
+            Object draftTarget = draft.instance();
+
+            scope.expireBeans(System.nanoTime() + TimeUnit.SECONDS.toNanos(30));
+            assertSame(resultsTarget, results.instance());
+
+            scope.expireBeans(System.nanoTime() + TimeUnit.MINUTES.toNanos(2));
+            assertNotSame(resultsTarget, results.instance());
+            assertSame(draftTarget, draft.instance());
+        }
+    }
+
+    @Test
+    void get_MaxSessions_DestroyEvictedBeans() {
+        TelegramScope scope = new TelegramScope(beanFactory, 60, 10, Runnable::run);
+
+        for (long i = 0; i < 20; i++) {
+            TelegramScope.setIdThreadLocal(i);
+            scope.get("bean", Object::new);
+        }
+        scope.cleanUp();
+
+        assertEquals(10, scope.size());
+        assertEquals(10, scope.stats().evictionCount());
+        verify(beanFactory, times(10)).destroyBean(any());
+    }
+
+    @Configuration
+    static class TtlConfiguration {
+        @Bean
+        @TelegramScoped(ttlSeconds = 60)
+        SearchResults searchResults() {
+            return new SearchResults();
+        }
+
+        @Bean
+        @TelegramScoped
+        Draft draft() {
+            return new Draft();
+        }
+    }
+
+    static class SearchResults {
+        private final Object instance = new Object();
+
+        // Proxies replace the returned target with themselves, so return something else to identify the target
+        public Object instance() {
+            return instance;
+        }
+    }
+
+    static class Draft extends SearchResults {
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class InMemorySessionStore implements SessionStore {
+        private final Map<Long, byte[]> store;
+
+        InMemorySessionStore(Map<Long, byte[]> store) {
+            this.store = store;
+        }
+
+        @Override
+        public void save(long sessionId, byte[] data, long lastAccess) {
+            store.put(sessionId, data);
+        }
+
+        @Override
+        public byte[] take(long sessionId) {
+            return store.remove(sessionId);
+        }
+
+        @Override
+        public void remove(long sessionId) {
+            store.remove(sessionId);
+        }
+
+        @Override
+        public long size() {
+            return store.size();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.kshashov.telegram;
+
+import com.github.kshashov.telegram.api.TelegramSession;
+import com.github.kshashov.telegram.handler.processor.TelegramEvent;
+import com.pengrad.telegrambot.model.Chat;
+import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.model.Update;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.annotation.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TelegramSessionResolverTest {
+    private AnnotationConfigApplicationContext context;
+    private TelegramSessionResolver resolver;
+
+    @BeforeEach
+    void init() {
+        context = new AnnotationConfigApplicationContext();
+        TelegramScope scope = new TelegramScope(context.getBeanFactory(), 60, 10, Runnable::run);
+        context.getBeanFactory().registerScope(TelegramScope.SCOPE, scope);
+        context.register(SessionConfiguration.class);
+        context.refresh();
+        resolver = new TelegramSessionResolver(context, scope);
+    }
+
+    @AfterEach
+    void close() {
+        context.close();
+    }
+
+    @Test
+    void resolveTelegramSession() {
+        TelegramSessionResolver.TelegramSessionHolder holder = resolver.resolveTelegramSession(event(1L));
+        TelegramSession session = holder.getSession();
+        assertFalse(AopUtils.isAopProxy(session));
+        session.getItems().put("key", "value");
+
+        // The proxy is resolved to the same session
+        assertEquals("value", context.getBean(TelegramSession.class).getItems().get("key"));
+        holder.releaseSessionId();
+
+        holder = resolver.resolveTelegramSession(event(1L));
+        assertSame(session, holder.getSession());
+        holder.releaseSessionId();
+
+        holder = resolver.resolveTelegramSession(event(2L));
+        assertNotSame(session, holder.getSession());
+        holder.releaseSessionId();
+    }
+
+    private TelegramEvent event(long chatId) {
+        Chat chat = mock(Chat.class);
+        when(chat.id()).thenReturn(chatId);
+        Message message = mock(Message.class);
+        when(message.chat()).thenReturn(chat);
+        Update update = mock(Update.class);
+        when(update.message()).thenReturn(message);
+        TelegramEvent event = mock(TelegramEvent.class);
+        when(event.getUpdate()).thenReturn(update);
+        return event;
+    }
+
+    @Configuration
+    static class SessionConfiguration {
+        @Bean
+        @Scope(value = TelegramScope.SCOPE, proxyMode = ScopedProxyMode.TARGET_CLASS)
+        TelegramSession telegramSession() {
+            return new TelegramSession();
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.github.kshashov.telegram;
 
+import com.pengrad.telegrambot.model.*;
+
 import java.lang.reflect.Method;
 import java.util.NoSuchElementException;
 import java.util.stream.Stream;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 public class TestUtils {
 
     public static Method findMethodByTitle(Object bean, String methodName) throws NoSuchElementException {
@@ -11,4 +16,67 @@ public class TestUtils {
                 .filter(method -> method.getName().equals(methodName))
                 .findFirst().get();
     }
+
+    public static Update message(long chatId) {
+        Update update = mock(Update.class);
+        Message message = chatMessage(chatId, 0);
+        when(update.message()).thenReturn(message);
+        return update;
+    }
+
+    public static Update message(long chatId, long userId) {
+        Update update = message(chatId);
+        User user = user(userId);
+        when(update.message().from()).thenReturn(user);
+        return update;
+    }
+
+    public static Update mediaGroupMessage(long chatId, int messageId, String mediaGroupId) {
+        Update update = mock(Update.class);
+        Message message = chatMessage(chatId, messageId);
+        when(message.mediaGroupId()).thenReturn(mediaGroupId);
+        when(update.message()).thenReturn(message);
+        return update;
+    }
+
+    public static Update callback(long chatId) {
+        return callback(chatId, 0, null);
+    }
+
+    public static Update callback(long chatId, int messageId, String data) {
+        Message message = chatMessage(chatId, messageId);
+        CallbackQuery callbackQuery = mock(CallbackQuery.class);
+        when(callbackQuery.id()).thenReturn("id");
+        when(callbackQuery.message()).thenReturn(message);
+        when(callbackQuery.data()).thenReturn(data);
+        Update update = mock(Update.class);
+        when(update.callbackQuery()).thenReturn(callbackQuery);
+        return update;
+    }
+
+    public static Update inlineQuery(long userId, int updateId) {
+        User user = user(userId);
+        InlineQuery inlineQuery = mock(InlineQuery.class);
+        when(inlineQuery.from()).thenReturn(user);
+        when(inlineQuery.id()).thenReturn("q" + updateId);
+        Update update = mock(Update.class);
+        when(update.inlineQuery()).thenReturn(inlineQuery);
+        when(update.updateId()).thenReturn(updateId);
+        return update;
+    }
+
+    private static Message chatMessage(long chatId, int messageId) {
+        Chat chat = mock(Chat.class);
+        when(chat.id()).thenReturn(chatId);
+        Message message = mock(Message.class);
+        when(message.chat()).thenReturn(chat);
+        when(message.messageId()).thenReturn(messageId);
+        return message;
+    }
+
+    private static User user(long userId) {
+        User user = mock(User.class);
+        when(user.id()).thenReturn(userId);
+        return user;
+    }
 }
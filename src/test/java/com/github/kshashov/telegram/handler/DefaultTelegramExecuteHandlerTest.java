@@ -0,0 +1,93 @@
+package com.github.kshashov.telegram.handler;
+
+import com.github.kshashov.telegram.config.TelegramBotGlobalProperties;
+import com.github.kshashov.telegram.handler.processor.Template;
+import com.github.kshashov.telegram.metrics.MetricsService;
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.TelegramException;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class DefaultTelegramExecuteHandlerTest {
+    private final TelegramBot bot = mock(TelegramBot.class);
+    private final Callback responseCallback = mock(Callback.class);
+    private final MetricsService metricsService = mock(MetricsService.class);
+    private final DefaultTelegramExecuteHandler handler = new DefaultTelegramExecuteHandler(
+            bot,
+            null,
+            TelegramBotGlobalProperties.builder().responseCallback(responseCallback).build(),
+            metricsService);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void executeAsync_Ok_CompleteWithResponse() throws Exception {
+        SendResponse response = response(true);
+        respond(invocation -> ((Callback) invocation.getArgument(1)).onResponse(invocation.getArgument(0), response));
+
+        SendMessage request = new SendMessage(1L, "text");
+        CompletableFuture<SendResponse> future = handler.executeAsync(request);
+
+        assertSame(response, future.get());
+        verify(responseCallback).onResponse(eq(request), eq(response));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void executeAsync_NotOk_CompleteWithTelegramException() {
+        SendResponse response = response(false);
+        respond(invocation -> ((Callback) invocation.getArgument(1)).onResponse(invocation.getArgument(0), response));
+
+        CompletableFuture<SendResponse> future = handler.executeAsync(new SendMessage(1L, "text"));
+
+        ExecutionException ex = assertThrows(ExecutionException.class, future::get);
+        assertTrue(ex.getCause() instanceof TelegramException);
+        assertSame(response, ((TelegramException) ex.getCause()).response());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void executeAsync_Failure_CompleteWithException() {
+        IOException failure = new IOException();
+        respond(invocation -> ((Callback) invocation.getArgument(1)).onFailure(invocation.getArgument(0), failure));
+
+        CompletableFuture<SendResponse> future = handler.executeAsync(new SendMessage(1L, "text"));
+
+        ExecutionException ex = assertThrows(ExecutionException.class, future::get);
+        assertSame(failure, ex.getCause());
+        verify(responseCallback).onFailure(any(), eq(failure));
+        verify(metricsService).onUpdateError();
+    }
+
+    @Test
+    void executeAsync_Template_NoTemplateEngine_Fail() {
+        assertThrows(IllegalStateException.class, () -> handler.executeAsync("1", new Template<>("template", null)));
+    }
+
+    private void respond(Consumer<InvocationOnMock> answer) {
+        doAnswer(invocation -> {
+            answer.accept(invocation);
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+    }
+
+    private SendResponse response(boolean ok) {
+        SendResponse response = mock(SendResponse.class);
+        when(response.isOk()).thenReturn(ok);
+        when(response.description()).thenReturn(ok ? null : "Bad Request");
+        return response;
+    }
+}
@@ -14,6 +14,7 @@ import org.mockito.stubbing.Answer;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -108,6 +109,49 @@ public class HandlerMethodContainerTest {
         assertEquals("1", result.getTemplateVariables().get("var"));
     }
 
+    @Test
+    void lookupBatchHandlerMethods() {
+        container.setMatcherStrategy(matcherStrategy);
+        assertFalse(container.hasBatchHandlers(token));
+        assertTrue(container.lookupBatchHandlerMethods(request("test", MessageType.MESSAGE)).isEmpty());
+
+        when(matcherStrategy.isMatched(any(), any())).thenReturn(true);
+        RequestMappingInfo mapping1 = new RequestMappingInfo(token, "/a", 2, Sets.newHashSet(MessageType.MESSAGE));
+        RequestMappingInfo mapping2 = new RequestMappingInfo(token, "/b", 2, Sets.newHashSet(MessageType.MESSAGE));
+        container.registerBatchController(1, method, Lists.newArrayList(mapping1, mapping2));
+        container.registerBatchController(2, method, Lists.newArrayList(mapping1));
+
+        // Each handler is matched once
+        assertTrue(container.hasBatchHandlers(token));
+        List<HandlerMethodContainer.HandlerLookupResult> result = container.lookupBatchHandlerMethods(request("test", MessageType.MESSAGE));
+        assertEquals(2, result.size());
+        assertEquals(1, result.get(0).getHandlerMethod().getBean());
+        assertEquals("/a", result.get(0).getBasePattern());
+        assertEquals(2, result.get(1).getHandlerMethod().getBean());
+
+        // Batch handlers are not used for the regular lookup
+        assertNull(container.lookupHandlerMethod(request("test", MessageType.MESSAGE)).getHandlerMethod());
+    }
+
+    @Test
+    void lookupHandlerMethod_State_PreferStateHandlers() {
+        container.setMatcherStrategy(matcherStrategy);
+        when(matcherStrategy.isMatched(any(), any())).thenReturn(true);
+
+        RequestMappingInfo mapping = new RequestMappingInfo(token, "/", 1, Sets.newHashSet(MessageType.MESSAGE));
+        container.registerController(1, method, Lists.newArrayList(mapping));
+        StateTransition transition = new StateTransition(null, null);
+        HandlerMethod stateMethod = container.registerController(2, method, Lists.newArrayList(mapping), Sets.newHashSet("a", "b"), transition);
+
+        // Handlers with states are matched only in their states
+        assertEquals(1, container.lookupHandlerMethod(request("test", MessageType.MESSAGE)).getHandlerMethod().getBean());
+        assertEquals(1, container.lookupHandlerMethod(request("test", MessageType.MESSAGE), "c").getHandlerMethod().getBean());
+        assertEquals(2, container.lookupHandlerMethod(request("test", MessageType.MESSAGE), "a").getHandlerMethod().getBean());
+        assertEquals(2, container.lookupHandlerMethod(request("test", MessageType.MESSAGE), "b").getHandlerMethod().getBean());
+
+        assertSame(transition, container.getStateTransition(stateMethod));
+    }
+
     public void method() {
     }
 
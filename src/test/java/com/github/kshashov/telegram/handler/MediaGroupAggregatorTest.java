@@ -0,0 +1,79 @@
+package com.github.kshashov.telegram.handler;
+
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.kshashov.telegram.TestUtils.mediaGroupMessage;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class MediaGroupAggregatorTest {
+    private TelegramBot bot = mock(TelegramBot.class);
+    private String token = "token";
+    private BlockingQueue<List<Update>> groups = new LinkedBlockingQueue<>();
+
+    @Test
+    void offer_NotMediaGroup_Skip() {
+        MediaGroupAggregator aggregator = new MediaGroupAggregator(Duration.ofMillis(50), (t, b, u) -> groups.add(u));
+
+        assertFalse(aggregator.offer(token, bot, mock(Update.class)));
+        assertFalse(aggregator.offer(token, bot, mediaGroupMessage(1L, 1, null)));
+        assertEquals(0, aggregator.size());
+    }
+
+    @Test
+    void offer_Window() throws InterruptedException {
+        MediaGroupAggregator aggregator = new MediaGroupAggregator(Duration.ofMillis(50), (t, b, u) -> groups.add(u));
+
+        Update second = mediaGroupMessage(1L, 2, "album");
+        Update first = mediaGroupMessage(1L, 1, "album");
+        Update other = mediaGroupMessage(2L, 3, "album");
+        assertTrue(aggregator.offer(token, bot, second));
+        assertTrue(aggregator.offer(token, bot, first));
+        assertTrue(aggregator.offer(token, bot, other));
+        assertEquals(2, aggregator.size());
+
+        List<Update> group1 = groups.poll(1, TimeUnit.SECONDS);
+        List<Update> group2 = groups.poll(1, TimeUnit.SECONDS);
+        assertNotNull(group1);
+        assertNotNull(group2);
+        List<Update> album = group1.size() == 2 ? group1 : group2;
+        assertEquals(List.of(first, second), album);
+        assertEquals(0, aggregator.size());
+    }
+
+    @Test
+    void offer_MaxSize_FlushImmediately() throws InterruptedException {
+        MediaGroupAggregator aggregator = new MediaGroupAggregator(Duration.ofMinutes(1), (t, b, u) -> groups.add(u));
+
+        for (int i = 0; i < MediaGroupAggregator.MAX_GROUP_SIZE; i++) {
+            aggregator.offer(token, bot, mediaGroupMessage(1L, i, "album"));
+        }
+
+        List<Update> group = groups.poll(1, TimeUnit.SECONDS);
+        assertNotNull(group);
+        assertEquals(MediaGroupAggregator.MAX_GROUP_SIZE, group.size());
+    }
+
+    @Test
+    void close_FlushBufferedGroups() {
+        MediaGroupAggregator aggregator = new MediaGroupAggregator(Duration.ofMinutes(1), (t, b, u) -> groups.add(u));
+
+        Update first = mediaGroupMessage(1L, 1, "album");
+        assertTrue(aggregator.offer(token, bot, first));
+        aggregator.close();
+
+        assertEquals(List.of(List.of(first)), List.copyOf(groups));
+        assertEquals(0, aggregator.size());
+        // Parts received after the shutdown are not buffered
+        assertFalse(aggregator.offer(token, bot, mediaGroupMessage(1L, 2, "album")));
+        assertEquals(0, aggregator.size());
+    }
+}
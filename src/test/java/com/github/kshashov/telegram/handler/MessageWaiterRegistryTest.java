@@ -0,0 +1,75 @@
+package com.github.kshashov.telegram.handler;
+
+import com.github.kshashov.telegram.api.MessageType;
+import com.github.kshashov.telegram.handler.processor.TelegramEvent;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Chat;
+import com.pengrad.telegrambot.model.Message;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MessageWaiterRegistryTest {
+    private final MessageWaiterRegistry registry = new MessageWaiterRegistry();
+    private final TelegramBot bot = mock(TelegramBot.class);
+
+    @Test
+    void deliver() {
+        CompletableFuture<Message> future = registry.await(bot, 1L, null, Duration.ofMinutes(1));
+        assertFalse(registry.deliver(event(2L, MessageType.MESSAGE, "text")));
+        assertFalse(registry.deliver(event(1L, MessageType.EDITED_MESSAGE, "text")));
+        assertFalse(future.isDone());
+
+        TelegramEvent event = event(1L, MessageType.MESSAGE, "text");
+        assertTrue(registry.deliver(event));
+        assertSame(event.getMessage(), future.join());
+
+        // The next message is processed as usual
+        assertFalse(registry.deliver(event(1L, MessageType.MESSAGE, "text")));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void deliver_Filter_SkipNotMatched() {
+        CompletableFuture<Message> future = registry.await(bot, 1L, message -> "yes".equals(message.text()), Duration.ofMinutes(1));
+
+        assertFalse(registry.deliver(event(1L, MessageType.MESSAGE, "no")));
+        assertFalse(future.isDone());
+        assertTrue(registry.deliver(event(1L, MessageType.MESSAGE, "yes")));
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    void await_TimeoutOrCancel_RemoveWaiter() {
+        CompletableFuture<Message> timeout = registry.await(bot, 1L, null, Duration.ofMillis(10));
+        ExecutionException ex = assertThrows(ExecutionException.class, timeout::get);
+        assertTrue(ex.getCause() instanceof TimeoutException);
+
+        CompletableFuture<Message> cancelled = registry.await(bot, 1L, null, Duration.ofMinutes(1));
+        cancelled.cancel(false);
+
+        assertEquals(0, registry.size());
+        assertFalse(registry.deliver(event(1L, MessageType.MESSAGE, "text")));
+    }
+
+    private TelegramEvent event(long chatId, MessageType type, String text) {
+        Chat chat = mock(Chat.class);
+        when(chat.id()).thenReturn(chatId);
+        Message message = mock(Message.class);
+        when(message.text()).thenReturn(text);
+
+        TelegramEvent event = mock(TelegramEvent.class);
+        when(event.getTelegramBot()).thenReturn(bot);
+        when(event.getMessageType()).thenReturn(type);
+        when(event.getChat()).thenReturn(chat);
+        when(event.getMessage()).thenReturn(message);
+        return event;
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.kshashov.telegram.handler;
+
+import com.github.kshashov.telegram.handler.processor.TelegramCallback;
+import com.github.kshashov.telegram.handler.processor.Template;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TelegramExecuteHandlerTest {
+    private final TelegramBot defaultBot = mock(TelegramBot.class);
+    private final List<TelegramBot> bots = new ArrayList<>();
+    private final List<TelegramCallback> callbacks = new ArrayList<>();
+
+    /**
+     * Handler that does not override the async methods that have the default implementation.
+     */
+    private final TelegramExecuteHandler handler = new TelegramExecuteHandler() {
+        @Override
+        public void execute(BaseRequest baseRequest) {
+            execute(new TelegramCallback(baseRequest, null));
+        }
+
+        @Override
+        public void execute(TelegramCallback baseRequest) {
+            execute(defaultBot, baseRequest);
+        }
+
+        @Override
+        public <T> void execute(String chatId, Template<T> template) {
+        }
+
+        @Override
+        public void execute(TelegramBot bot, BaseRequest baseRequest) {
+            execute(bot, new TelegramCallback(baseRequest, null));
+        }
+
+        @Override
+        public void execute(TelegramBot bot, TelegramCallback baseRequest) {
+            bots.add(bot);
+            callbacks.add(baseRequest);
+        }
+
+        @Override
+        public <T> void execute(TelegramBot bot, String chatId, Template<T> template) {
+        }
+
+        @Override
+        public <T> CompletableFuture<SendResponse> executeAsync(String chatId, Template<T> template) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public <T> CompletableFuture<SendResponse> executeAsync(TelegramBot bot, String chatId, Template<T> template) {
+            return CompletableFuture.completedFuture(null);
+        }
+    };
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void executeAsync_DelegateToExecute() throws Exception {
+        TelegramBot bot = mock(TelegramBot.class);
+        SendMessage request = new SendMessage(1L, "text");
+        SendResponse response = mock(SendResponse.class);
+        when(response.isOk()).thenReturn(true);
+
+        CompletableFuture<SendResponse> future = handler.executeAsync(bot, request);
+        handler.executeAsync(request);
+
+        assertEquals(List.of(bot, defaultBot), bots);
+        assertSame(request, callbacks.get(0).getRequest());
+        assertFalse(future.isDone());
+        callbacks.get(0).onResponse(request, response);
+        assertSame(response, future.get());
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.kshashov.telegram.handler;
+
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class UpdateBatcherTest {
+    private TelegramBot bot = mock(TelegramBot.class);
+    private String token = "token";
+    private BlockingQueue<List<Update>> batches = new LinkedBlockingQueue<>();
+
+    @Test
+    void offer_MaxSize_FlushImmediately() throws InterruptedException {
+        UpdateBatcher batcher = new UpdateBatcher(Duration.ofMinutes(1), 2, (t, b, u) -> batches.add(u));
+
+        Update first = mock(Update.class);
+        Update second = mock(Update.class);
+        batcher.offer(token, bot, first);
+        assertTrue(batches.isEmpty());
+        batcher.offer(token, bot, second);
+
+        assertEquals(List.of(first, second), batches.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void close_FlushCollectedBatches() {
+        UpdateBatcher batcher = new UpdateBatcher(Duration.ofMinutes(1), 10, (t, b, u) -> batches.add(u));
+
+        Update first = mock(Update.class);
+        batcher.offer(token, bot, first);
+        batcher.close();
+        assertEquals(List.of(List.of(first)), List.copyOf(batches));
+
+        // Updates received after the shutdown are delivered right away
+        Update second = mock(Update.class);
+        batcher.offer(token, bot, second);
+        assertEquals(List.of(second), batches.toArray()[1]);
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.kshashov.telegram.config.TelegramBotGlobalProperties;
+import com.github.kshashov.telegram.outbound.OutboundScheduler;
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.request.AnswerCallbackQuery;
+import com.pengrad.telegrambot.request.BaseRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static com.github.kshashov.telegram.TestUtils.callback;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CallbackCoalescingUpdateFilterTest {
+    private TelegramBot bot = mock(TelegramBot.class);
+    private String token = "token";
+
+    @Test
+    void filter_NotCallback_Accept() {
+        CallbackCoalescingUpdateFilter filter = CallbackCoalescingUpdateFilter.builder().build();
+
+        Update update = mock(Update.class);
+        assertTrue(filter.filter(token, bot, update));
+        assertTrue(filter.filter(token, bot, update));
+    }
+
+    @Test
+    void filter_InFlight_Acknowledge() {
+        CallbackCoalescingUpdateFilter filter = CallbackCoalescingUpdateFilter.builder()
+                .window(Duration.ZERO)
+                .build();
+
+        Update update = callback(1L, 2, "data");
+        assertTrue(filter.filter(token, bot, update));
+        assertFalse(filter.filter(token, bot, update));
+        verify(bot).execute(any(AnswerCallbackQuery.class), any());
+
+        // Other buttons are not affected
+        assertTrue(filter.filter(token, bot, callback(1L, 2, "other")));
+        assertTrue(filter.filter(token, bot, callback(1L, 3, "data")));
+
+        filter.afterCompletion(token, bot, update);
+        assertTrue(filter.filter(token, bot, update));
+    }
+
+    @Test
+    void filter_Window() throws InterruptedException {
+        CallbackCoalescingUpdateFilter filter = CallbackCoalescingUpdateFilter.builder()
+                .window(Duration.ofMillis(50))
+                .build();
+
+        Update update = callback(1L, 2, "data");
+        assertTrue(filter.filter(token, bot, update));
+        filter.afterCompletion(token, bot, update);
+        assertFalse(filter.filter(token, bot, update));
+
+        Thread.sleep(100);
+        assertTrue(filter.filter(token, bot, update));
+    }
+
+    @Test
+    void afterCompletion_ExpiredPress_KeepNewerPress() throws InterruptedException {
+        CallbackCoalescingUpdateFilter filter = CallbackCoalescingUpdateFilter.builder()
+                .window(Duration.ZERO)
+                .maxProcessingTime(Duration.ofMillis(20))
+                .build();
+
+        Update first = callback(1L, 2, "data");
+        assertTrue(filter.filter(token, bot, first));
+        Thread.sleep(50);
+
+        // The first press has been forgotten while still being processed
+        Update second = callback(1L, 2, "data");
+        assertTrue(filter.filter(token, bot, second));
+        filter.afterCompletion(token, bot, first);
+        assertFalse(filter.filter(token, bot, callback(1L, 2, "data")));
+
+        filter.afterCompletion(token, bot, second);
+        assertTrue(filter.filter(token, bot, callback(1L, 2, "data")));
+    }
+
+    @Test
+    void chain_RejectedBySubsequentFilter_Complete() {
+        CallbackCoalescingUpdateFilter filter = CallbackCoalescingUpdateFilter.builder()
+                .window(Duration.ZERO)
+                .build();
+        UpdateFilterChain chain = new UpdateFilterChain(Arrays.asList(filter, (t, b, u) -> false));
+
+        Update update = callback(1L, 2, "data");
+        assertFalse(chain.filter(token, bot, update));
+        assertTrue(filter.filter(token, bot, update));
+        verify(bot, never()).execute(any(AnswerCallbackQuery.class), any());
+    }
+
+    @Test
+    void filter_OutboundScheduler_AcknowledgeThroughScheduler() {
+        OutboundScheduler outboundScheduler = mock(OutboundScheduler.class);
+        CallbackCoalescingUpdateFilter filter = CallbackCoalescingUpdateFilter.builder().build();
+        TelegramBotGlobalProperties.builder()
+                .outboundScheduler(outboundScheduler)
+                .addUpdateFilter(filter)
+                .build();
+
+        Update update = callback(1L, 2, "data");
+        assertTrue(filter.filter(token, bot, update));
+        assertFalse(filter.filter(token, bot, update));
+
+        verify(outboundScheduler).execute(eq(bot), any(AnswerCallbackQuery.class), any(Callback.class));
+        verify(bot, never()).execute(any(BaseRequest.class), any(Callback.class));
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.github.kshashov.telegram.TestUtils.message;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ChatUpdateFilterTest {
+    private TelegramBot bot;
+    private String token = "token";
+
+    @BeforeEach
+    void init() {
+        bot = mock(TelegramBot.class);
+    }
+
+    @Test
+    void filter_Empty_Accept() {
+        ChatUpdateFilter filter = ChatUpdateFilter.builder().build();
+
+        assertTrue(filter.filter(token, bot, message(1L, 2L)));
+        assertTrue(filter.filter(token, bot, mock(Update.class)));
+    }
+
+    @Test
+    void filter_DeniedUser_Reject() {
+        ChatUpdateFilter filter = ChatUpdateFilter.builder()
+                .denyUsers(2L)
+                .build();
+
+        assertFalse(filter.filter(token, bot, message(1L, 2L)));
+        assertTrue(filter.filter(token, bot, message(1L, 3L)));
+    }
+
+    @Test
+    void filter_AllowedChats_RejectOthers() {
+        ChatUpdateFilter filter = ChatUpdateFilter.builder()
+                .allowChats(1L, 0L)
+                .build();
+
+        assertTrue(filter.filter(token, bot, message(1L, 2L)));
+        assertTrue(filter.filter(token, bot, message(0L, 2L)));
+        assertFalse(filter.filter(token, bot, message(5L, 2L)));
+        // Update without chat
+        assertTrue(filter.filter(token, bot, mock(Update.class)));
+    }
+
+    @Test
+    void filter_DenyHasPriority() {
+        ChatUpdateFilter filter = ChatUpdateFilter.builder()
+                .allowChats(1L)
+                .denyChats(1L)
+                .build();
+
+        assertFalse(filter.filter(token, bot, message(1L, 2L)));
+    }
+
+    @Test
+    void filter_ManyIds() {
+        ChatUpdateFilter.Builder builder = ChatUpdateFilter.builder();
+        for (long i = -1000; i < 1000; i++) {
+            builder.denyUsers(i * 31);
+        }
+        ChatUpdateFilter filter = builder.build();
+
+        for (long i = -1000; i < 1000; i++) {
+            assertFalse(filter.filter(token, bot, message(1L, i * 31)));
+        }
+        assertTrue(filter.filter(token, bot, message(1L, 30L)));
+    }
+}
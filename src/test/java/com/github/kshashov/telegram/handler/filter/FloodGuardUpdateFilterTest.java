@@ -0,0 +1,110 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.kshashov.telegram.api.MessageType;
+import com.github.kshashov.telegram.config.TelegramBotGlobalProperties;
+import com.github.kshashov.telegram.outbound.OutboundScheduler;
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.SendMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.kshashov.telegram.TestUtils.callback;
+import static com.github.kshashov.telegram.TestUtils.message;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class FloodGuardUpdateFilterTest {
+    private TelegramBot bot = mock(TelegramBot.class);
+    private String token = "token";
+
+    @Test
+    void filter_ExceedRate_Reject() {
+        AtomicInteger notifications = new AtomicInteger();
+        FloodGuardUpdateFilter filter = FloodGuardUpdateFilter.builder()
+                .defaultRate(3, Duration.ofHours(1), 3)
+                .throttleListener((b, u) -> notifications.incrementAndGet())
+                .build();
+
+        Update update = message(1L);
+        assertTrue(filter.filter(token, bot, update));
+        assertTrue(filter.filter(token, bot, update));
+        assertTrue(filter.filter(token, bot, update));
+        assertFalse(filter.filter(token, bot, update));
+        assertFalse(filter.filter(token, bot, update));
+        assertEquals(1, notifications.get());
+
+        // Other sessions are not affected
+        assertTrue(filter.filter(token, bot, message(2L)));
+        assertEquals(2, filter.size());
+    }
+
+    @Test
+    void filter_MessageTypeRate() {
+        FloodGuardUpdateFilter filter = FloodGuardUpdateFilter.builder()
+                .noDefaultRate()
+                .rate(MessageType.CALLBACK_QUERY, 1, Duration.ofHours(1), 1)
+                .build();
+
+        Update update = message(1L);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(filter.filter(token, bot, update));
+        }
+        assertEquals(0, filter.size());
+
+        Update callback = callback(1L);
+        assertTrue(filter.filter(token, bot, callback));
+        assertFalse(filter.filter(token, bot, callback));
+    }
+
+    @Test
+    void filter_Refill_Accept() throws InterruptedException {
+        FloodGuardUpdateFilter filter = FloodGuardUpdateFilter.builder()
+                .defaultRate(1, Duration.ofMillis(20), 1)
+                .build();
+
+        Update update = message(1L);
+        assertTrue(filter.filter(token, bot, update));
+        assertFalse(filter.filter(token, bot, update));
+        Thread.sleep(40);
+        assertTrue(filter.filter(token, bot, update));
+    }
+
+    @Test
+    void filter_MaximumSize_Bounded() {
+        FloodGuardUpdateFilter filter = FloodGuardUpdateFilter.builder()
+                .maximumSize(100)
+                .build();
+
+        for (long i = 0; i < 1000; i++) {
+            filter.filter(token, bot, message(i));
+        }
+        assertTrue(filter.size() <= 100);
+    }
+
+    @Test
+    void filter_ReplyListener_SendThroughOutboundScheduler() {
+        OutboundScheduler outboundScheduler = mock(OutboundScheduler.class);
+        FloodGuardUpdateFilter filter = FloodGuardUpdateFilter.builder()
+                .defaultRate(1, Duration.ofHours(1), 1)
+                .throttleListener(FloodGuardUpdateFilter.ThrottleListener.reply("Slow down"))
+                .build();
+        TelegramBotGlobalProperties.builder()
+                .outboundScheduler(outboundScheduler)
+                .addUpdateFilter(filter)
+                .build();
+
+        Update update = message(1L);
+        assertTrue(filter.filter(token, bot, update));
+        assertFalse(filter.filter(token, bot, update));
+
+        verify(outboundScheduler).execute(eq(bot), any(SendMessage.class), any(Callback.class));
+        verify(bot, never()).execute(any(BaseRequest.class), any(Callback.class));
+    }
+}
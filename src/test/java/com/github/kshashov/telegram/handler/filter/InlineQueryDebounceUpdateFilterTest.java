@@ -0,0 +1,90 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.kshashov.telegram.api.CancellationToken;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+
+import static com.github.kshashov.telegram.TestUtils.inlineQuery;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class InlineQueryDebounceUpdateFilterTest {
+    private TelegramBot bot = mock(TelegramBot.class);
+    private String token = "token";
+
+    @Test
+    void preHandle_NotInlineQuery_Accept() {
+        InlineQueryDebounceUpdateFilter filter = new InlineQueryDebounceUpdateFilter();
+
+        Update update = mock(Update.class);
+        assertTrue(filter.filter(token, bot, update));
+        assertTrue(filter.preHandle(token, bot, update));
+    }
+
+    @Test
+    void preHandle_Superseded_Skip() {
+        InlineQueryDebounceUpdateFilter filter = new InlineQueryDebounceUpdateFilter();
+
+        Update first = inlineQuery(1L, 10);
+        Update second = inlineQuery(1L, 11);
+        Update otherUser = inlineQuery(2L, 12);
+        assertTrue(filter.filter(token, bot, first));
+        assertTrue(filter.filter(token, bot, second));
+        assertTrue(filter.filter(token, bot, otherUser));
+
+        assertFalse(filter.preHandle(token, bot, first));
+        assertTrue(filter.preHandle(token, bot, second));
+        assertTrue(filter.preHandle(token, bot, otherUser));
+    }
+
+    @Test
+    void preHandle_OutOfOrder_KeepLatest() {
+        InlineQueryDebounceUpdateFilter filter = new InlineQueryDebounceUpdateFilter();
+
+        Update first = inlineQuery(1L, 10);
+        Update second = inlineQuery(1L, 11);
+        assertTrue(filter.filter(token, bot, second));
+        assertTrue(filter.filter(token, bot, first));
+
+        assertFalse(filter.preHandle(token, bot, first));
+        assertTrue(filter.preHandle(token, bot, second));
+    }
+
+    @Test
+    void preHandle_OtherBot_Accept() {
+        InlineQueryDebounceUpdateFilter filter = new InlineQueryDebounceUpdateFilter();
+        String otherToken = "other";
+
+        // Update ids of different bots are not related
+        Update first = inlineQuery(1L, 100);
+        Update otherBot = inlineQuery(1L, 10);
+        assertTrue(filter.filter(token, bot, first));
+        assertTrue(filter.filter(otherToken, bot, otherBot));
+
+        assertTrue(filter.preHandle(token, bot, first));
+        assertTrue(filter.preHandle(otherToken, bot, otherBot));
+        assertFalse(filter.getCancellationToken(otherToken, 1L, 10).isCancelled());
+
+        filter.filter(otherToken, bot, inlineQuery(1L, 11));
+        assertFalse(filter.preHandle(otherToken, bot, otherBot));
+        assertTrue(filter.preHandle(token, bot, first));
+    }
+
+    @Test
+    void getCancellationToken() {
+        InlineQueryDebounceUpdateFilter filter = new InlineQueryDebounceUpdateFilter();
+
+        filter.filter(token, bot, inlineQuery(1L, 10));
+        CancellationToken cancellationToken = filter.getCancellationToken(token, 1L, 10);
+        assertFalse(cancellationToken.isCancelled());
+        cancellationToken.throwIfCancelled();
+
+        filter.filter(token, bot, inlineQuery(1L, 11));
+        assertTrue(cancellationToken.isCancelled());
+        assertThrows(CancellationException.class, cancellationToken::throwIfCancelled);
+        assertFalse(filter.getCancellationToken(token, 1L, 11).isCancelled());
+    }
+}
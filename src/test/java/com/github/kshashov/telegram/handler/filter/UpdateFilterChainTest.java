@@ -0,0 +1,83 @@
+package com.github.kshashov.telegram.handler.filter;
+
+import com.github.kshashov.telegram.api.MessageType;
+import com.google.common.collect.Lists;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.model.Update;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.Ordered;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UpdateFilterChainTest {
+    private TelegramBot bot = mock(TelegramBot.class);
+    private String token = "token";
+
+    @Test
+    void filter_Empty_Accept() {
+        UpdateFilterChain chain = new UpdateFilterChain(new ArrayList<>());
+
+        assertTrue(chain.isEmpty());
+        assertTrue(chain.filter(token, bot, mock(Update.class)));
+    }
+
+    @Test
+    void filter_Ordered() {
+        List<String> invoked = new ArrayList<>();
+        UpdateFilterChain chain = new UpdateFilterChain(Lists.newArrayList(
+                new OrderedFilter(2, invoked, true),
+                new OrderedFilter(1, invoked, false)));
+
+        assertFalse(chain.filter(token, bot, mock(Update.class)));
+        assertEquals(Lists.newArrayList("1"), invoked);
+    }
+
+    @Test
+    void filter_FilterThrows_Accept() {
+        UpdateFilterChain chain = new UpdateFilterChain(Lists.newArrayList((t, b, u) -> {
+            throw new IllegalStateException();
+        }));
+
+        assertTrue(chain.filter(token, bot, mock(Update.class)));
+    }
+
+    @Test
+    void messageTypeFilter() {
+        Update update = mock(Update.class);
+        when(update.message()).thenReturn(mock(Message.class));
+
+        assertTrue(new MessageTypeUpdateFilter(MessageType.MESSAGE).filter(token, bot, update));
+        assertTrue(new MessageTypeUpdateFilter(MessageType.ANY).filter(token, bot, update));
+        assertFalse(new MessageTypeUpdateFilter(MessageType.CALLBACK_QUERY).filter(token, bot, update));
+        assertFalse(new MessageTypeUpdateFilter(MessageType.MESSAGE).filter(token, bot, mock(Update.class)));
+    }
+
+    private static class OrderedFilter implements UpdateFilter, Ordered {
+        private final int order;
+        private final List<String> invoked;
+        private final boolean result;
+
+        OrderedFilter(int order, List<String> invoked, boolean result) {
+            this.order = order;
+            this.invoked = invoked;
+            this.result = result;
+        }
+
+        @Override
+        public boolean filter(String token, TelegramBot bot, Update update) {
+            invoked.add(String.valueOf(order));
+            return result;
+        }
+
+        @Override
+        public int getOrder() {
+            return order;
+        }
+    }
+}
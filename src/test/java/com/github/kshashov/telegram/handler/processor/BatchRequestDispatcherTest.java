@@ -0,0 +1,107 @@
+package com.github.kshashov.telegram.handler.processor;
+
+import com.github.kshashov.telegram.TestUtils;
+import com.github.kshashov.telegram.api.TelegramRequest;
+import com.github.kshashov.telegram.handler.HandlerMethodContainer;
+import com.github.kshashov.telegram.metrics.MetricsService;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.CallbackQuery;
+import com.pengrad.telegrambot.model.Update;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class BatchRequestDispatcherTest {
+    private HandlerMethodContainer handlerMethodContainer;
+    private MetricsService metricsService;
+    private BatchRequestDispatcher dispatcher;
+    private TelegramBot bot = mock(TelegramBot.class);
+    private List<List<TelegramRequest>> batches = new ArrayList<>();
+    private TelegramBot receivedBot;
+
+    @BeforeEach
+    void init() {
+        handlerMethodContainer = mock(HandlerMethodContainer.class);
+        metricsService = mock(MetricsService.class);
+        dispatcher = new BatchRequestDispatcher(handlerMethodContainer, metricsService);
+    }
+
+    @Test
+    void execute_NoHandlers() {
+        when(handlerMethodContainer.lookupBatchHandlerMethods(any())).thenReturn(Collections.emptyList());
+
+        dispatcher.execute("", bot, List.of(mock(Update.class)));
+
+        assertEquals(0, batches.size());
+        verify(metricsService, never()).onMethodHandlerStarted(any());
+    }
+
+    @Test
+    void execute_InvokeOncePerBatch() {
+        HandlerMethod method = new HandlerMethod(this, TestUtils.findMethodByTitle(this, "batch"));
+        when(handlerMethodContainer.lookupBatchHandlerMethods(any()))
+                .thenReturn(List.of(new HandlerMethodContainer.HandlerLookupResult(method, "**", new HashMap<>())));
+
+        Update update1 = mock(Update.class);
+        Update update2 = mock(Update.class);
+        dispatcher.execute("", bot, List.of(update1, update2));
+
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertSame(update1, batches.get(0).get(0).getUpdate());
+        assertSame(update2, batches.get(0).get(1).getUpdate());
+        assertSame(bot, receivedBot);
+        verify(metricsService).onUpdateSuccess(eq(method), any());
+    }
+
+    @Test
+    void execute_ExceptionInHandler_OtherHandlersInvoked() {
+        HandlerMethod failed = new HandlerMethod(this, TestUtils.findMethodByTitle(this, "batchThrows"));
+        HandlerMethod method = new HandlerMethod(this, TestUtils.findMethodByTitle(this, "batch"));
+        when(handlerMethodContainer.lookupBatchHandlerMethods(any())).thenReturn(List.of(
+                new HandlerMethodContainer.HandlerLookupResult(failed, "**", new HashMap<>()),
+                new HandlerMethodContainer.HandlerLookupResult(method, "**", new HashMap<>())));
+
+        dispatcher.execute("", bot, List.of(mock(Update.class)));
+
+        assertEquals(1, batches.size());
+        verify(metricsService).onUpdateError(failed);
+        verify(metricsService).onUpdateSuccess(eq(method), any());
+    }
+
+    @Test
+    void execute_InvalidUpdate_Skip() {
+        HandlerMethod method = new HandlerMethod(this, TestUtils.findMethodByTitle(this, "batch"));
+        when(handlerMethodContainer.lookupBatchHandlerMethods(any()))
+                .thenReturn(List.of(new HandlerMethodContainer.HandlerLookupResult(method, "**", new HashMap<>())));
+
+        // Callback query of the inline message has no message
+        Update inlineCallback = mock(Update.class);
+        when(inlineCallback.callbackQuery()).thenReturn(mock(CallbackQuery.class));
+        Update update = mock(Update.class);
+        dispatcher.execute("", bot, List.of(inlineCallback, update));
+
+        assertEquals(1, batches.size());
+        assertEquals(1, batches.get(0).size());
+        assertSame(update, batches.get(0).get(0).getUpdate());
+        verify(metricsService).onUpdateError();
+    }
+
+    public void batch(List<TelegramRequest> requests, TelegramBot bot) {
+        batches.add(requests);
+        receivedBot = bot;
+    }
+
+    public void batchThrows(List<TelegramRequest> requests) {
+        throw new IllegalArgumentException();
+    }
+}
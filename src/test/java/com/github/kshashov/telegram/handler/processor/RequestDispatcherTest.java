@@ -4,6 +4,8 @@ import com.github.kshashov.telegram.TelegramSessionResolver;
 import com.github.kshashov.telegram.TestUtils;
 import com.github.kshashov.telegram.api.TelegramSession;
 import com.github.kshashov.telegram.handler.HandlerMethodContainer;
+import com.github.kshashov.telegram.handler.MessageWaiterRegistry;
+import com.github.kshashov.telegram.handler.StateTransition;
 import com.github.kshashov.telegram.handler.processor.arguments.BotHandlerMethodArgumentResolver;
 import com.github.kshashov.telegram.handler.processor.arguments.BotRequestMethodArgumentResolver;
 import com.github.kshashov.telegram.handler.processor.response.BotBaseRequestMethodProcessor;
@@ -16,6 +18,7 @@ import com.pengrad.telegrambot.request.SendMessage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.HashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,6 +34,7 @@ public class RequestDispatcherTest {
     private TelegramSessionResolver.TelegramSessionHolder sessionHolder;
     private SendMessage sendMessage = new SendMessage(12, "text");
     private MetricsService metricsService;
+    private TelegramSession session;
 
     @BeforeEach
     void init() {
@@ -40,7 +44,7 @@ public class RequestDispatcherTest {
         argumentResolver = new BotRequestMethodArgumentResolver();
         returnValueHandler = new BotBaseRequestMethodProcessor();
 
-        TelegramSession session = mock(TelegramSession.class);
+        session = mock(TelegramSession.class);
         sessionHolder = mock(TelegramSessionResolver.TelegramSessionHolder.class);
         when(sessionHolder.getSession()).thenReturn(session);
         when(sessionResolver.resolveTelegramSession(any())).thenReturn(sessionHolder);
@@ -53,7 +57,7 @@ public class RequestDispatcherTest {
 
     @Test
     void execute_HandlerNotFound_ReturnNull() throws Exception {
-        when(handlerMethodContainer.lookupHandlerMethod(any())).thenReturn(new HandlerMethodContainer.HandlerLookupResult());
+        when(handlerMethodContainer.lookupHandlerMethod(any(), any())).thenReturn(new HandlerMethodContainer.HandlerLookupResult());
         TelegramCallback result = doExecute();
 
         assertNull(result);
@@ -68,7 +72,7 @@ public class RequestDispatcherTest {
                 "pattern",
                 new HashMap<>()
         );
-        when(handlerMethodContainer.lookupHandlerMethod(any())).thenReturn(lookupResult);
+        when(handlerMethodContainer.lookupHandlerMethod(any(), any())).thenReturn(lookupResult);
         assertThrows(Exception.class, this::doExecute);
 
         verify(sessionResolver).resolveTelegramSession(any());
@@ -82,7 +86,7 @@ public class RequestDispatcherTest {
                 "pattern",
                 new HashMap<>()
         );
-        when(handlerMethodContainer.lookupHandlerMethod(any())).thenReturn(lookupResult);
+        when(handlerMethodContainer.lookupHandlerMethod(any(), any())).thenReturn(lookupResult);
         TelegramCallback result = doExecute();
 
         assertNull(result);
@@ -98,7 +102,7 @@ public class RequestDispatcherTest {
                 "pattern",
                 new HashMap<>()
         );
-        when(handlerMethodContainer.lookupHandlerMethod(any())).thenReturn(lookupResult);
+        when(handlerMethodContainer.lookupHandlerMethod(any(), any())).thenReturn(lookupResult);
         TelegramCallback result = doExecute();
 
         assertNotNull(result);
@@ -109,6 +113,52 @@ public class RequestDispatcherTest {
         verify(sessionHolder).releaseSessionId();
     }
 
+    @Test
+    void execute_BotState_LookupByStateAndApplyTransition() throws Exception {
+        HandlerMethodContainer.HandlerLookupResult lookupResult = new HandlerMethodContainer.HandlerLookupResult(
+                new HandlerMethod(this, TestUtils.findMethodByTitle(this, "method")),
+                "pattern",
+                new HashMap<>()
+        );
+        when(session.getState()).thenReturn("first");
+        when(handlerMethodContainer.lookupHandlerMethod(any(), eq("first"))).thenReturn(lookupResult);
+        when(handlerMethodContainer.getStateTransition(lookupResult.getHandlerMethod())).thenReturn(new StateTransition("second", null));
+        doExecute();
+
+        verify(session).setState("second", (Duration) null);
+    }
+
+    @Test
+    void execute_BotStateExceptionInHandler_KeepState() {
+        HandlerMethodContainer.HandlerLookupResult lookupResult = new HandlerMethodContainer.HandlerLookupResult(
+                new HandlerMethod(this, TestUtils.findMethodByTitle(this, "methodThrows")),
+                "pattern",
+                new HashMap<>()
+        );
+        when(handlerMethodContainer.lookupHandlerMethod(any(), any())).thenReturn(lookupResult);
+        when(handlerMethodContainer.getStateTransition(lookupResult.getHandlerMethod())).thenReturn(new StateTransition("second", null));
+        assertThrows(Exception.class, this::doExecute);
+
+        verify(session, never()).setState(any(), nullable(Duration.class));
+    }
+
+    @Test
+    void execute_MessageWaiter_SkipHandlers() {
+        MessageWaiterRegistry messageWaiters = mock(MessageWaiterRegistry.class);
+        when(messageWaiters.deliver(telegramEvent)).thenReturn(true);
+        RequestDispatcher dispatcher = new RequestDispatcher(
+                handlerMethodContainer,
+                sessionResolver,
+                argumentResolver,
+                returnValueHandler,
+                metricsService,
+                messageWaiters);
+
+        assertNull(dispatcher.execute(telegramEvent));
+        verify(handlerMethodContainer, never()).lookupHandlerMethod(any(), any());
+        verify(sessionHolder).releaseSessionId();
+    }
+
     TelegramCallback doExecute() throws Exception {
         RequestDispatcher dispatcher = new RequestDispatcher(
                 handlerMethodContainer,
@@ -6,6 +6,8 @@ import com.pengrad.telegrambot.model.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.mock;
@@ -58,6 +60,24 @@ public class TelegramEventTest {
         assertEquals("test", event.getText());
     }
 
+    @Test
+    void mediaMessage() {
+        Message message = mock(Message.class);
+        when(message.chat()).thenReturn(chat);
+        when(message.from()).thenReturn(user);
+        when(message.caption()).thenReturn("caption@bot");
+
+        when(update.message()).thenReturn(message);
+        TelegramEvent event = new TelegramEvent(token, update, bot, List.of(message));
+
+        assertEquals(MessageType.MESSAGE, event.getMessageType());
+        assertEquals("caption", event.getText());
+        assertEquals(List.of(message), event.getMediaGroup());
+
+        when(message.caption()).thenReturn(null);
+        assertNull(new TelegramEvent(token, update, bot).getText());
+    }
+
     @Test
     void editedMessage() {
         Message message = mock(Message.class);
@@ -0,0 +1,145 @@
+package com.github.kshashov.telegram.outbound;
+
+import com.github.kshashov.telegram.handler.processor.Template;
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.IContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BroadcastServiceTest {
+    private final TelegramBot bot = mock(TelegramBot.class);
+    private final ITemplateEngine templateEngine = mock(ITemplateEngine.class);
+    private final List<Long> sent = new CopyOnWriteArrayList<>();
+    private final OutboundScheduler scheduler = OutboundScheduler.builder()
+            .botRate(1000, Duration.ofSeconds(1))
+            .build();
+    @TempDir
+    Path dir;
+
+    {
+        SendResponse ok = response(200);
+        SendResponse forbidden = response(403);
+        doAnswer(invocation -> {
+            SendMessage message = invocation.getArgument(0);
+            Callback<SendMessage, SendResponse> callback = invocation.getArgument(1);
+            long chatId = (Long) message.getParameters().get("chat_id");
+            sent.add(chatId);
+            callback.onResponse(message, (chatId == 3L) ? forbidden : ok);
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        when(templateEngine.process(eq("template"), any(IContext.class))).thenReturn("text");
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void broadcast() throws Exception {
+        BroadcastService service = new BroadcastService(bot, scheduler, templateEngine, dir, 2);
+
+        Broadcast broadcast = service.broadcast("news", Stream.of(1L, 2L, 3L, 4L), chatId -> new Template.Html<>("template", "model"));
+        broadcast.getCompletion().get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), sent.stream().sorted().toList());
+        assertEquals(3, broadcast.getSent());
+        assertEquals(1, broadcast.getBlocked());
+        assertEquals(0, broadcast.getFailed());
+        assertEquals(List.of("3"), Files.readAllLines(broadcast.getBlockedFile()));
+        assertEquals("4", Files.readString(dir.resolve("news.checkpoint")));
+
+        // The template is rendered once for all chats
+        verify(templateEngine, times(1)).process(eq("template"), any(IContext.class));
+    }
+
+    @Test
+    void broadcast_Checkpoint_Resume() throws Exception {
+        Files.writeString(dir.resolve("news.checkpoint"), "2");
+        BroadcastService service = new BroadcastService(bot, scheduler, templateEngine, dir, 2);
+
+        Broadcast broadcast = service.broadcast("news", Stream.of(1L, 2L, 4L, 5L), chatId -> new Template.Html<>("template", "model"));
+        broadcast.getCompletion().get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(4L, 5L), sent.stream().sorted().toList());
+        assertEquals("4", Files.readString(dir.resolve("news.checkpoint")));
+    }
+
+    @Test
+    void broadcast_QueueIsFull_SendAgain() throws Exception {
+        OutboundScheduler limited = OutboundScheduler.builder()
+                .botRate(1, Duration.ofMillis(50))
+                .maxQueueSize(1)
+                .build();
+        BroadcastService service = new BroadcastService(bot, limited, templateEngine, dir, 4);
+
+        try {
+            Broadcast broadcast = service.broadcast("news", Stream.of(1L, 2L, 4L, 5L, 6L, 7L), chatId -> new Template.Html<>("template", "model"));
+            broadcast.getCompletion().get(10, TimeUnit.SECONDS);
+
+            assertEquals(List.of(1L, 2L, 4L, 5L, 6L, 7L), sent.stream().sorted().toList());
+            assertEquals(6, broadcast.getSent());
+            assertEquals(0, broadcast.getFailed());
+            assertEquals("6", Files.readString(dir.resolve("news.checkpoint")));
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    @Test
+    void broadcast_SchedulerShutdown_Cancel() throws Exception {
+        scheduler.shutdown();
+        BroadcastService service = new BroadcastService(bot, scheduler, templateEngine, dir, 2);
+
+        Broadcast broadcast = service.broadcast("news", Stream.of(1L, 2L, 4L), chatId -> new Template.Html<>("template", "model"));
+        assertThrows(CancellationException.class, () -> broadcast.getCompletion().get(5, TimeUnit.SECONDS));
+
+        // The checkpoint is left at the first message that has not been sent
+        assertTrue(sent.isEmpty());
+        assertEquals("0", Files.readString(dir.resolve("news.checkpoint")));
+    }
+
+    @Test
+    void broadcast_Pause() throws Exception {
+        BroadcastService service = new BroadcastService(bot, scheduler, templateEngine, dir, 2);
+
+        Broadcast broadcast = service.broadcast("news", Stream.iterate(10L, id -> id + 1).limit(10_000), chatId -> new Template.Html<>("template", "model"));
+        broadcast.pause();
+        Thread.sleep(100);
+        int count = sent.size();
+        Thread.sleep(100);
+        assertEquals(count, sent.size());
+        assertTrue(count < 10_000);
+
+        broadcast.resume();
+        broadcast.getCompletion().get(20, TimeUnit.SECONDS);
+        assertEquals(10_000, sent.size());
+    }
+
+    private SendResponse response(int code) {
+        SendResponse response = mock(SendResponse.class);
+        when(response.isOk()).thenReturn(code == 200);
+        when(response.errorCode()).thenReturn(code);
+        return response;
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.kshashov.telegram.outbound;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(10);
+    private static final long OPEN = TimeUnit.SECONDS.toNanos(30);
+    private final CircuitBreaker breaker = new CircuitBreaker(0.5, SLOW, OPEN);
+
+    @Test
+    void onResult_FailureRateReached_Open() {
+        for (int i = 0; i < 5; i++) {
+            breaker.onResult(0, false, false, false, 0);
+            breaker.onResult(0, true, false, false, 0);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(OPEN, breaker.waitNanos(0));
+    }
+
+    @Test
+    void onResult_NotEnoughCalls_StayClosed() {
+        for (int i = 0; i < 9; i++) {
+            breaker.onResult(0, true, false, false, 0);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.waitNanos(0));
+    }
+
+    @Test
+    void onResult_SlowCalls_Open() {
+        for (int i = 0; i < 10; i++) {
+            breaker.onResult(SLOW, false, false, false, 0);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void onResult_SlowUploads_StayClosed() {
+        for (int i = 0; i < 10; i++) {
+            breaker.onResult(SLOW, false, true, false, 0);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // Uploads are still counted once they fail
+        for (int i = 0; i < 10; i++) {
+            breaker.onResult(SLOW, true, true, false, 0);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void onResult_OldFailuresLeaveWindow_StayClosed() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onResult(0, true, false, false, 0);
+        }
+        for (int i = 0; i < 15; i++) {
+            breaker.onResult(0, false, false, false, 0);
+        }
+        // 9 failures among the last 20 calls, the first ones are forgotten
+        for (int i = 0; i < 9; i++) {
+            breaker.onResult(0, true, false, false, 0);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void halfOpen_ProbeSucceeded_Close() {
+        open();
+
+        assertEquals(0, breaker.waitNanos(OPEN));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.onSend());
+        assertEquals(Long.MAX_VALUE, breaker.waitNanos(OPEN));
+
+        // Late results of the requests sent before the breaker opened are ignored
+        breaker.onResult(0, false, false, false, OPEN);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onResult(0, false, false, true, OPEN);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertFalse(breaker.onSend());
+    }
+
+    @Test
+    void halfOpen_ProbeFailed_Open() {
+        open();
+        breaker.waitNanos(OPEN);
+        breaker.onSend();
+
+        breaker.onResult(0, true, false, true, OPEN);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(OPEN, breaker.waitNanos(OPEN));
+    }
+
+    private void open() {
+        for (int i = 0; i < 10; i++) {
+            breaker.onResult(0, true, false, false, 0);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.kshashov.telegram.outbound;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GradientLimitTest {
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void onSample_StableLatency_Grow() {
+        GradientLimit limit = new GradientLimit(10, 1, 50);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(RTT, limit.getLimit(), false);
+        }
+        assertEquals(50, limit.getLimit());
+    }
+
+    @Test
+    void onSample_LimitNotReached_Keep() {
+        GradientLimit limit = new GradientLimit(10, 1, 50);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(RTT, 1, false);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    void onSample_LatencyRises_Shrink() {
+        GradientLimit limit = new GradientLimit(40, 1, 50);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(RTT, limit.getLimit(), false);
+        }
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(RTT * 10, limit.getLimit(), false);
+        }
+        assertTrue(limit.getLimit() < 20, "Limit is " + limit.getLimit());
+    }
+
+    @Test
+    void onSample_Dropped_Shrink() {
+        GradientLimit limit = new GradientLimit(10, 2, 50);
+        limit.onSample(0, 10, true);
+        assertEquals(9, limit.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(0, 10, true);
+        }
+        assertEquals(2, limit.getLimit());
+    }
+}
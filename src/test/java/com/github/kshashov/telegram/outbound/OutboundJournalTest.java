@@ -0,0 +1,178 @@
+package com.github.kshashov.telegram.outbound;
+
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.request.ParseMode;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.BaseResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class OutboundJournalTest {
+    private final TelegramBot bot = mock(TelegramBot.class);
+    @TempDir
+    Path dir;
+
+    {
+        when(bot.getToken()).thenReturn("123:secret");
+    }
+
+    @Test
+    void complete_RemoveFromJournal() throws IOException {
+        OutboundJournal journal = new OutboundJournal(dir, 1024);
+        long position = journal.append(journal.encode(bot, new SendMessage(1L, "text"), OutboundPriority.DEFAULT));
+        assertEquals(1, journal.size());
+
+        journal.complete(position);
+        assertEquals(0, journal.size());
+        journal.close();
+
+        assertTrue(new OutboundJournal(dir, 1024).takeRecovered().isEmpty());
+    }
+
+    @Test
+    void recover_PendingRequests() throws IOException {
+        OutboundJournal journal = new OutboundJournal(dir, 1024);
+        journal.append(journal.encode(bot, new SendMessage(1L, "first").parseMode(ParseMode.HTML), OutboundPriority.DEFAULT));
+        long position = journal.append(journal.encode(bot, new SendMessage(2L, "second"), OutboundPriority.BULK));
+        journal.complete(position);
+        journal.close();
+
+        OutboundJournal restored = new OutboundJournal(dir, 1024);
+        List<OutboundJournal.Entry> entries = restored.takeRecovered();
+        assertEquals(1, entries.size());
+        OutboundJournal.Entry entry = entries.get(0);
+        assertEquals(123L, entry.botId());
+        assertEquals(OutboundPriority.DEFAULT, entry.priority());
+        assertEquals("sendMessage", entry.method());
+        assertEquals(Map.of("chat_id", "1", "text", "first", "parse_mode", "HTML"), entry.parameters());
+
+        // Each request is recovered once
+        assertTrue(restored.takeRecovered().isEmpty());
+        assertEquals(1, restored.size());
+    }
+
+    @Test
+    void complete_AllRecordsOfSegment_DeleteSegment() throws IOException {
+        OutboundJournal journal = new OutboundJournal(dir, 256);
+        long[] positions = new long[20];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = journal.append(journal.encode(bot, new SendMessage(1L, "text " + i), OutboundPriority.DEFAULT));
+        }
+        assertTrue(segmentsCount() > 1);
+
+        for (long position : positions) {
+            journal.complete(position);
+        }
+        assertEquals(1, segmentsCount());
+    }
+
+    @Test
+    void append_RollOverEmptyActiveSegment_DeleteSegment() throws IOException {
+        OutboundJournal journal = new OutboundJournal(dir, 256);
+        for (int i = 0; i < 20; i++) {
+            // Each request is delivered before the next one is queued
+            journal.complete(journal.append(journal.encode(bot, new SendMessage(1L, "text " + i), OutboundPriority.DEFAULT)));
+            assertEquals(1, segmentsCount());
+        }
+        assertEquals(0, journal.size());
+
+        journal.append(journal.encode(bot, new SendMessage(1L, "pending"), OutboundPriority.DEFAULT));
+        journal.close();
+        List<OutboundJournal.Entry> entries = new OutboundJournal(dir, 256).takeRecovered();
+        assertEquals(1, entries.size());
+        assertEquals("pending", entries.get(0).parameters().get("text"));
+    }
+
+    @Test
+    void deadLetter() throws IOException {
+        OutboundJournal journal = new OutboundJournal(dir, 1024);
+        long position = journal.append(journal.encode(bot, new SendMessage(1L, "text"), OutboundPriority.DEFAULT));
+
+        journal.deadLetter(position, "400 Bad Request");
+
+        assertEquals(0, journal.size());
+        List<OutboundJournal.DeadLetter> deadLetters = journal.deadLetters();
+        assertEquals(1, deadLetters.size());
+        assertEquals("sendMessage", deadLetters.get(0).method());
+        assertEquals("text", deadLetters.get(0).parameters().get("text"));
+        assertEquals("400 Bad Request", deadLetters.get(0).error());
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void replay_UndeliveredRequests() throws Exception {
+        OutboundJournal journal = new OutboundJournal(dir, 1024);
+        OutboundScheduler scheduler = OutboundScheduler.builder().journal(journal).build();
+        // The bot does not respond before the shutdown
+        scheduler.execute(bot, new SendMessage(1L, "first"), mock(Callback.class));
+        scheduler.execute(bot, new SendMessage(1L, "second"), mock(Callback.class));
+        scheduler.shutdown();
+        journal.close();
+
+        List<BaseRequest> sent = new CopyOnWriteArrayList<>();
+        BaseResponse ok = mock(BaseResponse.class);
+        when(ok.isOk()).thenReturn(true);
+        TelegramBot restarted = mock(TelegramBot.class);
+        when(restarted.getToken()).thenReturn("123:secret");
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            ((Callback) invocation.getArgument(1)).onResponse(invocation.getArgument(0), ok);
+            return null;
+        }).when(restarted).execute(any(BaseRequest.class), any(Callback.class));
+
+        journal = new OutboundJournal(dir, 1024);
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(100, Duration.ofSeconds(1))
+                .journal(journal)
+                .build();
+        assertEquals(2, scheduler.replay(List.of(restarted)));
+        assertTrue(scheduler.shutdown(Duration.ofSeconds(5)));
+
+        assertEquals(List.of("first", "second"), sent.stream().map(r -> r.getParameters().get("text")).toList());
+        assertEquals("sendMessage", sent.get(0).getMethod());
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void execute_ClientError_DeadLetter() throws Exception {
+        BaseResponse badRequest = mock(BaseResponse.class);
+        when(badRequest.errorCode()).thenReturn(400);
+        when(badRequest.description()).thenReturn("Bad Request: message text is empty");
+        doAnswer(invocation -> {
+            ((Callback) invocation.getArgument(1)).onResponse(invocation.getArgument(0), badRequest);
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        OutboundJournal journal = new OutboundJournal(dir, 1024);
+        OutboundScheduler scheduler = OutboundScheduler.builder().journal(journal).build();
+
+        scheduler.execute(bot, new SendMessage(1L, ""), mock(Callback.class));
+        assertTrue(scheduler.shutdown(Duration.ofSeconds(5)));
+
+        assertEquals(0, journal.size());
+        List<OutboundJournal.DeadLetter> deadLetters = journal.deadLetters();
+        assertEquals(1, deadLetters.size());
+        assertEquals("400 Bad Request: message text is empty", deadLetters.get(0).error());
+    }
+
+    private long segmentsCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(OutboundJournal.SEGMENT_SUFFIX)).count();
+        }
+    }
+}
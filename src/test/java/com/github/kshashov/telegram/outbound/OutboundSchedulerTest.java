@@ -0,0 +1,682 @@
+package com.github.kshashov.telegram.outbound;
+
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.ResponseParameters;
+import com.pengrad.telegrambot.model.request.ChatAction;
+import com.pengrad.telegrambot.model.request.InlineKeyboardMarkup;
+import com.pengrad.telegrambot.request.AnswerCallbackQuery;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.EditMessageReplyMarkup;
+import com.pengrad.telegrambot.request.EditMessageText;
+import com.pengrad.telegrambot.request.GetChat;
+import com.pengrad.telegrambot.request.SendChatAction;
+import com.pengrad.telegrambot.request.SendDocument;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.BaseResponse;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OutboundSchedulerTest {
+    private final TelegramBot bot = mock(TelegramBot.class);
+    private final List<SendMessage> sent = new CopyOnWriteArrayList<>();
+    private final List<IOException> failures = new CopyOnWriteArrayList<>();
+    private final List<SendResponse> responses = new CopyOnWriteArrayList<>();
+    private final Semaphore executed = new Semaphore(0);
+    private final Semaphore completed = new Semaphore(0);
+    private final Callback<SendMessage, SendResponse> callback = new Callback<>() {
+        @Override
+        public void onResponse(SendMessage request, SendResponse response) {
+            responses.add(response);
+            completed.release();
+        }
+
+        @Override
+        public void onFailure(SendMessage request, IOException e) {
+            failures.add(e);
+            completed.release();
+        }
+    };
+    @SuppressWarnings("rawtypes")
+    private final Callback anyCallback = new Callback() {
+        @Override
+        public void onResponse(BaseRequest request, BaseResponse response) {
+            completed.release();
+        }
+
+        @Override
+        public void onFailure(BaseRequest request, IOException e) {
+            failures.add(e);
+            completed.release();
+        }
+    };
+    private OutboundScheduler scheduler;
+
+    {
+        SendResponse ok = response(200, null);
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            Callback<SendMessage, SendResponse> c = invocation.getArgument(1);
+            c.onResponse(invocation.getArgument(0), ok);
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void execute_ChatRate_DelayChatOnly() throws InterruptedException {
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(1, Duration.ofHours(1))
+                .build();
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+        scheduler.execute(bot, new SendMessage(1L, "2"), callback);
+        scheduler.execute(bot, new SendMessage(2L, "3"), callback);
+        awaitExecuted(2);
+
+        assertEquals(List.of("1", "3"), texts());
+        assertEquals(1, scheduler.size());
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    void execute_GroupChatRate() throws InterruptedException {
+        scheduler = OutboundScheduler.builder()
+                .groupChatRate(2, Duration.ofHours(1))
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.execute(bot, new SendMessage(-1L, "group"), callback);
+            scheduler.execute(bot, new SendMessage("@channel", "channel"), callback);
+        }
+        awaitExecuted(4);
+
+        assertEquals(4, sent.size());
+        assertEquals(2, scheduler.size());
+    }
+
+    @Test
+    void execute_BotRate_RoundRobin() throws InterruptedException {
+        scheduler = OutboundScheduler.builder()
+                .botRate(1, Duration.ofMillis(100))
+                .privateChatRate(100, Duration.ofSeconds(1))
+                .build();
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+        scheduler.execute(bot, new SendMessage(1L, "2"), callback);
+        scheduler.execute(bot, new SendMessage(1L, "3"), callback);
+        scheduler.execute(bot, new SendMessage(2L, "4"), callback);
+        awaitExecuted(4);
+
+        // The second chat is served before the third request of the first chat
+        List<String> texts = texts();
+        assertEquals(4, texts.size());
+        assertEquals("1", texts.get(0));
+        assertEquals("3", texts.get(3));
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void execute_OneRequestPerChatInFlight() throws InterruptedException {
+        List<Callback> callbacks = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            callbacks.add(invocation.getArgument(1));
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(100, Duration.ofSeconds(1))
+                .build();
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+        scheduler.execute(bot, new SendMessage(1L, "2"), callback);
+        scheduler.execute(bot, new SendMessage(2L, "3"), callback);
+        awaitExecuted(2);
+
+        // The second request waits for the response to the first one
+        assertEquals(List.of("1", "3"), texts());
+        callbacks.get(0).onResponse(sent.get(0), response(200, null));
+        awaitExecuted(1);
+        assertEquals(List.of("1", "3", "2"), texts());
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void execute_NotMessageRequests_NotChargedToChat() throws InterruptedException {
+        List<BaseRequest> requests = new CopyOnWriteArrayList<>();
+        BaseResponse ok = response(200, null);
+        doAnswer(invocation -> {
+            requests.add(invocation.getArgument(0));
+            ((Callback) invocation.getArgument(1)).onResponse(invocation.getArgument(0), ok);
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(1, Duration.ofHours(1))
+                .build();
+
+        scheduler.execute(bot, new SendChatAction(1L, ChatAction.typing), anyCallback);
+        scheduler.execute(bot, new GetChat(1L), anyCallback);
+        scheduler.execute(bot, new SendMessage(1L, "1"), anyCallback);
+        scheduler.execute(bot, new SendMessage(1L, "2"), anyCallback);
+        awaitExecuted(3);
+
+        // Only the messages are limited by the chat rate
+        assertEquals(3, requests.size());
+        assertEquals(1, scheduler.size());
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void execute_ChatlessRequests_NotLimitedByChatQueueSize() throws InterruptedException {
+        List<BaseRequest> requests = new CopyOnWriteArrayList<>();
+        BaseResponse ok = response(200, null);
+        doAnswer(invocation -> {
+            requests.add(invocation.getArgument(0));
+            ((Callback) invocation.getArgument(1)).onResponse(invocation.getArgument(0), ok);
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder()
+                .botRate(1, Duration.ofHours(1))
+                .maxChatQueueSize(1)
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.execute(bot, new AnswerCallbackQuery("query" + i), anyCallback);
+        }
+        awaitExecuted(1);
+
+        assertEquals(2, scheduler.size());
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void execute_ChatlessRetry_OtherChatlessNotPaused() throws InterruptedException {
+        AnswerCallbackQuery limited = new AnswerCallbackQuery("limited");
+        SendResponse tooManyRequests = response(429, 60);
+        SendResponse ok = response(200, null);
+        List<BaseRequest> requests = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            BaseRequest request = invocation.getArgument(0);
+            requests.add(request);
+            ((Callback) invocation.getArgument(1)).onResponse(request, (request == limited) ? tooManyRequests : ok);
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder().build();
+
+        scheduler.execute(bot, limited, anyCallback);
+        awaitExecuted(1);
+        scheduler.execute(bot, new AnswerCallbackQuery("other"), anyCallback);
+        awaitExecuted(1);
+
+        // The limited answer waits for retry_after on its own
+        assertEquals(2, requests.size());
+        awaitCompleted(1);
+        assertTrue(failures.isEmpty());
+        assertEquals(1, scheduler.size());
+    }
+
+    @Test
+    void execute_QueueIsFull_Reject() throws InterruptedException {
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(1, Duration.ofHours(1))
+                .maxChatQueueSize(1)
+                .build();
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+        awaitExecuted(1);
+        scheduler.execute(bot, new SendMessage(1L, "2"), callback);
+        scheduler.execute(bot, new SendMessage(1L, "3"), callback);
+
+        assertEquals(1, sent.size());
+        assertEquals(1, scheduler.size());
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof OutboundRejectedException);
+    }
+
+    @Test
+    void shutdown_RejectQueued() throws InterruptedException {
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(1, Duration.ofHours(1))
+                .build();
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+        scheduler.execute(bot, new SendMessage(1L, "2"), callback);
+        awaitExecuted(1);
+        scheduler.shutdown();
+        scheduler.execute(bot, new SendMessage(2L, "3"), callback);
+
+        assertEquals(1, sent.size());
+        assertEquals(0, scheduler.size());
+        assertEquals(2, failures.size());
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void shutdownWithTimeout_SendQueued() throws InterruptedException {
+        List<Callback> inFlight = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            inFlight.add(invocation.getArgument(1));
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(100, Duration.ofSeconds(1))
+                .build();
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+        scheduler.execute(bot, new SendMessage(1L, "2"), callback);
+        CountDownLatch stopped = new CountDownLatch(1);
+        AtomicBoolean drained = new AtomicBoolean();
+        new Thread(() -> {
+            drained.set(scheduler.shutdown(Duration.ofSeconds(5)));
+            stopped.countDown();
+        }).start();
+
+        // Requests are sent until the queue is empty
+        awaitExecuted(1);
+        inFlight.get(0).onResponse(sent.get(0), response(200, null));
+        awaitExecuted(1);
+        inFlight.get(1).onResponse(sent.get(1), response(200, null));
+        assertTrue(stopped.await(1, TimeUnit.SECONDS));
+        assertTrue(drained.get());
+        assertEquals(2, responses.size());
+        assertTrue(failures.isEmpty());
+    }
+
+    @Test
+    void shutdownWithTimeout_RejectRest() {
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(1, Duration.ofHours(1))
+                .build();
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+        scheduler.execute(bot, new SendMessage(1L, "2"), callback);
+
+        assertFalse(scheduler.shutdown(Duration.ofMillis(100)));
+        assertEquals(1, sent.size());
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof OutboundRejectedException);
+    }
+
+    @Test
+    void execute_TooManyRequests_RetryAfter() throws InterruptedException {
+        SendResponse tooManyRequests = response(429, 0);
+        SendResponse ok = response(200, null);
+        AtomicInteger attempts = new AtomicInteger();
+        List<Integer> retries = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            Callback<SendMessage, SendResponse> c = invocation.getArgument(1);
+            c.onResponse(invocation.getArgument(0), (attempts.incrementAndGet() == 1) ? tooManyRequests : ok);
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder().build();
+        scheduler.addListener(new OutboundListener() {
+            @Override
+            public void onRetry(BaseRequest<?, ?> request, int attempt, Duration delay) {
+                retries.add(attempt);
+            }
+        });
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+        awaitExecuted(1);
+
+        // The retry waits for the private chat rate
+        assertEquals(1, attempts.get());
+        assertTrue(responses.isEmpty());
+        awaitCompleted(1);
+        assertEquals(2, attempts.get());
+        assertEquals(List.of(ok), responses);
+        assertEquals(List.of(1), retries);
+    }
+
+    @Test
+    void execute_NetworkError_RetryWithBackoff() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            attempts.incrementAndGet();
+            Callback<SendMessage, SendResponse> c = invocation.getArgument(1);
+            c.onFailure(invocation.getArgument(0), new IOException());
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(100, Duration.ofSeconds(1))
+                .maxRetries(2)
+                .retryBackoff(Duration.ofMillis(10), Duration.ofMillis(20))
+                .build();
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+        awaitCompleted(1);
+
+        assertEquals(3, attempts.get());
+        assertEquals(1, failures.size());
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    void execute_ClientThrows_Fail() throws InterruptedException {
+        IllegalStateException error = new IllegalStateException();
+        doAnswer(invocation -> {
+            throw error;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder().build();
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+
+        awaitCompleted(1);
+        assertSame(error, failures.get(0).getCause());
+        assertEquals(0, scheduler.getInFlight());
+    }
+
+    @Test
+    void execute_ClientError_NoRetry() throws InterruptedException {
+        SendResponse badRequest = response(400, null);
+        AtomicInteger attempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            attempts.incrementAndGet();
+            Callback<SendMessage, SendResponse> c = invocation.getArgument(1);
+            c.onResponse(invocation.getArgument(0), badRequest);
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder().build();
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+        awaitCompleted(1);
+
+        assertEquals(1, attempts.get());
+        assertEquals(List.of(badRequest), responses);
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void execute_EditsOfSameMessage_Coalesce() throws InterruptedException {
+        List<BaseRequest> requests = new CopyOnWriteArrayList<>();
+        SendResponse ok = response(200, null);
+        doAnswer(invocation -> {
+            requests.add(invocation.getArgument(0));
+            ((Callback) invocation.getArgument(1)).onResponse(invocation.getArgument(0), ok);
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        List<IOException> editFailures = new CopyOnWriteArrayList<>();
+        Callback editCallback = new Callback() {
+            @Override
+            public void onResponse(BaseRequest request, BaseResponse response) {
+            }
+
+            @Override
+            public void onFailure(BaseRequest request, IOException e) {
+                editFailures.add(e);
+            }
+        };
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(1, Duration.ofMillis(200))
+                .build();
+
+        scheduler.execute(bot, new SendMessage(1L, "1"), callback);
+        EditMessageText first = new EditMessageText(1L, 10, "10%");
+        EditMessageText latest = new EditMessageText(1L, 10, "20%");
+        EditMessageReplyMarkup markup = new EditMessageReplyMarkup(1L, 10).replyMarkup(new InlineKeyboardMarkup());
+        EditMessageText other = new EditMessageText(1L, 11, "10%");
+        scheduler.execute(bot, first, editCallback);
+        scheduler.execute(bot, markup, editCallback);
+        scheduler.execute(bot, other, editCallback);
+        scheduler.execute(bot, latest, editCallback);
+        assertEquals(1, editFailures.size());
+        assertTrue(editFailures.get(0) instanceof RequestSupersededException);
+
+        awaitExecuted(4);
+
+        // The latest edit takes the place of the superseded one
+        assertEquals(List.of(latest, markup, other), requests.subList(1, requests.size()));
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void execute_InteractiveLane_ServedBeforeBulk() throws InterruptedException {
+        List<BaseRequest> requests = new CopyOnWriteArrayList<>();
+        BaseResponse ok = response(200, null);
+        doAnswer(invocation -> {
+            requests.add(invocation.getArgument(0));
+            ((Callback) invocation.getArgument(1)).onResponse(invocation.getArgument(0), ok);
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        List<OutboundPriority> lanes = new CopyOnWriteArrayList<>();
+        scheduler = OutboundScheduler.builder()
+                .botRate(1, Duration.ofMillis(50))
+                .build();
+        scheduler.addListener(new OutboundListener() {
+            @Override
+            public void onSent(BaseRequest<?, ?> request, OutboundPriority priority, Duration latency) {
+                lanes.add(priority);
+            }
+        });
+
+        for (long chatId = 1; chatId <= 10; chatId++) {
+            scheduler.execute(bot, new SendMessage(chatId, "news"), callback, OutboundPriority.BULK);
+        }
+        AnswerCallbackQuery answer = new AnswerCallbackQuery("query");
+        scheduler.execute(bot, answer, (Callback) callback);
+        awaitExecuted(3);
+
+        // The answer is sent right after the request that has been sent before it was queued
+        assertTrue(requests.indexOf(answer) <= 1);
+        assertEquals(OutboundPriority.INTERACTIVE, lanes.get(requests.indexOf(answer)));
+        assertEquals(OutboundPriority.BULK, lanes.get(2));
+    }
+
+    @Test
+    void execute_AllLanesQueued_ShareBotRateByWeight() throws InterruptedException {
+        List<OutboundPriority> lanes = new CopyOnWriteArrayList<>();
+        scheduler = OutboundScheduler.builder()
+                .botRate(1, Duration.ofMillis(20))
+                .weight(OutboundPriority.DEFAULT, 1)
+                .weight(OutboundPriority.BULK, 1)
+                .build();
+        scheduler.addListener(new OutboundListener() {
+            @Override
+            public void onSent(BaseRequest<?, ?> request, OutboundPriority priority, Duration latency) {
+                lanes.add(priority);
+            }
+        });
+
+        for (long chatId = 1; chatId <= 10; chatId++) {
+            scheduler.execute(bot, new SendMessage(chatId, "default"), callback);
+            scheduler.execute(bot, new SendMessage(-chatId, "bulk"), callback, OutboundPriority.BULK);
+        }
+        awaitExecuted(4);
+
+        // Neither lane is starved
+        List<OutboundPriority> first = lanes.subList(0, 4);
+        assertTrue(first.contains(OutboundPriority.DEFAULT));
+        assertTrue(first.contains(OutboundPriority.BULK));
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void execute_ConcurrencyLimit_QueueExcess() throws InterruptedException {
+        List<Callback> inFlight = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            inFlight.add(invocation.getArgument(1));
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder()
+                .concurrencyLimit(2, 2)
+                .build();
+
+        for (long chatId = 1; chatId <= 4; chatId++) {
+            scheduler.execute(bot, new SendMessage(chatId, "text"), callback);
+        }
+        awaitExecuted(2);
+        assertEquals(2, sent.size());
+        assertEquals(2, scheduler.getInFlight());
+        assertEquals(2, scheduler.getConcurrencyLimit());
+
+        // The completed request frees the slot for the queued one
+        inFlight.get(0).onResponse(sent.get(0), response(200, null));
+        awaitExecuted(1);
+        assertEquals(3, sent.size());
+        assertEquals(1, scheduler.size());
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void execute_CircuitBreakerOpen_SpoolUntilProbeSucceeds() throws InterruptedException {
+        AtomicInteger failuresLeft = new AtomicInteger(10);
+        SendResponse ok = response(200, null);
+        SendResponse unavailable = response(502, null);
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            SendResponse response = (failuresLeft.getAndDecrement() > 0) ? unavailable : ok;
+            ((Callback) invocation.getArgument(1)).onResponse(invocation.getArgument(0), response);
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        List<CircuitBreaker.State> states = new CopyOnWriteArrayList<>();
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(1000, Duration.ofSeconds(1))
+                .maxRetries(0)
+                .circuitBreaker(0.5, Duration.ofSeconds(10), Duration.ofMillis(300))
+                .build();
+        scheduler.addListener(new OutboundListener() {
+            @Override
+            public void onCircuitStateChanged(TelegramBot bot, CircuitBreaker.State state) {
+                states.add(state);
+            }
+        });
+
+        for (long chatId = 1; chatId <= 10; chatId++) {
+            scheduler.execute(bot, new SendMessage(chatId, "failed"), callback);
+        }
+        awaitExecuted(10);
+        assertEquals(CircuitBreaker.State.OPEN, scheduler.getCircuitState(bot));
+        assertEquals(1, scheduler.getOpenCircuits());
+
+        // Requests are kept in the queue while the breaker is open
+        scheduler.execute(bot, new SendMessage(11L, "spooled"), callback);
+        scheduler.execute(bot, new SendMessage(12L, "spooled"), callback);
+        assertEquals(10, sent.size());
+        assertEquals(2, scheduler.size());
+
+        // The open duration elapses and the probe closes the breaker
+        awaitExecuted(2);
+        assertEquals(12, sent.size());
+        assertEquals(CircuitBreaker.State.CLOSED, scheduler.getCircuitState(bot));
+        assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED), states);
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void execute_SlowUploads_CircuitStaysClosed() throws InterruptedException {
+        BaseResponse ok = response(200, null);
+        doAnswer(invocation -> {
+            Thread.sleep(5);
+            ((Callback) invocation.getArgument(1)).onResponse(invocation.getArgument(0), ok);
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(1000, Duration.ofSeconds(1))
+                .circuitBreaker(0.5, Duration.ofMillis(1), Duration.ofSeconds(30))
+                .build();
+
+        for (long chatId = 1; chatId <= 10; chatId++) {
+            scheduler.execute(bot, new SendDocument(chatId, new byte[]{1}), anyCallback);
+        }
+        awaitExecuted(10);
+
+        // The upload latency depends on the file size, so it is not counted as slow
+        assertEquals(CircuitBreaker.State.CLOSED, scheduler.getCircuitState(bot));
+
+        for (long chatId = 1; chatId <= 10; chatId++) {
+            scheduler.execute(bot, new SendMessage(chatId, "slow"), anyCallback);
+        }
+        awaitExecuted(10);
+        assertEquals(CircuitBreaker.State.OPEN, scheduler.getCircuitState(bot));
+    }
+
+    @Test
+    void execute_CircuitBreakerOpen_FailFast() throws InterruptedException {
+        SendResponse unavailable = response(502, null);
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            Callback<SendMessage, SendResponse> c = invocation.getArgument(1);
+            c.onResponse(invocation.getArgument(0), unavailable);
+            executed.release();
+            return null;
+        }).when(bot).execute(any(BaseRequest.class), any(Callback.class));
+        scheduler = OutboundScheduler.builder()
+                .privateChatRate(1000, Duration.ofSeconds(1))
+                .maxRetries(0)
+                .failFastWhenOpen(true)
+                .build();
+
+        for (long chatId = 1; chatId <= 10; chatId++) {
+            scheduler.execute(bot, new SendMessage(chatId, "failed"), callback);
+        }
+        awaitExecuted(10);
+
+        scheduler.execute(bot, new SendMessage(11L, "rejected"), callback);
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof OutboundRejectedException);
+    }
+
+    private SendResponse response(int code, Integer retryAfter) {
+        SendResponse response = mock(SendResponse.class);
+        when(response.isOk()).thenReturn(code == 200);
+        when(response.errorCode()).thenReturn(code);
+        if (retryAfter != null) {
+            ResponseParameters parameters = mock(ResponseParameters.class);
+            when(parameters.retryAfter()).thenReturn(retryAfter);
+            when(response.parameters()).thenReturn(parameters);
+        }
+        return response;
+    }
+
+    private void awaitExecuted(int count) throws InterruptedException {
+        assertTrue(executed.tryAcquire(count, 5, TimeUnit.SECONDS), "Requests have not been sent");
+    }
+
+    private void awaitCompleted(int count) throws InterruptedException {
+        assertTrue(completed.tryAcquire(count, 5, TimeUnit.SECONDS), "Requests have not been completed");
+    }
+
+    private List<String> texts() {
+        return sent.stream().map(request -> (String) request.getParameters().get("text")).toList();
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.kshashov.telegram.session;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedSessionStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void saveTake() throws IOException {
+        MappedSessionStore store = new MappedSessionStore(directory, 1024, Duration.ofMinutes(1));
+
+        store.save(1L, new byte[]{1, 2, 3}, System.currentTimeMillis());
+        store.save(2L, new byte[]{4}, System.currentTimeMillis());
+        store.save(1L, new byte[]{5, 6}, System.currentTimeMillis());
+        assertEquals(2, store.size());
+
+        assertArrayEquals(new byte[]{5, 6}, store.take(1L));
+        assertNull(store.take(1L));
+        store.remove(2L);
+        assertNull(store.take(2L));
+        assertEquals(0, store.size());
+        store.close();
+    }
+
+    @Test
+    void take_Expired_ReturnNull() throws IOException {
+        MappedSessionStore store = new MappedSessionStore(directory, 1024, Duration.ofMinutes(1));
+
+        store.save(1L, new byte[]{1}, System.currentTimeMillis() - Duration.ofMinutes(2).toMillis());
+        assertNull(store.take(1L));
+    }
+
+    @Test
+    void segments_DeletedAndCompacted() throws IOException {
+        int recordSize = MappedSessionStore.HEADER_SIZE + 100;
+        MappedSessionStore store = new MappedSessionStore(directory, recordSize * 4, Duration.ofMinutes(1));
+
+        // Fill several segments
+        for (long i = 0; i < 20; i++) {
+            store.save(i, data(i), System.currentTimeMillis());
+        }
+        assertEquals(5, store.segmentsCount());
+
+        // The first segment becomes mostly empty, so its last record is moved to a new segment
+        for (long i = 0; i < 3; i++) {
+            store.remove(i);
+        }
+        assertEquals(5, store.segmentsCount());
+
+        // The second segment is compacted into the same new segment
+        for (long i = 4; i < 7; i++) {
+            store.remove(i);
+        }
+        assertEquals(4, store.segmentsCount());
+
+        // The new segment is active, so it is kept even without live records
+        store.remove(3L);
+        store.remove(7L);
+        assertEquals(4, store.segmentsCount());
+        assertEquals(12, store.size());
+        for (long i = 8; i < 20; i++) {
+            assertArrayEquals(data(i), store.take(i));
+        }
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void save_RollOverEmptyActiveSegment_Delete() throws IOException {
+        int recordSize = MappedSessionStore.HEADER_SIZE + 100;
+        MappedSessionStore store = new MappedSessionStore(directory, recordSize * 2, Duration.ofMinutes(1));
+
+        // Sessions are taken back before the active segment is full
+        for (long i = 0; i < 20; i++) {
+            store.save(i, data(i), System.currentTimeMillis());
+            assertArrayEquals(data(i), store.take(i));
+        }
+        assertEquals(1, store.segmentsCount());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void expire_DiscardExpiredRecords() throws IOException {
+        int recordSize = MappedSessionStore.HEADER_SIZE + 100;
+        MappedSessionStore store = new MappedSessionStore(directory, recordSize * 4, Duration.ofMinutes(1));
+
+        long now = System.currentTimeMillis();
+        for (long i = 0; i < 40; i++) {
+            store.save(i, data(i), (i < 36) ? now - Duration.ofMinutes(2).toMillis() : now);
+        }
+        assertEquals(10, store.segmentsCount());
+
+        assertEquals(36, store.expire(now));
+        assertEquals(4, store.size());
+        assertEquals(1, store.segmentsCount());
+        for (long i = 36; i < 40; i++) {
+            assertArrayEquals(data(i), store.take(i));
+        }
+        store.close();
+    }
+
+    @Test
+    void open_DeleteExistingSegments() throws IOException {
+        new MappedSessionStore(directory, 1024, Duration.ofMinutes(1)).save(1L, new byte[]{1}, System.currentTimeMillis());
+        MappedSessionStore store = new MappedSessionStore(directory, 1024, Duration.ofMinutes(1));
+
+        assertNull(store.take(1L));
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void snapshot_RestoreLiveRecords() throws IOException {
+        int recordSize = MappedSessionStore.HEADER_SIZE + 100;
+        MappedSessionStore store = new MappedSessionStore(directory, recordSize * 4, Duration.ofMinutes(1));
+        for (long i = 0; i < 10; i++) {
+            store.save(i, data(i), System.currentTimeMillis());
+        }
+        store.save(10L, data(10), System.currentTimeMillis() - Duration.ofMinutes(2).toMillis());
+        store.save(0L, data(100), System.currentTimeMillis());
+        store.remove(1L);
+        store.snapshot();
+
+        MappedSessionStore restored = new MappedSessionStore(directory, recordSize * 4, Duration.ofMinutes(1));
+        assertEquals(9, restored.size());
+        assertArrayEquals(data(100), restored.take(0L));
+        assertNull(restored.take(1L));
+        for (long i = 2; i < 10; i++) {
+            assertArrayEquals(data(i), restored.take(i));
+        }
+        assertNull(restored.take(10L));
+
+        // The snapshot is consumed
+        assertFalse(Files.exists(directory.resolve(MappedSessionStore.SNAPSHOT_FILE)));
+    }
+
+    private byte[] data(long value) {
+        byte[] data = new byte[100];
+        data[0] = (byte) value;
+        return data;
+    }
+}
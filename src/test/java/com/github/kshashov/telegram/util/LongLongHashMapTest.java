@@ -0,0 +1,51 @@
+package com.github.kshashov.telegram.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LongLongHashMapTest {
+
+    @Test
+    void putGetRemove() {
+        LongLongHashMap map = new LongLongHashMap(-1);
+
+        assertEquals(-1, map.put(0, 10));
+        assertEquals(-1, map.put(5, 50));
+        assertEquals(10, map.get(0));
+        assertEquals(50, map.put(5, 55));
+        assertEquals(55, map.get(5));
+        assertEquals(2, map.size());
+
+        assertEquals(10, map.remove(0));
+        assertEquals(-1, map.remove(0));
+        assertEquals(-1, map.get(0));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void randomOperations_MatchHashMap() {
+        LongLongHashMap map = new LongLongHashMap(-1);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.getOrDefault(key, -1L), map.put(key, i));
+                expected.put(key, (long) i);
+            } else {
+                assertEquals(expected.getOrDefault(key, -1L), map.remove(key));
+                expected.remove(key);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        map.forEach((key, value) -> assertEquals(expected.get(key), value));
+    }
+}